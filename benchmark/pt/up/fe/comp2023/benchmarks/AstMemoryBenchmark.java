@@ -0,0 +1,112 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.ast.CompactNode;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the heap kept by the AST of large synthetic programs, with the nodes of the library ({@code JmmNodeImpl})
+ * and with the compact AST ({@code ast=compact}). For the compact AST it is measured right after parsing and again
+ * after every node was visited, since the node views are only created when they are first read.
+ * <p>
+ * The heap is measured with {@link Runtime} after forcing garbage collections, so the numbers are approximate; run
+ * with a fixed heap (like {@code -Xms2g -Xmx2g}) for steadier results.
+ * <p>
+ * Usage: {@code gradle benchmarkAstMemory} or {@code AstMemoryBenchmark [methods...]}
+ */
+public class AstMemoryBenchmark {
+
+    private static final int[] DEFAULT_METHODS = {500, 1_000, 2_000};
+    private static final int DEPTH = 2;
+    private static final int EXPRESSION = 16;
+
+    public static void main(String[] args) {
+        int[] methods = DEFAULT_METHODS;
+        if (args.length > 0) {
+            methods = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                methods[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        PrintStream out = System.out;
+        // The parser prints its progress to System.out
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        try {
+            out.printf("%8s %10s %14s %14s %14s %10s%n", "methods", "nodes", "default (B/n)", "compact (B/n)",
+                    "visited (B/n)", "ratio");
+
+            for (int size : methods) {
+                String code = Corpus.generate(size, DEPTH, EXPRESSION);
+
+                Map<String, String> defaultConfig = new HashMap<>();
+                Map<String, String> compactConfig = new HashMap<>();
+                compactConfig.put("ast", "compact");
+
+                // Warm-up, so that the parser caches are not counted
+                parse(code, defaultConfig);
+                parse(code, compactConfig);
+
+                long before = usedMemory();
+                JmmNode defaultRoot = parse(code, defaultConfig);
+                long defaultBytes = usedMemory() - before;
+                int nodes = countNodes(defaultRoot);
+                defaultRoot = null;
+
+                before = usedMemory();
+                JmmNode compactRoot = parse(code, compactConfig);
+                long compactBytes = usedMemory() - before;
+
+                countNodes(compactRoot);
+                long visitedBytes = usedMemory() - before;
+
+                if (((CompactNode) compactRoot).getAst().getSize() != nodes) {
+                    throw new RuntimeException("The compact AST has a different number of nodes");
+                }
+
+                out.printf("%8d %10d %14.1f %14.1f %14.1f %9.1fx%n", size, nodes, (double) defaultBytes / nodes,
+                        (double) compactBytes / nodes, (double) visitedBytes / nodes,
+                        (double) defaultBytes / compactBytes);
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static JmmNode parse(String code, Map<String, String> config) {
+        JmmParserResult result = new SimpleParser().parse(code, config);
+        if (result.getRootNode() == null) {
+            throw new RuntimeException("Could not parse the synthetic program: " + result.getReports());
+        }
+
+        return result.getRootNode();
+    }
+
+    private static int countNodes(JmmNode node) {
+        int nodes = 1;
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            nodes += countNodes(node.getJmmChild(i));
+        }
+
+        return nodes;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        return used;
+    }
+}
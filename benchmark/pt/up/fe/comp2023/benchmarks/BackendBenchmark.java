@@ -0,0 +1,94 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.jmm.jasmin.JasminBuilder;
+import pt.up.fe.comp2023.ollir.JmmOptimizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the AST optimization, the OLLIR generation (including the parsing of the OLLIR code) and the Jasmin
+ * generation over the programs of the {@link Corpus}.
+ * <p>
+ * These stages change the AST or the OLLIR class they work on (folded constants, CFGs, var tables), so their input is
+ * rebuilt before each invocation, outside of the measured time. The synthetic sizes are kept small because the AST
+ * optimization visits each node once per ancestor, so its time grows exponentially with the nesting depth and the
+ * length of the expressions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BackendBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Program extends ProgramState {
+
+        // The libs-jmm samples are left out, the OLLIR generation does not support accessing fields with "this."
+        @Param({
+                "test/pt/up/fe/comp/cpf/4_jasmin/control_flow/SwitchStat.jmm",
+                "synthetic:methods=10",
+                "synthetic:methods=100",
+                "synthetic:depth=4",
+                "synthetic:depth=6",
+                "synthetic:expression=8",
+                "synthetic:expression=16"
+        })
+        public String program;
+
+        @Override
+        protected String getProgram() {
+            return program;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Analysed {
+        public JmmSemanticsResult semanticsResult;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) {
+            semanticsResult = program.analyse();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Optimized {
+        public JmmSemanticsResult semanticsResult;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) {
+            semanticsResult = new JmmOptimizer().optimize(program.analyse());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Generated {
+        public OllirResult ollirResult;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) {
+            var optimizer = new JmmOptimizer();
+            ollirResult = optimizer.toOllir(optimizer.optimize(program.analyse()));
+        }
+    }
+
+    @Benchmark
+    public JmmSemanticsResult optimize(Analysed analysed) {
+        return new JmmOptimizer().optimize(analysed.semanticsResult);
+    }
+
+    @Benchmark
+    public OllirResult toOllir(Optimized optimized) {
+        return new JmmOptimizer().toOllir(optimized.semanticsResult);
+    }
+
+    @Benchmark
+    public JasminResult toJasmin(Generated generated) {
+        return new JasminBuilder().toJasmin(generated.ollirResult);
+    }
+}
@@ -0,0 +1,148 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The programs the benchmarks compile. A program is either the path to a Java-- file, like
+ * {@code libs-jmm/java/GetterAndSetter.java}, or a synthetic program like {@code synthetic:methods=100}, which scales
+ * one of its dimensions:
+ * <ul>
+ *     <li>{@code methods}: number of methods of the class (default 10)</li>
+ *     <li>{@code depth}: nesting of the while and if statements in each method (default 2)</li>
+ *     <li>{@code expression}: number of operators of the expression in the innermost statement (default 4)</li>
+ *     <li>{@code fields}: number of int fields of the class, each method reads one of them (default 0)</li>
+ * </ul>
+ * Several dimensions can be given at once, separated by commas.
+ */
+public class Corpus {
+
+    public static final String SYNTHETIC_PREFIX = "synthetic:";
+
+    public static String load(String program) {
+        if (!program.startsWith(SYNTHETIC_PREFIX)) {
+            File file = new File(program);
+            if (!file.isFile()) {
+                throw new RuntimeException("Expected a path to an existing Java-- file, got '" + program + "'.");
+            }
+            return SpecsIo.read(file);
+        }
+
+        Map<String, Integer> dimensions = new HashMap<>();
+        for (String dimension : program.substring(SYNTHETIC_PREFIX.length()).split(",")) {
+            String[] keyValue = dimension.split("=");
+            if (keyValue.length != 2) {
+                throw new RuntimeException("Expected a dimension like 'methods=10', got '" + dimension + "'.");
+            }
+            dimensions.put(keyValue[0].trim(), Integer.parseInt(keyValue[1].trim()));
+        }
+
+        return generate(dimensions.getOrDefault("methods", 10), dimensions.getOrDefault("depth", 2),
+                dimensions.getOrDefault("expression", 4), dimensions.getOrDefault("fields", 0));
+    }
+
+    public static String generate(int methods, int depth, int expressionSize) {
+        return generate(methods, depth, expressionSize, 0);
+    }
+
+    /**
+     * A class with the given number of methods, each with nested loops and conditions that end in an assignment of
+     * an arithmetic expression, and a main that calls all of them. Each method also reads one of the int fields.
+     */
+    public static String generate(int methods, int depth, int expressionSize, int fields) {
+        StringBuilder code = new StringBuilder();
+
+        code.append("import io;\n\n")
+                .append("class Synthetic {\n\n");
+
+        for (int field = 0; field < fields; field++) {
+            code.append("    int count").append(field).append(";\n");
+        }
+        if (fields > 0) {
+            code.append("\n");
+        }
+
+        for (int method = 0; method < methods; method++) {
+            code.append("    public int method").append(method).append("(int a, int b) {\n")
+                    .append("        int x;\n")
+                    .append("        int y;\n")
+                    .append("        int[] values;\n")
+                    .append("        x = a;\n")
+                    .append("        y = b;\n")
+                    .append("        values = new int[10];\n");
+            if (fields > 0) {
+                code.append("        y = count").append(method % fields).append(";\n");
+            }
+
+            String indent = "        ";
+            for (int level = 0; level < depth; level++) {
+                if (level % 2 == 0) {
+                    code.append(indent).append("while (x < ").append(level + method).append(") {\n");
+                } else {
+                    code.append(indent).append("if (y < x && x < ").append(level).append(") {\n");
+                }
+                indent += "    ";
+                code.append(indent).append("x = x + 1;\n");
+            }
+
+            code.append(indent).append("y = ");
+            appendExpression(code, expressionSize, method);
+            code.append(";\n")
+                    .append(indent).append("values[x] = y;\n")
+                    .append(indent).append("y = y + values[x];\n");
+
+            for (int level = depth - 1; level >= 0; level--) {
+                indent = indent.substring(4);
+                if (level % 2 == 0) {
+                    code.append(indent).append("}\n");
+                } else {
+                    code.append(indent).append("} else {\n")
+                            .append(indent).append("    y = y - 1;\n")
+                            .append(indent).append("}\n");
+                }
+            }
+
+            code.append("        return y;\n")
+                    .append("    }\n\n");
+        }
+
+        code.append("    public static void main(String[] args) {\n")
+                .append("        Synthetic synthetic;\n")
+                .append("        int result;\n")
+                .append("        synthetic = new Synthetic();\n");
+        for (int method = 0; method < methods; method++) {
+            code.append("        result = synthetic.method").append(method).append("(").append(method)
+                    .append(", 2);\n")
+                    .append("        io.println(result);\n");
+        }
+        code.append("    }\n")
+                .append("}\n");
+
+        return code.toString();
+    }
+
+    /**
+     * Appends an expression with the given number of operators, like "(x + 1) * y - (a + 2) * b ...", mixing
+     * variables, literals and parentheses. There are no divisions, so any values can be used.
+     */
+    private static void appendExpression(StringBuilder code, int operators, int seed) {
+        String[] operands = {"x", "y", "a", "b"};
+        String[] binaryOperators = {" + ", " - ", " * "};
+
+        code.append("a");
+        for (int i = 0; i < operators; i++) {
+            code.append(binaryOperators[(i + seed) % binaryOperators.length]);
+
+            if (i % 4 == 3) {
+                code.append("(").append(operands[i % operands.length]).append(" + ").append(i).append(")");
+            } else if (i % 2 == 0) {
+                code.append(operands[(i + seed) % operands.length]);
+            } else {
+                code.append(i % 100);
+            }
+        }
+    }
+}
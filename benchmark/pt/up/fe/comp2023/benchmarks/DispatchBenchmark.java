@@ -0,0 +1,102 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmVisitor;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.ast.KindVisitor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the dispatch of the visitors of the library, which look up the name of the kind (and of its hierarchy) in
+ * a map, with the dispatch by kind id of {@link KindVisitor}. Both visitors register the same kinds as the OLLIR
+ * generator and only count the nodes, so the difference is the cost of finding the visit method.
+ * <p>
+ * The programs have deep expressions, and the tree is traversed once per invocation; divide the time by the number
+ * of nodes (printed by the setup) for the cost per node.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private static final String[] KINDS = {"Program", "ImportDeclaration", "ClassDeclaration", "VarDeclaration",
+            "MethodDeclaration", "MainMethodDeclaration", "Parameter", "Type", "Block", "IfElse", "While", "Stmt",
+            "Assignment", "ArrayAssignment", "ReturnStmt", "Integer", "Boolean", "Variable", "Parenthesis",
+            "BinaryOp", "RelationalOp", "UnaryOp", "ArrayAccess", "ArrayLength", "ArrayInit", "NewObject", "This",
+            "MethodCall", "AccessMethod"};
+
+    @State(Scope.Benchmark)
+    public static class Tree {
+
+        @Param({
+                "synthetic:methods=10,expression=100",
+                "synthetic:methods=10,expression=400"
+        })
+        public String program;
+
+        @Param({"default", "compact"})
+        public String ast;
+
+        public JmmNode root;
+        public final JmmVisitor<Void, Integer> stringCounter = new StringCounter();
+        public final JmmVisitor<Void, Integer> kindCounter = new KindCounter();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            // Only parsed: the analysis takes exponential time on expressions this deep
+            Map<String, String> config = new HashMap<>();
+            config.put("ast", ast);
+            root = new SimpleParser().parse(Corpus.load(program), config).getRootNode();
+
+            System.err.println("Nodes: " + kindCounter.visit(root, null));
+        }
+    }
+
+    @Benchmark
+    public Integer stringDispatch(Tree tree) {
+        return tree.stringCounter.visit(tree.root, null);
+    }
+
+    @Benchmark
+    public Integer kindDispatch(Tree tree) {
+        return tree.kindCounter.visit(tree.root, null);
+    }
+
+    private static Integer countChildren(JmmVisitor<Void, Integer> visitor, JmmNode node) {
+        int nodes = 1;
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            nodes += visitor.visit(node.getJmmChild(i), null);
+        }
+
+        return nodes;
+    }
+
+    private static class StringCounter extends AJmmVisitor<Void, Integer> {
+
+        @Override
+        protected void buildVisitor() {
+            for (String kind : KINDS) {
+                addVisit(kind, (node, data) -> countChildren(this, node));
+            }
+            setDefaultVisit((node, data) -> countChildren(this, node));
+        }
+    }
+
+    private static class KindCounter extends KindVisitor<Void, Integer> {
+
+        @Override
+        protected void buildVisitor() {
+            for (String kind : KINDS) {
+                addVisit(kind, (node, data) -> countChildren(this, node));
+            }
+            setDefaultVisit((node, data) -> countChildren(this, node));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.AnalysisStage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the parser and the semantic analysis over the programs of the {@link Corpus}, including the samples of
+ * libs-jmm that are Java-- code.
+ * <p>
+ * The analysis adds attributes to the AST, so it gets a freshly parsed tree before each invocation, outside of the
+ * measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrontendBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Program extends ProgramState {
+
+        @Param({
+                "libs-jmm/java/GetterAndSetter.java",
+                "test/pt/up/fe/comp/cpf/4_jasmin/control_flow/SwitchStat.jmm",
+                "synthetic:methods=10",
+                "synthetic:methods=100",
+                "synthetic:depth=4",
+                "synthetic:depth=6",
+                "synthetic:expression=8",
+                "synthetic:expression=16"
+        })
+        public String program;
+
+        @Override
+        protected String getProgram() {
+            return program;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Parsed {
+        public JmmParserResult parserResult;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) {
+            parserResult = program.parse();
+        }
+    }
+
+    @Benchmark
+    public JmmParserResult parse(Program program) {
+        return program.parse();
+    }
+
+    @Benchmark
+    public JmmSemanticsResult semanticAnalysis(Parsed parsed) {
+        return new AnalysisStage().semanticAnalysis(parsed.parserResult);
+    }
+}
@@ -0,0 +1,135 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.jmm.jasmin.JasminBuilder;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Measures how the Jasmin emission of a single method scales with its size. The generated methods are chains of
+ * if/else blocks, so half of their instructions have a label.
+ * <p>
+ * For each size the emission time per instruction is printed; with the label index it should stay roughly constant.
+ * The old lookup, which went through all the labels of the method for every instruction, is timed next to it for the
+ * smaller sizes.
+ * <p>
+ * Usage: {@code gradle benchmarkLabels} or {@code LabelIndexBenchmark [sizes...]}
+ */
+public class LabelIndexBenchmark {
+
+    private static final int[] DEFAULT_SIZES = {1_000, 10_000, 100_000};
+    private static final int MAX_SCAN_SIZE = 20_000;
+    private static final int REPETITIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        PrintStream out = System.out;
+        // The backend prints its progress to System.out
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        try {
+            out.printf("%12s %8s %14s %12s %14s%n", "instructions", "labels", "emission (ms)", "ns/inst", "scan (ms)");
+
+            for (int size : sizes) {
+                String ollirCode = generateOllir(size);
+
+                // Warm-up
+                emit(ollirCode);
+
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < REPETITIONS; i++) {
+                    best = Math.min(best, emit(ollirCode));
+                }
+
+                Method method = parse(ollirCode).getMethod(1);
+                int instructions = method.getInstructions().size();
+                String scan = instructions <= MAX_SCAN_SIZE ? String.format("%.2f", scanLabels(method) / 1e6) : "-";
+
+                out.printf("%12d %8d %14.2f %12.1f %14s%n", instructions, method.getLabels().size(), best / 1e6,
+                        (double) best / instructions, scan);
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * A method with about the given number of instructions, made of blocks like
+     * "if (a < i) goto T; a = a + 1; goto E; T: a = a - 1; E:".
+     */
+    static String generateOllir(int instructions) {
+        StringBuilder code = new StringBuilder();
+
+        code.append("Bench {\n")
+                .append("\t.construct Bench().V {\n")
+                .append("\t\tinvokespecial(this, \"<init>\").V;\n")
+                .append("\t}\n")
+                .append("\t.method public run(a.i32).i32 {\n");
+
+        for (int block = 0; block < instructions / 4; block++) {
+            code.append("\t\tif ($1.a.i32 <.bool ").append(block).append(".i32) goto T").append(block).append(";\n")
+                    .append("\t\t$1.a.i32 :=.i32 $1.a.i32 +.i32 1.i32;\n")
+                    .append("\t\tgoto E").append(block).append(";\n")
+                    .append("\tT").append(block).append(":\n")
+                    .append("\t\t$1.a.i32 :=.i32 $1.a.i32 -.i32 1.i32;\n")
+                    .append("\tE").append(block).append(":\n");
+        }
+
+        code.append("\t\tret.i32 $1.a.i32;\n")
+                .append("\t}\n")
+                .append("}\n");
+
+        return code.toString();
+    }
+
+    private static ClassUnit parse(String ollirCode) {
+        return new OllirResult(ollirCode, Collections.emptyMap()).getOllirClass();
+    }
+
+    /**
+     * Time, in nanoseconds, to emit the Jasmin code of a freshly parsed class.
+     */
+    private static long emit(String ollirCode) throws Exception {
+        ClassUnit classUnit = parse(ollirCode);
+
+        long start = System.nanoTime();
+        new JasminBuilder().writeJasmin(classUnit, Writer.nullWriter());
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Time, in nanoseconds, to find the labels of every instruction the way the backend used to.
+     */
+    private static long scanLabels(Method method) {
+        long start = System.nanoTime();
+
+        int found = 0;
+        for (Instruction inst : method.getInstructions()) {
+            for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+                if (label.getValue().equals(inst)) {
+                    found++;
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        if (found != method.getLabels().size()) {
+            throw new IllegalStateException("Expected " + method.getLabels().size() + " labels, found " + found);
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,54 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.AnalysisStage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the semantic analysis of the whole class in a single traversal with the analysis of each method on its own,
+ * in parallel (see {@link pt.up.fe.comp2023.Analysis.MethodAnalysis}), over classes with many methods.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MethodAnalysisBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Program extends ProgramState {
+
+        @Param({
+                "synthetic:methods=100",
+                "synthetic:methods=1000"
+        })
+        public String program;
+
+        @Param({"class", "parallel"})
+        public String analysis;
+
+        @Override
+        protected String getProgram() {
+            return program;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Parsed {
+        public JmmParserResult parserResult;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) {
+            program.config.put("analysis", program.analysis);
+            parserResult = program.parse();
+        }
+    }
+
+    @Benchmark
+    public JmmSemanticsResult semanticAnalysis(Parsed parsed) {
+        return new AnalysisStage().semanticAnalysis(parsed.parserResult);
+    }
+}
@@ -0,0 +1,68 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2023.AnalysisStage;
+import pt.up.fe.comp2023.SimpleParser;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The source and config of the program a benchmark compiles. Subclasses declare the programs of the {@link Corpus}
+ * they run over as a JMH parameter.
+ */
+public abstract class ProgramState {
+
+    public String code;
+    public Map<String, String> config;
+
+    private PrintStream stdout;
+
+    protected abstract String getProgram();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // The stages print their progress and the generated code to System.out
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        code = Corpus.load(getProgram());
+        config = new HashMap<>();
+        config.put("optimize", "true");
+
+        // Fail early instead of timing the error path of a program the compiler does not accept
+        JmmParserResult parserResult = parse();
+        checkNoErrors(parserResult.getReports());
+        checkNoErrors(analyse().getReports());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    public JmmParserResult parse() {
+        return new SimpleParser().parse(code, config);
+    }
+
+    public JmmSemanticsResult analyse() {
+        return new AnalysisStage().semanticAnalysis(parse());
+    }
+
+    private void checkNoErrors(List<Report> reports) {
+        for (Report report : reports) {
+            if (report.getType() == ReportType.ERROR) {
+                throw new RuntimeException("Program '" + getProgram() + "' does not compile: " + report);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.AnalysisStage;
+import pt.up.fe.comp2023.Analysis.MySymbolTable;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the symbol table of classes with thousands of fields and methods: the whole semantic analysis, which looks up
+ * every variable and method it sees, and the lookups alone (every field, method and local variable by name).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SymbolTableBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Program extends ProgramState {
+
+        @Param({
+                "synthetic:methods=500,fields=500",
+                "synthetic:methods=2000,fields=2000"
+        })
+        public String program;
+
+        @Override
+        protected String getProgram() {
+            return program;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Parsed {
+        public JmmParserResult parserResult;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) {
+            parserResult = program.parse();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Table {
+        public MySymbolTable symbolTable;
+        public List<Symbol> fields;
+        public List<String> methods;
+
+        @Setup(Level.Trial)
+        public void setup(Program program) {
+            symbolTable = (MySymbolTable) program.analyse().getSymbolTable();
+            fields = symbolTable.getFields();
+            methods = symbolTable.getMethods();
+        }
+    }
+
+    @Benchmark
+    public JmmSemanticsResult semanticAnalysis(Parsed parsed) {
+        return new AnalysisStage().semanticAnalysis(parsed.parserResult);
+    }
+
+    @Benchmark
+    public void lookups(Table table, Blackhole blackhole) {
+        MySymbolTable symbolTable = table.symbolTable;
+
+        for (Symbol field : table.fields) {
+            blackhole.consume(symbolTable.fieldExists(field.getName()));
+            blackhole.consume(symbolTable.getField(field.getName()));
+        }
+
+        for (String method : table.methods) {
+            blackhole.consume(symbolTable.getMethod(method));
+            blackhole.consume(symbolTable.getReturnType(method));
+            blackhole.consume(symbolTable.getLocalVariableFromMethod(method, "values"));
+        }
+    }
+}
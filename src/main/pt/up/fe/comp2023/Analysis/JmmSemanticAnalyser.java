@@ -3,27 +3,35 @@ package pt.up.fe.comp2023.Analysis;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.ast.PreorderKindVisitor;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
-public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<String, String>> {
+/**
+ * Checks the types of the class, reporting the errors it finds. The types it resolves are kept in the nodes (see
+ * {@link NodeTypes}), for code generation to read.
+ */
+public class JmmSemanticAnalyser extends PreorderKindVisitor<Boolean, Map.Entry<String, String>> {
     private final MySymbolTable st;
     private final List<Report> reports;
     private String currentSCOPE;
     private Method currentMethod;
 
+    // Set while visiting the class without its methods (see MethodAnalysis)
+    private boolean skipMethods;
+
     public JmmSemanticAnalyser(MySymbolTable st, List<Report> reports) {
 
         this.st = st;
         this.reports = reports;
 
+        addVisit("Program", this::dealWithProgram);
         addVisit("ClassDeclaration", this::dealWithClassDeclaration);
         addVisit("MainMethodDeclaration", this::dealWithMainDeclaration);
         addVisit("MethodDeclaration", this::dealWithMethodDeclaration);
@@ -60,6 +68,32 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
         setDefaultVisit(this::defaultVisit);
     }
 
+    public static boolean isMethodDeclaration(JmmNode node) {
+        return node.getKind().equals("MethodDeclaration") || node.getKind().equals("MainMethodDeclaration");
+    }
+
+    /**
+     * Analyses everything but the method declarations, which can then be analysed on their own, each with a new
+     * analyser.
+     */
+    public void visitOutsideMethods(JmmNode root) {
+        skipMethods = true;
+        try {
+            visit(root, null);
+        } finally {
+            skipMethods = false;
+        }
+    }
+
+    @Override
+    public Map.Entry<String, String> visit(JmmNode node, Boolean data) {
+        if (skipMethods && isMethodDeclaration(node)) {
+            return null;
+        }
+
+        return super.visit(node, data);
+    }
+
     private Map.Entry<String, String> dealWithAccessMethod(JmmNode node, Boolean data) {
 
         JmmNode object = node.getChildren().get(0);
@@ -92,6 +126,7 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
                         .toList();
 
                 if (argumentNames.equals(parametersTypeNames)) {
+                    NodeTypes.setType(node, st.getMethod(method.get("id")).getReturnType());
                     return Map.entry(st.getMethod(method.get("id")).getReturnType().getName(), "null");
                 } else {
                     reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("lineStart")), Integer.parseInt(node.get("colStart")), "Incorrect parameters in method call: " + method.get("id") + "() in class " + st.getClassName()));
@@ -113,6 +148,7 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
         }
 
         if (node.getChildren().size() == 0) {
+            NodeTypes.setType(node, new Type(st.getClassName(), false));
             return Map.entry(st.getClassName(), "true");
         } else if (node.getChildren().get(0).getKind().equals("MethodCall")) {
             JmmNode method = node.getChildren().get(0);
@@ -161,6 +197,8 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
         if (!conditionReturn.getKey().equals("boolean")) {
             dataReturn = Map.entry("error", "null");
             reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(condition.get("lineStart")), Integer.parseInt(condition.get("colStart")), "Unary expression not boolean"));
+        } else {
+            NodeTypes.setType(node, NodeTypes.BOOLEAN);
         }
 
         return dataReturn;
@@ -193,17 +231,19 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
         if (!leftReturn.getValue().equals("true") && left.getKind().equals("Variable")) {
             dataReturn = Map.entry("error", "null");
             if (data != null) {
-                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(left.get("lineStart")), Integer.parseInt(left.get("colStart")), "Left Member not initialized: " + left));
+                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(left.get("lineStart")), Integer.parseInt(left.get("colStart")), "Left Member not initialized: " + left.get("id")));
             }
         } else if (!rightReturn.getValue().equals("true") && right.getKind().equals("Variable")) {
             dataReturn = Map.entry("error", "null");
             if (data != null) {
-                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(right.get("lineStart")), Integer.parseInt(right.get("colStart")), "Right Member not initialized: " + right));
+                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(right.get("lineStart")), Integer.parseInt(right.get("colStart")), "Right Member not initialized: " + right.get("id")));
             }
         } else if (leftReturn.getKey() != null && rightReturn.getKey() != null) {
             if (leftReturn.getKey().equals("boolean") && rightReturn.getKey().equals("boolean") && (node.get("op").equals("&&") || node.get("op").equals("||"))) {
+                NodeTypes.setType(node, NodeTypes.BOOLEAN);
                 dataReturn = Map.entry("boolean", "true");
             } else if (leftReturn.getKey().equals("int") && rightReturn.getKey().equals("int")) {
+                NodeTypes.setType(node, NodeTypes.BOOLEAN);
                 dataReturn = Map.entry("boolean", "true");
             } else {
                 dataReturn = Map.entry("error", "null");
@@ -228,17 +268,18 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
         if (!leftReturn.getValue().equals("true") && left.getKind().equals("Variable")) {
             dataReturn = Map.entry("error", "null");
             if (data != null) {
-                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(left.get("lineStart")), Integer.parseInt(left.get("colStart")), "Left Member not initialized: " + left));
+                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(left.get("lineStart")), Integer.parseInt(left.get("colStart")), "Left Member not initialized: " + left.get("id")));
                 return dataReturn;
             }
         } else if (!rightReturn.getValue().equals("true") && right.getKind().equals("Variable")) {
             dataReturn = Map.entry("error", "null");
             if (data != null) {
-                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(right.get("lineStart")), Integer.parseInt(right.get("colStart")), "Right Member not initialized: " + right));
+                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(right.get("lineStart")), Integer.parseInt(right.get("colStart")), "Right Member not initialized: " + right.get("id")));
                 return dataReturn;
             }
         } else if (leftReturn.getKey() != null && rightReturn.getKey() != null) {
             if (leftReturn.getKey().equals("int") && rightReturn.getKey().equals("int")) {
+                NodeTypes.setType(node, NodeTypes.INT);
                 return Map.entry("int", "true");
             } else if (leftReturn.getKey().equals("int[]") && rightReturn.getKey().equals("int[]")) {
                 reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("lineStart")), Integer.parseInt(node.get("colStart")), "Array Variables cannot be used directly with an Binary Operator: '" + left.get("id") + "' " + node.get("op") + " '" + right.get("id") + "'"));
@@ -256,11 +297,13 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
     }
 
     private Map.Entry<String, String> dealWithNewObject(JmmNode node, Boolean space) {
+        NodeTypes.setType(node, new Type(node.get("id"), false));
 
         return Map.entry(node.get("id"), "object");
     }
 
     private Map.Entry<String, String> dealWithAssignment(JmmNode node, Boolean space) {
+        resolveSymbol(node, node.get("id"));
 
         Map.Entry<String, String> assignment = visit(node.getChildren().get(0), true);
 
@@ -409,6 +452,8 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
     }
 
     private Map.Entry<String, String> dealWithVariable(JmmNode node, Boolean data) {
+        resolveSymbol(node, node.get("id"));
+
         Map.Entry<Symbol, Boolean> field = null;
 
         if (currentSCOPE.equals("CLASS")) {
@@ -444,6 +489,7 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
     }
 
     private Map.Entry<String, String> dealWithArrayAssignment(JmmNode node, Boolean space) {
+        resolveSymbol(node, node.get("id"));
 
         List<JmmNode> children = node.getChildren();
 
@@ -499,6 +545,11 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
         return null;
     }
 
+    // The preorder traversal visits the children, visiting them here too would analyse the whole class twice
+    private Map.Entry<String, String> dealWithProgram(JmmNode node, Boolean data) {
+        return Map.entry("program", "true");
+    }
+
     private Map.Entry<String, String> dealWithClassDeclaration(JmmNode node, Boolean data) {
         currentSCOPE = "CLASS";
         return Map.entry("class", "true");
@@ -523,6 +574,9 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
             case "Boolean" -> "boolean";
             default -> "error";
         };
+        if (!return_type.equals("error")) {
+            NodeTypes.setType(node, new Type(return_type, false));
+        }
         return Map.entry(return_type, "true");
     }
 
@@ -556,6 +610,7 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
             reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(array.get("lineStart")), Integer.parseInt(array.get("colStart")), "Variable not declared: " + array.get("id")));
             return Map.entry("error", "null");
         }
+        NodeTypes.setType(node, NodeTypes.INT);
         return Map.entry("int", "true");
     }
 
@@ -567,6 +622,7 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
             reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(size.get("lineStart")), Integer.parseInt(size.get("colStart")), "Array init size is not an Integer: " + size));
             return Map.entry("error", "null");
         }
+        NodeTypes.setType(node, NodeTypes.INT_ARRAY);
         return Map.entry("int[]", "null");
     }
 
@@ -622,9 +678,10 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
             String returnType = st.getMethod(methodName).getReturnType().getName();
             boolean isArray = returnType.contains("[]");
 
-            if (parametersNames.equals(argumentsTypeNames))
+            if (parametersNames.equals(argumentsTypeNames)) {
+                NodeTypes.setType(node, st.getMethod(methodName).getReturnType());
                 return Map.entry("method", returnType + (isArray ? "[]" : ""));
-            else {
+            } else {
                 reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("lineStart")), Integer.parseInt(node.get("colStart")), "Method found but arguments are incorrect: " + methodName + "\n\t\t" + "- Parameters required: " + parametersNames + "\n\t\t" + "- Arguments used: " + argumentsNames));
                 return Map.entry("error", "noSuchMethod");
             }
@@ -642,6 +699,27 @@ public class JmmSemanticAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<S
         return visit(node.getChildren().get(0), data);
     }
 
+    /**
+     * Attaches to the node the symbol the name refers to in the current method: a local variable, a parameter or a
+     * field, in this order.
+     */
+    private void resolveSymbol(JmmNode node, String name) {
+        if (currentMethod == null) {
+            return;
+        }
+
+        Map.Entry<Symbol, Boolean> local = currentMethod.getLocalVariable(name);
+        Symbol parameter = currentMethod.getParameter(name);
+
+        if (local != null) {
+            NodeTypes.setSymbol(node, local.getKey(), SymbolKind.LOCAL);
+        } else if (parameter != null) {
+            NodeTypes.setSymbol(node, parameter, SymbolKind.PARAMETER);
+        } else if (st.fieldExists(name)) {
+            NodeTypes.setSymbol(node, st.getField(name).getKey(), SymbolKind.FIELD);
+        }
+    }
+
     private Map.Entry<String, String> defaultVisit(JmmNode node, Boolean data) {
         Map.Entry<String, String> dataReturn = Map.entry("int", "null");
 
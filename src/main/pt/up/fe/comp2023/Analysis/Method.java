@@ -3,25 +3,40 @@ package pt.up.fe.comp2023.Analysis;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * The signature and the local variables of a method. Parameters and locals are also indexed by name, so that looking a
+ * variable up does not go through all the variables of the method.
+ */
 public class Method {
 
     private final String name;
     private final Type returnType;
 
     private final List<Map.Entry<Symbol, String>> parameters = new ArrayList<>();
-    private final Map<Symbol, Boolean> localVariables = new HashMap<>();
+    private final Map<Symbol, Map.Entry<Symbol, Boolean>> localVariables = new HashMap<>();
+
+    // The first parameter and the local variable with each name
+    private final Map<String, Symbol> parametersByName = new HashMap<>();
+    private final Map<String, Map.Entry<Symbol, Boolean>> localVariablesByName = new HashMap<>();
+
+    // Copies returned by the getters, rebuilt after a change
+    private final List<Symbol> parameterList;
+    private volatile List<Symbol> localVariableList = null;
 
     public Method(String name, Type returnType, List<Symbol> parameters) {
         this.name = name;
         this.returnType = returnType;
         for (Symbol parameter : parameters) {
             this.parameters.add(Map.entry(parameter, parameter.getName()));
+            this.parametersByName.putIfAbsent(parameter.getName(), parameter);
         }
+        this.parameterList = List.copyOf(parameters);
     }
 
     public String getName() {
@@ -33,46 +48,64 @@ public class Method {
     }
 
     public List<Symbol> getParameters() {
-        List<Symbol> parameters = new ArrayList<>();
+        return parameterList;
+    }
 
-        for (Map.Entry<Symbol, String> parameter : this.parameters) {
-            parameters.add(parameter.getKey());
-        }
-        return parameters;
+    public Symbol getParameter(String name) {
+        return parametersByName.get(name);
     }
 
     public List<Symbol> getLocalVariables() {
-        return new ArrayList<>(this.localVariables.keySet());
+        List<Symbol> localVariables = localVariableList;
+        if (localVariables == null) {
+            localVariables = List.copyOf(this.localVariables.keySet());
+            localVariableList = localVariables;
+        }
+
+        return localVariables;
     }
 
+    /**
+     * The local variable with the given name and whether it was initialized, which can be changed with the setValue
+     * of the entry.
+     */
     public Map.Entry<Symbol, Boolean> getLocalVariable(String name) {
-        for (Map.Entry<Symbol, Boolean> localVariable : localVariables.entrySet()) {
-            if (localVariable.getKey().getName().equals(name)) {
-                return localVariable;
-            }
-        }
-        return null;
+        return localVariablesByName.get(name);
     }
 
     public boolean localVariableExists(String name) {
-        for (Symbol localVariable : localVariables.keySet()) {
-            if (localVariable.getName().equals(name)) {
-                return true;
-            }
-        }
-        return false;
+        return localVariablesByName.containsKey(name);
+    }
+
+    /**
+     * A local variable or, if there is none, a parameter with the given name; the scope of a variable used in the
+     * method, before the fields of the class.
+     */
+    public Symbol getVariable(String name) {
+        Map.Entry<Symbol, Boolean> localVariable = localVariablesByName.get(name);
+        return localVariable != null ? localVariable.getKey() : parametersByName.get(name);
     }
 
     public boolean initializeField(Symbol field) {
-        if (localVariables.containsKey(field)) {
-            localVariables.put(field, true);
+        Map.Entry<Symbol, Boolean> localVariable = localVariables.get(field);
+        if (localVariable != null) {
+            localVariable.setValue(true);
             return true;
         }
         return false;
     }
 
     public void addLocalVariable(Symbol localVariable, boolean isStatic) {
-        localVariables.put(localVariable, isStatic);
+        Map.Entry<Symbol, Boolean> entry = localVariables.get(localVariable);
+        if (entry != null) {
+            entry.setValue(isStatic);
+            return;
+        }
+
+        entry = new AbstractMap.SimpleEntry<>(localVariable, isStatic);
+        localVariables.put(localVariable, entry);
+        localVariablesByName.putIfAbsent(localVariable.getName(), entry);
+        localVariableList = null;
     }
 
     @Override
@@ -0,0 +1,117 @@
+package pt.up.fe.comp2023.Analysis;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.ParallelTasks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Semantic analysis with each method checked on its own: once the symbol table is built, the class is analysed
+ * without its methods, and then every method declaration is analysed by its own {@link JmmSemanticAnalyser} with
+ * {@link ParallelTasks}, reporting to its own list.
+ * <p>
+ * Besides its own local variables, the only state of the symbol table the analysis of a method changes is whether the
+ * fields were initialized, and the methods with the same name share their {@link Method}. The methods only run in
+ * parallel when the analysis of the class initialized every field (it does unless a field has an unknown type) and
+ * their names are unique; otherwise they are analysed one after the other, in order, like {@link #analyseClass}.
+ * Either way the reports are stably sorted by position (see {@link #sortByPosition}), so they do not depend on the order
+ * the methods finish. {@link #analyseClass} keeps the order of its traversal.
+ */
+public class MethodAnalysis {
+
+    private static final Comparator<Report> BY_POSITION = Comparator.comparingInt(Report::getLine)
+            .thenComparingInt(Report::getColumn);
+
+    private MethodAnalysis() {
+    }
+
+    /**
+     * Whether the config asks for each method to be analysed on its own, with "analysis" set to "parallel".
+     */
+    public static boolean isEnabled(Map<String, String> config) {
+        return "parallel".equals(config.get("analysis"));
+    }
+
+    /**
+     * Analyses the whole class in a single traversal.
+     */
+    public static List<Report> analyseClass(JmmNode root, MySymbolTable st) {
+        List<Report> reports = new ArrayList<>();
+        new JmmSemanticAnalyser(st, reports).visit(root, null);
+        return reports;
+    }
+
+    /**
+     * Analyses the class and then each of its methods in parallel.
+     */
+    public static List<Report> analyseMethods(JmmNode root, MySymbolTable st) {
+        List<Report> reports = new ArrayList<>();
+        new JmmSemanticAnalyser(st, reports).visitOutsideMethods(root);
+
+        List<JmmNode> methods = getMethodDeclarations(root);
+        List<List<Report>> methodReports;
+
+        if (methods.size() > 1 && st.allFieldsInitialized() && hasUniqueNames(methods)) {
+            methodReports = ParallelTasks.map(methods, method -> analyseMethod(method, st));
+        } else {
+            methodReports = new ArrayList<>();
+            for (JmmNode method : methods) {
+                methodReports.add(analyseMethod(method, st));
+            }
+        }
+
+        for (List<Report> methodReport : methodReports) {
+            reports.addAll(methodReport);
+        }
+        sortByPosition(reports);
+        return reports;
+    }
+
+    /**
+     * Sorts the reports by line and column, keeping the order of the reports at the same position.
+     */
+    public static void sortByPosition(List<Report> reports) {
+        reports.sort(BY_POSITION);
+    }
+
+    private static List<Report> analyseMethod(JmmNode method, MySymbolTable st) {
+        List<Report> reports = new ArrayList<>();
+        new JmmSemanticAnalyser(st, reports).visit(method, null);
+        return reports;
+    }
+
+    private static List<JmmNode> getMethodDeclarations(JmmNode root) {
+        List<JmmNode> methods = new ArrayList<>();
+        for (JmmNode node : root.getChildren()) {
+            if (!node.getKind().equals("ClassDeclaration")) {
+                continue;
+            }
+
+            for (JmmNode child : node.getChildren()) {
+                if (JmmSemanticAnalyser.isMethodDeclaration(child)) {
+                    methods.add(child);
+                }
+            }
+        }
+
+        return methods;
+    }
+
+    private static boolean hasUniqueNames(List<JmmNode> methods) {
+        Set<String> names = new HashSet<>();
+        for (JmmNode method : methods) {
+            String name = method.getKind().equals("MainMethodDeclaration") ? "main" : method.get("name");
+            if (!names.add(name)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -5,15 +5,26 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * The symbol table of a class. Fields and methods are indexed by name, and each {@link Method} indexes its parameters
+ * and local variables, so every lookup by name takes constant time.
+ */
 public class MySymbolTable implements SymbolTable {
     private final List<String> imports = new ArrayList<>();
-    private final Map<Symbol, Boolean> fields = new HashMap<>();
+    private final Map<Symbol, Map.Entry<Symbol, Boolean>> fields = new HashMap<>();
     private final List<Method> methods = new ArrayList<>();
+
+    // The first field, method and parameter (of any method) with each name
+    private final Map<String, Map.Entry<Symbol, Boolean>> fieldsByName = new HashMap<>();
+    private final Map<String, Method> methodsByName = new HashMap<>();
+    private final Map<String, Symbol> parametersByName = new HashMap<>();
+
     private String className, superClassName;
     private Method currentMethod;
 
@@ -42,54 +53,84 @@ public class MySymbolTable implements SymbolTable {
     }
 
     public void addField(Symbol field, boolean isStatic) {
-        fields.put(field, isStatic);
+        Map.Entry<Symbol, Boolean> entry = fields.get(field);
+        if (entry != null) {
+            entry.setValue(isStatic);
+            return;
+        }
+
+        entry = new AbstractMap.SimpleEntry<>(field, isStatic);
+        fields.put(field, entry);
+        fieldsByName.putIfAbsent(field.getName(), entry);
     }
 
     public boolean fieldExists(String name) {
-        for (Symbol field : fields.keySet()) {
-            if (field.getName().equals(name)) {
-                return true;
-            }
-        }
-        return false;
+        return fieldsByName.containsKey(name);
     }
 
     public Method getMethod(String methodName) {
-        for (Method method : methods) {
-            if (method.getName().equals(methodName)) {
-                return method;
-            }
-        }
-        return null;
+        return methodsByName.get(methodName);
     }
 
     public void addMethod(String methodName, Type returnType, List<Symbol> parameters) {
         currentMethod = new Method(methodName, returnType, parameters);
         methods.add(currentMethod);
+
+        methodsByName.putIfAbsent(methodName, currentMethod);
+        for (Symbol parameter : parameters) {
+            parametersByName.putIfAbsent(parameter.getName(), parameter);
+        }
     }
 
+    /**
+     * The field with the given name and whether it was initialized, which can be changed with the setValue of the
+     * entry. If there is no such field, returns the first parameter with that name of any method, as not initialized.
+     */
     public Map.Entry<Symbol, Boolean> getField(String name) {
-        for (Map.Entry<Symbol, Boolean> field : this.fields.entrySet()) {
-            if (field.getKey().getName().equals(name))
-                return field;
+        Map.Entry<Symbol, Boolean> field = fieldsByName.get(name);
+        if (field != null) {
+            return field;
         }
-        for (Method method : methods) {
-            for (Symbol parameter : method.getParameters()) {
-                if (parameter.getName().equals(name)) {
-                    return new HashMap.SimpleEntry<>(parameter, false);
-                }
-            }
+
+        Symbol parameter = parametersByName.get(name);
+        if (parameter != null) {
+            return new HashMap.SimpleEntry<>(parameter, false);
         }
 
         return null;
     }
 
+    /**
+     * Resolves a variable used in a method: a local variable or parameter of the method, or else a field.
+     */
+    public Symbol getVariable(String methodName, String name) {
+        Method method = methodsByName.get(methodName);
+        Symbol variable = method != null ? method.getVariable(name) : null;
+        if (variable != null) {
+            return variable;
+        }
+
+        Map.Entry<Symbol, Boolean> field = fieldsByName.get(name);
+        return field != null ? field.getKey() : null;
+    }
+
     public void initializeField(Symbol field) {
-        if (fields.containsKey(field)) {
-            fields.put(field, true);
+        Map.Entry<Symbol, Boolean> entry = fields.get(field);
+        if (entry != null) {
+            entry.setValue(true);
         }
     }
 
+    public boolean allFieldsInitialized() {
+        for (Map.Entry<Symbol, Boolean> entry : fields.values()) {
+            if (!entry.getValue()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     public Method getCurrentMethod() {
         return currentMethod;
     }
@@ -142,48 +183,31 @@ public class MySymbolTable implements SymbolTable {
 
     @Override
     public Type getReturnType(String s) {
-
-        for (Method m : methods) {
-            if (m.getName().equals(s)) {
-                return m.getReturnType();
-            }
-        }
-        return null;
+        Method m = methodsByName.get(s);
+        return m != null ? m.getReturnType() : null;
     }
 
     @Override
     public List<Symbol> getParameters(String methodName) {
-        for (Method m : this.methods) {
-            if (m.getName().equals(methodName)) {
-                return m.getParameters();
-            }
-        }
-        return null;
+        Method m = methodsByName.get(methodName);
+        return m != null ? m.getParameters() : null;
     }
 
 
     @Override
     public List<Symbol> getLocalVariables(String s) {
-        for (Method m : methods) {
-            if (m.getName().equals(s)) {
-                return m.getLocalVariables();
-            }
-        }
-        return null;
+        Method m = methodsByName.get(s);
+        return m != null ? m.getLocalVariables() : null;
     }
 
     public Symbol getLocalVariableFromMethod(String methodName, String varName) {
-        for (Method m : methods) {
-            if (m.getName().equals(methodName)) {
-                var localvars = m.getLocalVariables();
-                for (Symbol localvar : localvars) {
-                    if (localvar.getName().equals(varName)) {
-                        return localvar;
-                    }
-                }
-            }
+        Method m = methodsByName.get(methodName);
+        if (m == null) {
+            return null;
         }
-        return null;
+
+        Map.Entry<Symbol, Boolean> localvar = m.getLocalVariable(varName);
+        return localvar != null ? localvar.getKey() : null;
     }
 
     public Boolean isPrimitiveType(String type) {
@@ -201,7 +225,7 @@ public class MySymbolTable implements SymbolTable {
         sb.append("3) Super: ").append(superClassName).append("\n");
         sb.append("4) Fields: (").append("Size: ").append(fields.size()).append(")\n");
         for (Symbol field : fields.keySet()) {
-            sb.append("\t> ").append(field.getName()).append(" : ").append(field.getType()).append(" (").append(fields.get(field) ? "static" : "non-static").append(")\n");
+            sb.append("\t> ").append(field.getName()).append(" : ").append(field.getType()).append(" (").append(fields.get(field).getValue() ? "static" : "non-static").append(")\n");
         }
         sb.append("5) Methods: (").append("Size: ").append(methods.size()).append(")\n");
         for (Method m : methods) {
@@ -0,0 +1,64 @@
+package pt.up.fe.comp2023.Analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The types resolved by the semantic analysis, kept as attributes of the nodes so that code generation does not look
+ * them up again. Expressions get their type, and the nodes that use a variable by name (Variable, Assignment and
+ * ArrayAssignment) also get the kind of symbol the name refers to in their method.
+ * <p>
+ * Types are interned, so all the nodes of a type share the same {@link Type}. Nodes created after the analysis (like
+ * the constants of the optimizations) have no resolved type.
+ */
+public class NodeTypes {
+
+    public static final String TYPE = "resolvedType";
+    public static final String SYMBOL_KIND = "symbolKind";
+
+    private static final Map<Type, Type> TYPES = new ConcurrentHashMap<>();
+
+    public static final Type INT = intern("int", false);
+    public static final Type INT_ARRAY = intern("int", true);
+    public static final Type BOOLEAN = intern("boolean", false);
+
+    private NodeTypes() {
+    }
+
+    public static Type intern(Type type) {
+        return TYPES.computeIfAbsent(type, key -> key);
+    }
+
+    public static Type intern(String name, boolean isArray) {
+        return intern(new Type(name, isArray));
+    }
+
+    public static void setType(JmmNode node, Type type) {
+        node.putObject(TYPE, intern(type));
+    }
+
+    public static void setSymbol(JmmNode node, Symbol symbol, SymbolKind kind) {
+        setType(node, symbol.getType());
+        node.putObject(SYMBOL_KIND, kind);
+    }
+
+    public static Optional<Type> getType(JmmNode node) {
+        return node.getOptionalObject(TYPE)
+                .filter(Type.class::isInstance)
+                .map(Type.class::cast);
+    }
+
+    /**
+     * Whether the name used by the node is a local variable, a parameter or a field, if the analysis resolved it.
+     */
+    public static Optional<SymbolKind> getSymbolKind(JmmNode node) {
+        return node.getOptionalObject(SYMBOL_KIND)
+                .filter(SymbolKind.class::isInstance)
+                .map(SymbolKind.class::cast);
+    }
+}
@@ -0,0 +1,10 @@
+package pt.up.fe.comp2023.Analysis;
+
+/**
+ * What a name used in a method refers to, see {@link NodeTypes#getSymbolKind}.
+ */
+public enum SymbolKind {
+    LOCAL,
+    PARAMETER,
+    FIELD
+}
@@ -3,10 +3,10 @@ package pt.up.fe.comp2023.Analysis;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.ast.PreorderKindVisitor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -14,7 +14,7 @@ import java.util.stream.Collectors;
 
 import static pt.up.fe.comp2023.Analysis.MySymbolTable.getTypeFromNode;
 
-public class SymbolTableVisitor extends PreorderJmmVisitor<String, String> {
+public class SymbolTableVisitor extends PreorderKindVisitor<String, String> {
 
     private final MySymbolTable st;
 
@@ -5,7 +5,7 @@ import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp2023.Analysis.JmmSemanticAnalyser;
+import pt.up.fe.comp2023.Analysis.MethodAnalysis;
 import pt.up.fe.comp2023.Analysis.MySymbolTable;
 import pt.up.fe.comp2023.Analysis.SymbolTableVisitor;
 
@@ -28,8 +28,11 @@ public class AnalysisStage implements JmmAnalysis {
         visitor.visit(curr_node, "");
 
 //      VISITOR FOR SEMANTIC ANALYSIS
-        JmmSemanticAnalyser semanticAnalyser = new JmmSemanticAnalyser(st, reports);
-        semanticAnalyser.visit(curr_node, null);
+        if (MethodAnalysis.isEnabled(parserResult.getConfig())) {
+            reports.addAll(MethodAnalysis.analyseMethods(curr_node, st));
+        } else {
+            reports.addAll(MethodAnalysis.analyseClass(curr_node, st));
+        }
         System.out.println("\nSemantic Analysis Finished\n");
 
         return new JmmSemanticsResult(parserResult, st, reports);
@@ -0,0 +1,306 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.jasmin.JasminUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.jmm.jasmin.BytecodeResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles many .jmm files, running the full pipeline of each file on a bounded pool of worker threads.
+ * <p>
+ * Each file produces a {@code <ClassName>.j} and a {@code <ClassName>.class} in the output folder (only the class
+ * file with the bytecode backend). Results are reported per file, in the order the files were given, followed by the
+ * total throughput. The output files are named after the class, so when more than one input declares the same class
+ * every one of them fails and none of their output is kept.
+ */
+public class BatchCompiler {
+
+    public static final String JMM_EXTENSION = "jmm";
+    public static final String DEFAULT_OUTPUT_DIR = "jmm-out";
+
+    // The Jasmin assembler is not known to be thread-safe, so class files are assembled one at a time
+    private static final Object ASSEMBLER_LOCK = new Object();
+
+    private final Map<String, String> config;
+    private final int threads;
+    private final File outputDir;
+    private final CompilationCache cache;
+
+    public BatchCompiler(Map<String, String> config) {
+        this.config = config;
+        this.threads = getThreads(config);
+        this.outputDir = new File(config.getOrDefault("outputDir", DEFAULT_OUTPUT_DIR));
+        this.cache = CompilationCache.fromConfig(config).orElse(null);
+    }
+
+    public static class FileResult {
+        private final File inputFile;
+        private final List<Report> reports;
+        private final File classFile;
+        private final long elapsedNanos;
+
+        public FileResult(File inputFile, List<Report> reports, File classFile, long elapsedNanos) {
+            this.inputFile = inputFile;
+            this.reports = reports;
+            this.classFile = classFile;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public File getInputFile() {
+            return inputFile;
+        }
+
+        public List<Report> getReports() {
+            return reports;
+        }
+
+        public File getClassFile() {
+            return classFile;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public boolean isSuccess() {
+            return classFile != null;
+        }
+    }
+
+    /**
+     * Expands the given paths into the list of .jmm files to compile. Folders are searched recursively.
+     */
+    public static List<File> collectInputs(List<String> paths) {
+        List<File> inputs = new ArrayList<>();
+
+        for (String path : paths) {
+            File file = new File(path);
+
+            if (file.isDirectory()) {
+                SpecsIo.getFilesRecursive(file, JMM_EXTENSION).stream()
+                        .sorted(Comparator.comparing(File::getPath))
+                        .forEach(inputs::add);
+            } else if (file.isFile()) {
+                inputs.add(file);
+            } else {
+                throw new RuntimeException("Expected a path to an existing input file or folder, got '" + file + "'.");
+            }
+        }
+
+        return inputs;
+    }
+
+    public List<FileResult> compile(List<File> inputs) {
+        List<FileResult> results = new ArrayList<>();
+
+        if (inputs.isEmpty()) {
+            return results;
+        }
+
+        // The inputs that declare each class, the first one is the only one that writes its output
+        Map<String, List<File>> declarations = new ConcurrentHashMap<>();
+
+        // The first file is compiled on the calling thread, which fills the method cache used by the library parser
+        // to invoke the start rule (a plain HashMap), before any worker can race on it
+        results.add(compileFile(inputs.get(0), declarations));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<FileResult>> futures = new ArrayList<>();
+            for (File input : inputs.subList(1, inputs.size())) {
+                futures.add(pool.submit(() -> compileFile(input, declarations)));
+            }
+
+            for (Future<FileResult> future : futures) {
+                results.add(future.get());
+            }
+
+            return rejectDuplicateClasses(results, declarations);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while compiling files", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unexpected exception while compiling files", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Compiles all the given files and prints a line per file plus a summary to the given stream. The stages print
+     * debug information to System.out, which is silenced while the batch runs unless the config enables "debug".
+     *
+     * @return true if every file compiled without errors
+     */
+    public boolean run(List<File> inputs, PrintStream out) {
+        boolean verbose = "true".equals(config.get("debug"));
+        PrintStream stdout = System.out;
+
+        if (!verbose) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        long start = System.nanoTime();
+        List<FileResult> results;
+        try {
+            results = compile(inputs);
+        } finally {
+            System.setOut(stdout);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int failed = 0;
+        for (FileResult result : results) {
+            if (result.isSuccess()) {
+                out.printf("OK    %s -> %s (%.1f ms)%n", result.getInputFile(), result.getClassFile(),
+                        result.getElapsedNanos() / 1e6);
+            } else {
+                failed++;
+                out.printf("FAIL  %s (%.1f ms)%n", result.getInputFile(), result.getElapsedNanos() / 1e6);
+                result.getReports().stream()
+                        .filter(report -> report.getType() == ReportType.ERROR)
+                        .forEach(report -> out.println("\t" + report));
+            }
+        }
+
+        double seconds = elapsed / 1e9;
+        out.printf("Compiled %d file(s), %d failed, in %.2f s (%.1f files/s, %d thread(s))%n",
+                results.size(), failed, seconds, seconds > 0 ? results.size() / seconds : 0.0, threads);
+
+        if (cache != null) {
+            out.println(cache);
+        }
+
+        return failed == 0;
+    }
+
+    private FileResult compileFile(File input, Map<String, List<File>> declarations) {
+        long start = System.nanoTime();
+
+        String className = SpecsIo.removeExtension(input.getName());
+
+        JasminResult jasminResult = new JmmCompiler(cache).compile(input, className, config);
+
+        List<Report> reports = jasminResult.getReports();
+        File classFile = null;
+
+        if (!JmmCompiler.hasErrors(reports)
+                && (jasminResult.getJasminCode() != null || jasminResult instanceof BytecodeResult)
+                && declare(jasminResult.getClassName(), input, declarations)) {
+            try {
+                classFile = assemble(jasminResult);
+            } catch (RuntimeException e) {
+                reports = new ArrayList<>(reports);
+                reports.add(Report.newError(Stage.GENERATION, -1, -1,
+                        "Could not assemble Jasmin code: " + e.getMessage(), e));
+            }
+        }
+
+        return new FileResult(input, reports, classFile, System.nanoTime() - start);
+    }
+
+    /**
+     * Records that the input declares the class, returning whether it is the first one to do so.
+     */
+    private static boolean declare(String className, File input, Map<String, List<File>> declarations) {
+        List<File> inputs = declarations.compute(className, (name, previous) -> {
+            List<File> updated = previous == null ? new ArrayList<>() : previous;
+            updated.add(input);
+            return updated;
+        });
+
+        return inputs.get(0) == input;
+    }
+
+    /**
+     * Fails every input that declares a class some other input also declares, and removes the output the first of them
+     * wrote, since which one was first depends on the order the workers ran.
+     */
+    private List<FileResult> rejectDuplicateClasses(List<FileResult> results, Map<String, List<File>> declarations) {
+        Map<File, String> duplicates = new HashMap<>();
+
+        for (Map.Entry<String, List<File>> entry : declarations.entrySet()) {
+            List<File> inputs = entry.getValue();
+            if (inputs.size() < 2) {
+                continue;
+            }
+
+            // Listed by path, since the order they were declared in depends on the workers too
+            inputs.sort(Comparator.comparing(File::getPath));
+
+            new File(outputDir, entry.getKey() + ".j").delete();
+            new File(outputDir, entry.getKey() + ".class").delete();
+
+            for (File input : inputs) {
+                duplicates.put(input, entry.getKey());
+            }
+        }
+
+        if (duplicates.isEmpty()) {
+            return results;
+        }
+
+        List<FileResult> checked = new ArrayList<>();
+        for (FileResult result : results) {
+            String className = duplicates.get(result.getInputFile());
+            if (className == null) {
+                checked.add(result);
+                continue;
+            }
+
+            List<Report> reports = new ArrayList<>(result.getReports());
+            reports.add(Report.newError(Stage.GENERATION, -1, -1, "Class '" + className
+                    + "' is declared by more than one input, whose output files would overwrite each other: "
+                    + declarations.get(className), null));
+            checked.add(new FileResult(result.getInputFile(), reports, null, result.getElapsedNanos()));
+        }
+
+        return checked;
+    }
+
+    private File assemble(JasminResult jasminResult) {
+        // The class file was already generated, it only has to be written
+        if (jasminResult instanceof BytecodeResult) {
+            return jasminResult.compile(outputDir);
+        }
+
+        File jasminFile = new File(outputDir, jasminResult.getClassName() + ".j");
+        SpecsIo.write(jasminFile, jasminResult.getJasminCode());
+
+        synchronized (ASSEMBLER_LOCK) {
+            return JasminUtils.assemble(jasminFile, outputDir);
+        }
+    }
+
+    private static int getThreads(Map<String, String> config) {
+        String threads = config.get("threads");
+        if (threads == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        int parsed = Integer.parseInt(threads);
+        if (parsed < 1) {
+            throw new RuntimeException("Expected a positive number of threads, got '" + threads + "'.");
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,330 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp2023.jmm.jasmin.BytecodeBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk, content-addressed cache of compilation outputs.
+ * <p>
+ * Entries are keyed by the hash of the source code together with the options that change the generated code
+ * ({@code optimize}, {@code registerAllocation} and {@code ollirMode}) and the fingerprint of the compiler, and store
+ * the OLLIR and Jasmin code produced for that source. Only successful compilations are stored, so a hit can skip the
+ * whole pipeline, and a new build of the compiler never reads the entries of an older one. When the folder grows
+ * beyond its maximum size, the least recently used entries are removed.
+ */
+public class CompilationCache {
+
+    public static final String DEFAULT_DIR = ".jmm-cache";
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // Changing the format of the entries must change this version, the generated code is covered by the fingerprint
+    private static final String FORMAT_VERSION = "2";
+    private static final String ENTRY_EXTENSION = ".entry";
+
+    private static String compilerFingerprint;
+
+    private final File cacheDir;
+    private final long maxBytes;
+
+    // The entries by file name, from the least to the most recently used, with their sizes
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public static class Entry {
+        private final String className;
+        private final String ollirCode;
+        private final String jasminCode;
+
+        public Entry(String className, String ollirCode, String jasminCode) {
+            this.className = className;
+            this.ollirCode = ollirCode;
+            this.jasminCode = jasminCode;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getOllirCode() {
+            return ollirCode;
+        }
+
+        public String getJasminCode() {
+            return jasminCode;
+        }
+    }
+
+    public CompilationCache(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new RuntimeException("Could not create cache folder '" + cacheDir + "'.");
+        }
+
+        loadEntries();
+
+        // The folder may have been filled with a larger maximum size
+        evict();
+    }
+
+    /**
+     * Reads the entries in the folder once, so that the cache does not list it again on every store. Entries stored
+     * by other processes while this one runs are only seen the next time the cache is created.
+     */
+    private synchronized void loadEntries() {
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(ENTRY_EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        // Snapshot the times, they can change while sorting if other processes hit these entries
+        var lastAccess = Arrays.stream(files)
+                .collect(Collectors.toMap(file -> file, this::getLastAccess));
+        Arrays.sort(files, Comparator.comparing(lastAccess::get));
+
+        for (File file : files) {
+            entries.put(file.getName(), file.length());
+            size += file.length();
+        }
+    }
+
+    /**
+     * Creates the cache set up in the config, or returns empty if the config does not enable it (no "cacheDir").
+     * Entries hold Jasmin code, so the cache is not used with the bytecode backend either.
+     */
+    public static Optional<CompilationCache> fromConfig(Map<String, String> config) {
+        String dir = config.get("cacheDir");
+        if (dir == null || BytecodeBuilder.usesBytecode(config)) {
+            return Optional.empty();
+        }
+
+        String maxBytes = config.get("cacheMaxBytes");
+        return Optional.of(new CompilationCache(new File(dir),
+                maxBytes == null ? DEFAULT_MAX_BYTES : Long.parseLong(maxBytes)));
+    }
+
+    public Optional<Entry> get(String code, Map<String, String> config) {
+        File entryFile = getEntryFile(code, config);
+
+        Optional<Entry> entry = read(entryFile);
+        if (entry.isEmpty()) {
+            misses.incrementAndGet();
+            return entry;
+        }
+
+        hits.incrementAndGet();
+
+        synchronized (this) {
+            // Moves it to the most recently used
+            entries.get(entryFile.getName());
+        }
+
+        // The modification time is used as the last access time by the next runs
+        entryFile.setLastModified(System.currentTimeMillis());
+
+        return entry;
+    }
+
+    public void put(String code, Map<String, String> config, Entry entry) {
+        File entryFile = getEntryFile(code, config);
+
+        String contents = entry.getClassName() + "\n" + entry.getOllirCode().length() + "\n" + entry.getOllirCode()
+                + entry.getJasminCode();
+
+        try {
+            // Written to a temporary file first, so that a concurrent reader never sees a partial entry
+            Path tempFile = Files.createTempFile(cacheDir.toPath(), "tmp", null);
+            Files.writeString(tempFile, contents, StandardCharsets.UTF_8);
+            Files.move(tempFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write cache entry '" + entryFile + "'", e);
+        }
+
+        stores.incrementAndGet();
+
+        synchronized (this) {
+            Long previous = entries.put(entryFile.getName(), entryFile.length());
+            size += entryFile.length() - (previous == null ? 0 : previous);
+            evict();
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the cache fits in its maximum size.
+     */
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (size > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            iterator.remove();
+            size -= entry.getValue();
+
+            if (new File(cacheDir, entry.getKey()).delete()) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private FileTime getLastAccess(File file) {
+        try {
+            return Files.getLastModifiedTime(file.toPath());
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private Optional<Entry> read(File entryFile) {
+        String contents;
+        try {
+            contents = Files.readString(entryFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Missing (or just evicted) entry
+            return Optional.empty();
+        }
+
+        int classNameEnd = contents.indexOf('\n');
+        int lengthEnd = contents.indexOf('\n', classNameEnd + 1);
+        if (classNameEnd < 0 || lengthEnd < 0) {
+            return Optional.empty();
+        }
+
+        try {
+            String className = contents.substring(0, classNameEnd);
+            int ollirStart = lengthEnd + 1;
+            int ollirEnd = ollirStart + Integer.parseInt(contents.substring(classNameEnd + 1, lengthEnd));
+
+            return Optional.of(new Entry(className, contents.substring(ollirStart, ollirEnd),
+                    contents.substring(ollirEnd)));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            // Corrupted entry, it will be overwritten when the source is compiled again
+            return Optional.empty();
+        }
+    }
+
+    private File getEntryFile(String code, Map<String, String> config) {
+        return new File(cacheDir, getKey(code, config) + ENTRY_EXTENSION);
+    }
+
+    /**
+     * The key is the SHA-256 of the source code, of the options that change the generated code and of the compiler.
+     */
+    static String getKey(String code, Map<String, String> config) {
+        MessageDigest digest = newDigest();
+
+        digest.update(("v" + FORMAT_VERSION
+                + "\0compiler=" + getCompilerFingerprint()
+                + "\0optimize=" + config.get("optimize")
+                + "\0registerAllocation=" + config.get("registerAllocation")
+                + "\0ollirMode=" + config.get("ollirMode")
+                + "\0").getBytes(StandardCharsets.UTF_8));
+        digest.update(code.getBytes(StandardCharsets.UTF_8));
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * The SHA-256 of the classes of the compiler: of its jar, or of the class files when it runs from a folder. It is
+     * computed once, and falls back to the version in the manifest if the classes cannot be read.
+     */
+    static synchronized String getCompilerFingerprint() {
+        if (compilerFingerprint == null) {
+            compilerFingerprint = computeCompilerFingerprint();
+        }
+
+        return compilerFingerprint;
+    }
+
+    private static String computeCompilerFingerprint() {
+        CodeSource source = CompilationCache.class.getProtectionDomain().getCodeSource();
+        try {
+            Path location = Path.of(source.getLocation().toURI());
+            MessageDigest digest = newDigest();
+
+            if (Files.isDirectory(location)) {
+                List<Path> classFiles;
+                try (Stream<Path> files = Files.walk(location)) {
+                    classFiles = files.filter(file -> file.toString().endsWith(".class")).sorted().toList();
+                }
+                for (Path classFile : classFiles) {
+                    digest.update(location.relativize(classFile).toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(classFile));
+                }
+            } else {
+                digest.update(Files.readAllBytes(location));
+            }
+
+            return toHex(digest.digest());
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return "version " + CompilationCache.class.getPackage().getImplementationVersion();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.toString();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getStores() {
+        return stores.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        long lookups = getHits() + getMisses();
+        return String.format("Cache: %d hit(s), %d miss(es) (%.1f%% hit rate), %d stored, %d evicted",
+                getHits(), getMisses(), lookups == 0 ? 0.0 : 100.0 * getHits() / lookups, getStores(),
+                getEvictions());
+    }
+}
@@ -0,0 +1,327 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.specs.util.SpecsLogs;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Long-lived compiler server, so that repeated compilations do not pay for the JVM startup, the class loading and the
+ * construction of the lexer and parser DFA caches (which ANTLR keeps in static fields shared by every parser instance).
+ * <p>
+ * The server listens on a loopback port and handles one request at a time. Any local user can connect to that port,
+ * so the server writes a random token to a file only its owner can read ({@code ~/.jmm-daemon-<port>.token}, see
+ * {@link #getDefaultTokenFile}), and every request must start with it. A request is a sequence of lines:
+ * <pre>
+ * token &lt;token&gt;
+ * cwd &lt;working directory of the client&gt;
+ * arg &lt;argument&gt;         (zero or more, same arguments as the Launcher)
+ * end
+ * </pre>
+ * A request with the token followed by the single line {@code stop} shuts the server down. The reply frames every
+ * line the compiler (or the compiled program) prints as {@code out <line>}, followed by a last line
+ * {@code exit <code>}, so that the output can never be mistaken for the exit code.
+ */
+public class CompilerDaemon {
+
+    public static final String DAEMON_OPTION = "--daemon";
+    public static final int DEFAULT_PORT = 7845;
+    public static final String TOKEN_PREFIX = "token ";
+    public static final String OUTPUT_PREFIX = "out ";
+    public static final String EXIT_PREFIX = "exit ";
+
+    // Small program that goes through every stage, compiled once at startup to load and warm up the pipeline
+    private static final String WARMUP_CODE = "import io;\n"
+            + "class Warmup {\n"
+            + "    int field;\n"
+            + "    public int sum(int[] a, int n) {\n"
+            + "        int i; int s;\n"
+            + "        i = 0; s = 0;\n"
+            + "        while (i < n) { if (!(a[i] < 0) && true) { s = s + a[i] * 2; } else { s = s - 1; } i = i + 1; }\n"
+            + "        field = s;\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "    public static void main(String[] args) {\n"
+            + "        Warmup w; int[] a;\n"
+            + "        w = new Warmup(); a = new int[3]; a[0] = 1;\n"
+            + "        io.println(w.sum(a, a.length));\n"
+            + "    }\n"
+            + "}\n";
+
+    private final int port;
+    private final File tokenFile;
+    private final String token;
+
+    public CompilerDaemon(int port) {
+        this(port, getDefaultTokenFile(port));
+    }
+
+    public CompilerDaemon(int port, File tokenFile) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        this.token = HexFormat.of().formatHex(bytes);
+    }
+
+    /**
+     * The file the jmm script reads the token of the daemon on the given port from.
+     */
+    public static File getDefaultTokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".jmm-daemon-" + port + ".token");
+    }
+
+    /**
+     * Creates a daemon from the arguments that follow {@link #DAEMON_OPTION}, which can optionally be a port.
+     */
+    public static CompilerDaemon fromArgs(String[] args) {
+        if (args.length == 0) {
+            return new CompilerDaemon(DEFAULT_PORT);
+        }
+
+        if (args.length > 1) {
+            throw new RuntimeException("Expected at most one argument after " + DAEMON_OPTION + ", the port.");
+        }
+
+        return new CompilerDaemon(Integer.parseInt(args[0]));
+    }
+
+    public void serve() {
+        warmup();
+
+        try (var server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            writeTokenFile();
+            SpecsLogs.info("Compiler daemon listening on port " + port);
+
+            while (true) {
+                try (Socket client = server.accept()) {
+                    if (!handle(client)) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    SpecsLogs.info("Lost connection to client: " + e.getMessage());
+                }
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException("Could not start compiler daemon on port " + port, e);
+        } finally {
+            tokenFile.delete();
+        }
+
+        SpecsLogs.info("Compiler daemon stopped");
+    }
+
+    /**
+     * Writes the token to a file that only the owner of the daemon can read. It is written to a temporary file with
+     * those permissions first, so the token is never readable by others, even for a moment.
+     */
+    private void writeTokenFile() throws IOException {
+        Path target = tokenFile.getAbsoluteFile().toPath();
+        Path directory = target.getParent();
+
+        Path temp;
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            temp = Files.createTempFile(directory, ".jmm-daemon", null,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            temp = Files.createTempFile(directory, ".jmm-daemon", null);
+            File file = temp.toFile();
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+        }
+
+        Files.writeString(temp, token + "\n", StandardCharsets.UTF_8);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void warmup() {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        try {
+            var config = new HashMap<String, String>();
+            config.put("optimize", "true");
+            config.put("registerAllocation", "-1");
+            config.put("debug", "false");
+
+            new JmmCompiler().compile(WARMUP_CODE, "Warmup", config);
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * Reads and executes a single request.
+     *
+     * @return false if the client asked the daemon to stop
+     */
+    private boolean handle(Socket client) throws IOException {
+        var in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        var socketOut = new PrintStream(client.getOutputStream(), true, StandardCharsets.UTF_8);
+        var framed = new FramedOutputStream(socketOut);
+        var out = new PrintStream(framed, true, StandardCharsets.UTF_8);
+
+        String first = in.readLine();
+        if (first == null || !first.startsWith(TOKEN_PREFIX) || !isToken(first.substring(TOKEN_PREFIX.length()))) {
+            out.println("Invalid or missing daemon token");
+            socketOut.println(EXIT_PREFIX + 2);
+            return true;
+        }
+
+        File workingDir = null;
+        List<String> args = new ArrayList<>();
+
+        String line;
+        while ((line = in.readLine()) != null && !line.equals("end")) {
+            if (line.equals("stop")) {
+                socketOut.println(EXIT_PREFIX + 0);
+                return false;
+            } else if (line.startsWith("cwd ")) {
+                workingDir = new File(line.substring(4));
+            } else if (line.startsWith("arg ")) {
+                args.add(line.substring(4));
+            } else {
+                out.println("Unknown request line: " + line);
+                socketOut.println(EXIT_PREFIX + 2);
+                return true;
+            }
+        }
+
+        int status = compile(resolvePaths(args, workingDir), out);
+        framed.finish();
+        socketOut.println(EXIT_PREFIX + status);
+
+        return true;
+    }
+
+    private boolean isToken(String candidate) {
+        // Constant time, so the token cannot be guessed a character at a time
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                candidate.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Runs the launcher with the output of the compiler sent to the client. Requests are served one at a time, so it
+     * is safe to redirect the standard streams while a request runs.
+     *
+     * @return the exit code of the request
+     */
+    private int compile(List<String> args, PrintStream out) {
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+
+        System.setOut(out);
+        System.setErr(out);
+
+        try {
+            Map<String, String> config = Launcher.parseArgs(args.toArray(new String[0]));
+            return Launcher.run(config) ? 0 : 1;
+        } catch (RuntimeException e) {
+            out.println("Exception in compiler: " + e.getMessage());
+            return 1;
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+    }
+
+    /**
+     * The client paths are relative to its own working directory, not to the one of the daemon.
+     */
+    private static List<String> resolvePaths(List<String> args, File workingDir) {
+        if (workingDir == null) {
+            return args;
+        }
+
+        List<String> resolved = new ArrayList<>();
+
+        // Batch outputs go to the folder of the client by default
+        if (args.stream().noneMatch(arg -> arg.startsWith("-d="))) {
+            resolved.add("-d=" + new File(workingDir, BatchCompiler.DEFAULT_OUTPUT_DIR).getPath());
+        }
+
+        for (String arg : args) {
+            if (arg.startsWith("-d=")) {
+                resolved.add("-d=" + resolvePath(arg.substring(3), workingDir));
+            } else if (arg.equals("-cache")) {
+                resolved.add("-cache=" + resolvePath(CompilationCache.DEFAULT_DIR, workingDir));
+            } else if (arg.startsWith("-cache=")) {
+                resolved.add("-cache=" + resolvePath(arg.substring(7), workingDir));
+            } else if (arg.startsWith("-")) {
+                resolved.add(arg);
+            } else {
+                resolved.add(resolvePath(arg, workingDir));
+            }
+        }
+
+        return resolved;
+    }
+
+    private static String resolvePath(String path, File workingDir) {
+        var file = new File(path);
+        return file.isAbsolute() ? path : new File(workingDir, path).getPath();
+    }
+
+    /**
+     * Sends each line written to it as {@code out <line>}. A last line without a line break is only sent by
+     * {@link #finish}, since the print stream flushes after every write.
+     */
+    private static class FramedOutputStream extends OutputStream {
+        private final PrintStream target;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        FramedOutputStream(PrintStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (b == '\n') {
+                sendLine();
+            } else {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(bytes[i]);
+            }
+        }
+
+        synchronized void finish() {
+            if (line.size() > 0) {
+                sendLine();
+            }
+        }
+
+        private void sendLine() {
+            target.println(OUTPUT_PREFIX + line.toString(StandardCharsets.UTF_8));
+            line.reset();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package pt.up.fe.comp2023;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.jmm.jasmin.BytecodeBuilder;
+import pt.up.fe.comp2023.jmm.jasmin.JasminBuilder;
+import pt.up.fe.comp2023.ollir.JmmOptimizer;
+import pt.up.fe.comp2023.ollir.OllirPrinter;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the whole pipeline (parse, semantic analysis, optimization, OLLIR and Jasmin generation) for a single source.
+ * <p>
+ * Unlike {@link Launcher#main(String[])}, errors are not thrown: they are returned as reports in the result, so that
+ * many files can be compiled independently of each other.
+ */
+public class JmmCompiler {
+
+    private final CompilationCache cache;
+
+    public JmmCompiler() {
+        this(null);
+    }
+
+    /**
+     * @param cache cache of previous compilations, or null to always run the whole pipeline
+     */
+    public JmmCompiler(CompilationCache cache) {
+        this.cache = cache;
+    }
+
+    public JasminResult compile(String code, String className, Map<String, String> config) {
+        if (cache == null) {
+            return compileUncached(new SimpleParser().parse(code, config), code, className, config);
+        }
+
+        var cached = cache.get(code, config);
+        if (cached.isPresent()) {
+            return new JasminResult(cached.get().getClassName(), cached.get().getJasminCode(),
+                    Collections.emptyList(), config);
+        }
+
+        return compileUncached(new SimpleParser().parse(code, config), code, className, config);
+    }
+
+    /**
+     * Compiles a source file. Without a cache, which needs the code to compute its key, the file is parsed without
+     * reading it into a String.
+     */
+    public JasminResult compile(File input, String className, Map<String, String> config) {
+        if (cache != null) {
+            return compile(SpecsIo.read(input), className, config);
+        }
+
+        return compileUncached(new SimpleParser().parse(input, config), null, className, config);
+    }
+
+    private JasminResult compileUncached(JmmParserResult parserResult, String code, String className,
+                                         Map<String, String> config) {
+        try {
+            if (hasErrors(parserResult.getReports())) {
+                return new JasminResult(className, null, parserResult.getReports(), config);
+            }
+
+            JmmSemanticsResult semanticsResult = new AnalysisStage().semanticAnalysis(parserResult);
+            if (hasErrors(semanticsResult.getReports())) {
+                return new JasminResult(className, null, semanticsResult.getReports(), config);
+            }
+
+            var optimizer = new JmmOptimizer();
+
+            // Optimization stage
+            if (config.get("optimize") != null && config.get("optimize").equals("true")) {
+                semanticsResult = optimizer.optimize(semanticsResult);
+            }
+
+            JasminResult jasminResult;
+            String ollirCode;
+
+            if (JmmOptimizer.usesOllirText(config)) {
+                var ollirResult = optimizer.optimize(optimizer.toOllir(semanticsResult));
+                if (hasErrors(ollirResult.getReports())) {
+                    return new JasminResult(className, null, ollirResult.getReports(), config);
+                }
+
+                // The code of the result is the one generated before the optimizations, the class is optimized
+                ollirCode = cache != null ? OllirPrinter.print(ollirResult.getOllirClass()) : null;
+                jasminResult = getBackend(config).toJasmin(ollirResult);
+            } else {
+                ClassUnit classUnit = optimizer.toClassUnit(semanticsResult);
+
+                List<Report> reports = optimizer.optimize(classUnit, config);
+                if (hasErrors(reports)) {
+                    return new JasminResult(className, null, reports, config);
+                }
+
+                // The OLLIR code is only printed to be stored in the cache
+                ollirCode = cache != null ? OllirPrinter.print(classUnit) : null;
+                jasminResult = generate(classUnit, config);
+            }
+
+            if (cache != null && !hasErrors(jasminResult.getReports())) {
+                cache.put(code, config, new CompilationCache.Entry(jasminResult.getClassName(), ollirCode,
+                        jasminResult.getJasminCode()));
+            }
+
+            return jasminResult;
+
+        } catch (RuntimeException e) {
+            return JasminResult.newError(className,
+                    Report.newError(Stage.GENERATION, -1, -1, "Exception during compilation: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * The backend set in the config, Jasmin code by default or class files with "backend=bytecode".
+     */
+    public static JasminBackend getBackend(Map<String, String> config) {
+        return BytecodeBuilder.usesBytecode(config) ? new BytecodeBuilder() : new JasminBuilder();
+    }
+
+    /**
+     * Runs the backend set in the config on an OLLIR class that was built directly.
+     */
+    public static JasminResult generate(ClassUnit classUnit, Map<String, String> config) {
+        return BytecodeBuilder.usesBytecode(config)
+                ? new BytecodeBuilder().toBytecode(classUnit, config)
+                : new JasminBuilder().toJasmin(classUnit, config);
+    }
+
+    public static boolean hasErrors(List<Report> reports) {
+        return reports.stream().anyMatch(report -> report.getType() == ReportType.ERROR);
+    }
+}
@@ -1,17 +1,16 @@
 package pt.up.fe.comp2023;
 
 import pt.up.fe.comp.TestUtils;
-import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.parser.JmmParserResult;
-import pt.up.fe.comp2023.jmm.jasmin.JasminBuilder;
-import pt.up.fe.comp2023.ollir.JmmOptimizer;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsLogs;
 import pt.up.fe.specs.util.SpecsSystem;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Launcher {
@@ -20,9 +19,37 @@ public class Launcher {
         // Setups console logging and other things
         SpecsSystem.programStandardInit();
 
+        // Keep the compiler running in the background, serving requests from the jmm script
+        if (args.length > 0 && args[0].equals(CompilerDaemon.DAEMON_OPTION)) {
+            CompilerDaemon.fromArgs(Arrays.copyOfRange(args, 1, args.length)).serve();
+            return;
+        }
+
         // Parse arguments as a map with predefined options
         var config = parseArgs(args);
 
+        if (!run(config)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the compiler for the given config, without exiting the JVM. Errors in single file mode are thrown.
+     *
+     * @return false if some file of a batch failed to compile
+     */
+    static boolean run(Map<String, String> config) {
+        // Several inputs (or a folder) are compiled in batch mode
+        if (config.containsKey("inputFiles")) {
+            return runBatch(config);
+        }
+
+        compileAndRun(config);
+
+        return true;
+    }
+
+    private static void compileAndRun(Map<String, String> config) {
         // Get input file
         File inputFile = new File(config.get("inputFile"));
 
@@ -31,73 +58,89 @@ public class Launcher {
             throw new RuntimeException("Expected a path to an existing input file, got '" + inputFile + "'.");
         }
 
-        // Read contents of input file
-        String code = SpecsIo.read(inputFile);
-
-        // Instantiate JmmParser
-        SimpleParser parser = new SimpleParser();
-
-        // Parse stage
-        JmmParserResult parserResult = parser.parse(code, config);
+        // The same pipeline as batch mode, but the errors are thrown
+        var cache = CompilationCache.fromConfig(config);
+        String className = SpecsIo.removeExtension(inputFile.getName());
 
-        // Check if there are parsing errors
-        TestUtils.noErrors(parserResult.getReports());
+        JasminResult jasminResult = new JmmCompiler(cache.orElse(null)).compile(inputFile, className, config);
 
-        /* SEMANTIC ANALYSIS STAGE */
-        AnalysisStage analysisStage = new AnalysisStage();
+        TestUtils.noErrors(jasminResult);
 
-        JmmSemanticsResult semanticsResult = analysisStage.semanticAnalysis(parserResult);
+        cache.ifPresent(System.out::println);
 
-        TestUtils.noErrors(semanticsResult);
+        jasminResult.compile();
 
-        System.out.println(parserResult.getRootNode().toTree());
+        jasminResult.run();
 
-        System.out.println(semanticsResult.getSymbolTable().toString());
+    }
 
-        /* OLLIR */
+    private static boolean runBatch(Map<String, String> config) {
+        List<String> paths = Arrays.asList(config.get("inputFiles").split(File.pathSeparator));
 
-        var optimizer = new JmmOptimizer();
+        List<File> inputs = BatchCompiler.collectInputs(paths);
 
-        // Optimization stage
-        if (config.get("optimize") != null && config.get("optimize").equals("true")) {
-            semanticsResult = optimizer.optimize(semanticsResult);
+        if (inputs.isEmpty()) {
+            throw new RuntimeException("No .jmm files found in " + paths + ".");
         }
 
-        System.out.println(config.get("optimize"));
-
-        var ollirResult = optimizer.toOllir(semanticsResult);
-
-        TestUtils.noErrors(ollirResult);
-
-        /* JASMIN */
-
-        var jasminBuilder = new JasminBuilder();
-
-        var jasminResult = jasminBuilder.toJasmin(ollirResult);
-
-        TestUtils.noErrors(jasminResult);
-
-        jasminResult.compile();
-
-        jasminResult.run();
-
+        return new BatchCompiler(config).run(inputs, System.out);
     }
 
-    private static Map<String, String> parseArgs(String[] args) {
+    static Map<String, String> parseArgs(String[] args) {
         SpecsLogs.info("Executing with args: " + Arrays.toString(args));
 
-        // Check if there is at least one argument
-        if (args.length != 1) {
-            throw new RuntimeException("Expected a single argument, a path to an existing input file.");
-        }
-
         // Create config
         Map<String, String> config = new HashMap<>();
-        config.put("inputFile", args[0]);
         config.put("optimize", "true");
         config.put("registerAllocation", "-1");
         config.put("debug", "false");
 
+        // Options are -r=<registers>, -j=<threads>, -d=<outputDir>, -cache[=<dir>], -cache-max=<MB>,
+        // -ollir=<direct|text>, -backend=<jasmin|bytecode>, -prediction=<sll|ll>, -parser-cache=<shared|private> and
+        // -ast=<default|compact> and -analysis=<class|parallel>, everything else is an input path
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("-r=")) {
+                config.put("registerAllocation", Integer.toString(Integer.parseInt(arg.substring(3))));
+            } else if (arg.startsWith("-j=")) {
+                config.put("threads", arg.substring(3));
+            } else if (arg.startsWith("-d=")) {
+                config.put("outputDir", arg.substring(3));
+            } else if (arg.startsWith("-cache-max=")) {
+                config.put("cacheMaxBytes", Long.toString(Long.parseLong(arg.substring(11)) * 1024 * 1024));
+            } else if (arg.startsWith("-ollir=")) {
+                config.put("ollirMode", arg.substring(7));
+            } else if (arg.startsWith("-backend=")) {
+                config.put("backend", arg.substring(9));
+            } else if (arg.startsWith("-prediction=")) {
+                config.put("prediction", arg.substring(12));
+            } else if (arg.startsWith("-parser-cache=")) {
+                config.put("parserCache", arg.substring(14));
+            } else if (arg.startsWith("-ast=")) {
+                config.put("ast", arg.substring(5));
+            } else if (arg.startsWith("-analysis=")) {
+                config.put("analysis", arg.substring(10));
+            } else if (arg.equals("-cache")) {
+                config.put("cacheDir", CompilationCache.DEFAULT_DIR);
+            } else if (arg.startsWith("-cache=")) {
+                config.put("cacheDir", arg.substring(7));
+            } else {
+                paths.add(arg);
+            }
+        }
+
+        // Check if there is at least one input
+        if (paths.isEmpty()) {
+            throw new RuntimeException("Expected at least one argument, a path to an existing input file or folder.");
+        }
+
+        // A single file keeps the original behaviour, anything else is compiled in batch mode
+        if (paths.size() == 1 && !new File(paths.get(0)).isDirectory()) {
+            config.put("inputFile", paths.get(0));
+        } else {
+            config.put("inputFiles", String.join(File.pathSeparator, paths));
+        }
+
         return config;
     }
 
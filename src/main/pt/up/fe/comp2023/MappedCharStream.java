@@ -0,0 +1,148 @@
+package pt.up.fe.comp2023;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A character stream for the lexer that reads a memory-mapped source file, so the source is never copied into a
+ * String or a char array (only the text of each token is).
+ * <p>
+ * Each byte is a character, which is only true for ASCII files. {@link #open(File)} checks that and falls back to a
+ * decoded {@link ANTLRInputStream} for files with other characters, so that the lines and columns of the tokens are
+ * the same as when parsing the String.
+ */
+public class MappedCharStream implements CharStream {
+
+    private final ByteBuffer buffer;
+    private final String sourceName;
+    private final int size;
+
+    private int position = 0;
+
+    private MappedCharStream(ByteBuffer buffer, String sourceName) {
+        this.buffer = buffer;
+        this.sourceName = sourceName;
+        this.size = buffer.limit();
+    }
+
+    /**
+     * Maps the given file, or reads it as UTF-8 if it has characters outside of ASCII.
+     */
+    public static CharStream open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File '" + file + "' is too large to be parsed");
+            }
+
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (!isAscii(buffer)) {
+            byte[] bytes = new byte[buffer.limit()];
+            buffer.get(0, bytes);
+
+            ANTLRInputStream input = new ANTLRInputStream(new String(bytes, StandardCharsets.UTF_8));
+            input.name = file.getPath();
+            return input;
+        }
+
+        return new MappedCharStream(buffer, file.getPath());
+    }
+
+    private static boolean isAscii(ByteBuffer buffer) {
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void consume() {
+        if (position >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+
+        position++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            // Undefined
+            return 0;
+        }
+
+        // LA(-1) is the previous character and LA(1) the current one
+        int index = i < 0 ? position + i : position + i - 1;
+        if (index < 0 || index >= size) {
+            return IntStream.EOF;
+        }
+
+        return buffer.get(index);
+    }
+
+    @Override
+    public int mark() {
+        // Every position can be seeked to, there is nothing to keep
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(int index) {
+        position = Math.min(Math.max(index, 0), size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = interval.a;
+        int stop = Math.min(interval.b, size - 1);
+
+        if (start >= size || stop < start) {
+            return "";
+        }
+
+        byte[] bytes = new byte[stop - start + 1];
+        buffer.get(start, bytes);
+
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
@@ -0,0 +1,49 @@
+package pt.up.fe.comp2023;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Runs independent tasks, like the analysis of each method of a class, on the common fork-join pool.
+ */
+public class ParallelTasks {
+
+    private ParallelTasks() {
+    }
+
+    /**
+     * Applies the task to every item in parallel, and returns the results in the order of the items. If a task throws,
+     * the first exception in that order is rethrown as it was thrown, like when the tasks run one after the other.
+     */
+    public static <T, R> List<R> map(List<T> items, Function<T, R> task) {
+        List<CompletableFuture<R>> futures = new ArrayList<>();
+        for (T item : items) {
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(item), ForkJoinPool.commonPool()));
+        }
+
+        List<R> results = new ArrayList<>();
+        for (CompletableFuture<R> future : futures) {
+            results.add(join(future));
+        }
+
+        return results;
+    }
+
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package pt.up.fe.comp2023;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.ast.antlr.ThrowingErrorListener;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.ast.CompactAstBuilder;
+import pt.up.fe.specs.util.SpecsSystem;
 
-
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Copyright 2022 SPeCS.
@@ -35,21 +47,72 @@ public class SimpleParser implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        // Convert code string into a character stream
+        return parse(new ANTLRInputStream(jmmCode), startingRule, config);
+    }
+
+    /**
+     * Parses a source file without reading it into a String, see {@link MappedCharStream}.
+     */
+    public JmmParserResult parse(File file, Map<String, String> config) {
+        CharStream input;
+        try {
+            input = MappedCharStream.open(file);
+        } catch (IOException e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1,
+                    "Could not read input file '" + file + "'", e));
+        }
+
+        return parse(input, getDefaultRule(), config);
+    }
+
+    private JmmParserResult parse(CharStream input, String startingRule, Map<String, String> config) {
 
         try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
             // Transform characters into tokens using the lexer
             var lex = new pt.up.fe.comp2023.JavammLexer(input);
             // Wrap lexer around a token stream
             var tokens = new CommonTokenStream(lex);
             // Transforms tokens into a parse treeS
             var parser = new pt.up.fe.comp2023.JavammParser(tokens);
-            // Set the error listener to the one provided by the JmmParserResult
+
+            if (usesPrivateCache(config)) {
+                setPrivateCache(parser);
+            }
+
+            // Most sources parse with the faster SLL prediction, which is only retried in full LL when it fails
+            Optional<JmmNode> root = Optional.empty();
+            boolean parsed = false;
+
+            if (usesSllPrediction(config)) {
+                parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+                parser.setErrorHandler(new BailErrorStrategy());
+                parser.removeErrorListeners();
+
+                try {
+                    root = parseRule(lex, parser, startingRule, config);
+                    parsed = true;
+                } catch (RuntimeException e) {
+                    if (!isCancelled(e)) {
+                        throw e;
+                    }
+
+                    tokens.seek(0);
+                    parser.reset();
+                    parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+                    parser.setErrorHandler(new DefaultErrorStrategy());
+                    parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                }
+            }
+
+            if (!parsed) {
+                root = parseRule(lex, parser, startingRule, config);
+            }
+
             // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule)
+            return root
                     // If there were no errors and a root node was generated, create a JmmParserResult with the node
-                    .map(root -> new JmmParserResult(root, Collections.emptyList(), config))
+                    .map(node -> new JmmParserResult(node, Collections.emptyList(), config))
                     // If there were errors, create an error JmmParserResult without root node
                     .orElseGet(() -> JmmParserResult.newError(new Report(ReportType.ERROR, Stage.SYNTATIC, -1,
                             "There were syntax errors during parsing, terminating with " + parser.getNumberOfSyntaxErrors() + " syntatic error(s).")));
@@ -59,4 +122,73 @@ public class SimpleParser implements JmmParser {
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e));
         }
     }
+
+    /**
+     * Invokes the rule and converts the parse tree into a JmmNode, like {@link AntlrParser#parse}. With "ast" set to
+     * "compact" the tree is a {@link pt.up.fe.comp2023.ast.CompactAst}, unless the grammar has nodes to ignore (which
+     * only the library conversion removes).
+     */
+    private static Optional<JmmNode> parseRule(Lexer lex, Parser parser, String rule, Map<String, String> config) {
+        if (!usesCompactAst(config) || !AntlrParser.getIgnoreList(parser).isEmpty()) {
+            return AntlrParser.parse(lex, parser, rule);
+        }
+
+        // Setup listeners so that an exception is thrown where there is an error
+        lex.removeErrorListeners();
+        lex.addErrorListener(new ThrowingErrorListener());
+
+        var tree = (ParseTree) SpecsSystem.invoke(parser, rule);
+
+        if (parser.getNumberOfSyntaxErrors() > 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(CompactAstBuilder.build(tree, parser).getRoot());
+    }
+
+    /**
+     * The AST is made of JmmNodeImpl nodes unless the config sets "ast" to "compact".
+     */
+    public static boolean usesCompactAst(Map<String, String> config) {
+        return "compact".equals(config.get("ast"));
+    }
+
+    /**
+     * SLL prediction is used first unless the config sets "prediction" to "ll".
+     */
+    public static boolean usesSllPrediction(Map<String, String> config) {
+        return !"ll".equals(config.get("prediction"));
+    }
+
+    /**
+     * By default all parsers share the DFA and prediction context cache of the generated parser, which keep growing
+     * as new inputs are seen. With "parserCache" set to "private" each parse starts from an empty cache instead.
+     */
+    public static boolean usesPrivateCache(Map<String, String> config) {
+        return "private".equals(config.get("parserCache"));
+    }
+
+    private static void setPrivateCache(Parser parser) {
+        ATN atn = parser.getATN();
+
+        DFA[] decisionToDFA = new DFA[atn.getNumberOfDecisions()];
+        for (int i = 0; i < decisionToDFA.length; i++) {
+            decisionToDFA[i] = new DFA(atn.getDecisionState(i), i);
+        }
+
+        parser.setInterpreter(new ParserATNSimulator(parser, atn, decisionToDFA, new PredictionContextCache()));
+    }
+
+    /**
+     * The start rule is invoked by reflection, so the exception of the bail out strategy arrives wrapped.
+     */
+    private static boolean isCancelled(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ParseCancellationException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
@@ -0,0 +1,337 @@
+package pt.up.fe.comp2023.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An AST stored as a struct of arrays: every node is an index into int arrays that hold its schema (kind, hierarchy
+ * and attribute names, shared by all the nodes of the same kind), parent, children, position and attribute values.
+ * Strings are interned and integer literals are kept as ints, so a node takes a few dozen bytes instead of a map of
+ * strings.
+ * <p>
+ * Nodes are read through {@link CompactNode} views, which implement {@link JmmNode} for the existing visitors. The
+ * arrays are never changed after the tree is built; attributes put and children replaced afterwards are kept in small
+ * maps on the side, which also allows foreign nodes (like a {@code JmmNodeImpl} created by an optimization) in the
+ * tree.
+ */
+public class CompactAst {
+
+    // Encoding of the attribute values, non-negative values are string ids
+    static final int ABSENT = -1;
+    static final int NULL = -2;
+    static final int INT_LITERAL = -3;
+    private static final int FIRST_OBJECT = -4;
+
+    // Interned strings
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    // Schemas, one per kind of node
+    private final List<String> schemaKinds = new ArrayList<>();
+    private int[] schemaKindIds = new int[0];
+    private final List<int[]> schemaHierarchyIds = new ArrayList<>();
+    private final List<List<String>> schemaHierarchies = new ArrayList<>();
+    private final List<String[]> schemaAttributes = new ArrayList<>();
+
+    // Values of other types (lists, booleans, references to nodes)
+    private final List<Object> objects = new ArrayList<>();
+
+    // Nodes
+    private int size = 0;
+    private int[] schema = new int[16];
+    private int[] parent = new int[16];
+    private int[] childStart = new int[16];
+    private int[] childCount = new int[16];
+    private int[] lineStart = new int[16];
+    private int[] colStart = new int[16];
+    private int[] lineEnd = new int[16];
+    private int[] colEnd = new int[16];
+    private int[] attributeStart = new int[16];
+    private int[] intValue = new int[16];
+
+    private int[] childPool = new int[16];
+    private int childPoolSize = 0;
+    private int[] attributePool = new int[16];
+    private int attributePoolSize = 0;
+
+    // Changes after the tree was built. The analysis of each method may run on its own thread (see MethodAnalysis), and
+    // puts the types it resolves in the nodes of its method
+    private final Map<Integer, Map<String, Object>> changedAttributes = new ConcurrentHashMap<>();
+    private final Map<Integer, List<JmmNode>> changedChildren = new HashMap<>();
+    private final Map<Integer, JmmNode> changedParents = new HashMap<>();
+
+    private CompactNode[] views = new CompactNode[16];
+
+    public int getSize() {
+        return size;
+    }
+
+    public CompactNode getRoot() {
+        return size == 0 ? null : getNode(0);
+    }
+
+    /**
+     * The view of a node, always the same object for the same node so that nodes can be compared by identity.
+     */
+    public CompactNode getNode(int node) {
+        if (views.length < size) {
+            views = Arrays.copyOf(views, size);
+        }
+
+        CompactNode view = views[node];
+        if (view == null) {
+            view = new CompactNode(this, node);
+            views[node] = view;
+        }
+
+        return view;
+    }
+
+    // Building
+
+    int intern(String string) {
+        Integer id = stringIds.get(string);
+        if (id == null) {
+            id = strings.size();
+            strings.add(string);
+            stringIds.put(string, id);
+        }
+
+        return id;
+    }
+
+    int addSchema(List<String> hierarchy, String[] attributes) {
+        int schema = schemaKinds.size();
+
+        schemaKinds.add(hierarchy.get(0));
+        schemaHierarchies.add(Collections.unmodifiableList(new ArrayList<>(hierarchy)));
+        schemaAttributes.add(attributes);
+
+        // The kinds are interned once per schema, not once per node
+        int[] hierarchyIds = NodeKinds.getIds(hierarchy);
+        schemaHierarchyIds.add(hierarchyIds);
+        schemaKindIds = Arrays.copyOf(schemaKindIds, schema + 1);
+        schemaKindIds[schema] = hierarchyIds[0];
+
+        return schema;
+    }
+
+    int encodeObject(Object value) {
+        objects.add(value);
+        return FIRST_OBJECT - (objects.size() - 1);
+    }
+
+    void setObject(int value, Object object) {
+        objects.set(FIRST_OBJECT - value, object);
+    }
+
+    /**
+     * Adds a node, whose attribute values (one per attribute of the schema) are added with {@link #setAttribute}.
+     */
+    int addNode(int nodeSchema, int nodeParent, int[] position) {
+        if (size == schema.length) {
+            int capacity = size * 2;
+            schema = Arrays.copyOf(schema, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            childStart = Arrays.copyOf(childStart, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            lineStart = Arrays.copyOf(lineStart, capacity);
+            colStart = Arrays.copyOf(colStart, capacity);
+            lineEnd = Arrays.copyOf(lineEnd, capacity);
+            colEnd = Arrays.copyOf(colEnd, capacity);
+            attributeStart = Arrays.copyOf(attributeStart, capacity);
+            intValue = Arrays.copyOf(intValue, capacity);
+        }
+
+        int node = size++;
+        schema[node] = nodeSchema;
+        parent[node] = nodeParent;
+        lineStart[node] = position[0];
+        colStart[node] = position[1];
+        lineEnd[node] = position[2];
+        colEnd[node] = position[3];
+
+        int attributes = schemaAttributes.get(nodeSchema).length;
+        attributePool = ensureCapacity(attributePool, attributePoolSize + attributes);
+        attributeStart[node] = attributePoolSize;
+        Arrays.fill(attributePool, attributePoolSize, attributePoolSize + attributes, ABSENT);
+        attributePoolSize += attributes;
+
+        return node;
+    }
+
+    void setAttribute(int node, int attribute, int value) {
+        attributePool[attributeStart[node] + attribute] = value;
+    }
+
+    void setIntValue(int node, int value) {
+        intValue[node] = value;
+    }
+
+    void setChildren(int node, int[] children, int count) {
+        childPool = ensureCapacity(childPool, childPoolSize + count);
+        System.arraycopy(children, 0, childPool, childPoolSize, count);
+
+        childStart[node] = childPoolSize;
+        childCount[node] = count;
+        childPoolSize += count;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    /**
+     * Shrinks the arrays to the number of nodes, once the tree is built.
+     */
+    void trim() {
+        schema = Arrays.copyOf(schema, size);
+        parent = Arrays.copyOf(parent, size);
+        childStart = Arrays.copyOf(childStart, size);
+        childCount = Arrays.copyOf(childCount, size);
+        lineStart = Arrays.copyOf(lineStart, size);
+        colStart = Arrays.copyOf(colStart, size);
+        lineEnd = Arrays.copyOf(lineEnd, size);
+        colEnd = Arrays.copyOf(colEnd, size);
+        attributeStart = Arrays.copyOf(attributeStart, size);
+        intValue = Arrays.copyOf(intValue, size);
+        childPool = Arrays.copyOf(childPool, childPoolSize);
+        attributePool = Arrays.copyOf(attributePool, attributePoolSize);
+        views = new CompactNode[size];
+    }
+
+    // Reading, used by the views
+
+    String getKind(int node) {
+        return schemaKinds.get(schema[node]);
+    }
+
+    int getKindId(int node) {
+        return schemaKindIds[schema[node]];
+    }
+
+    int[] getHierarchyIds(int node) {
+        return schemaHierarchyIds.get(schema[node]);
+    }
+
+    List<String> getHierarchy(int node) {
+        return schemaHierarchies.get(schema[node]);
+    }
+
+    int getLineStart(int node) {
+        return lineStart[node];
+    }
+
+    int getColStart(int node) {
+        return colStart[node];
+    }
+
+    int getLineEnd(int node) {
+        return lineEnd[node];
+    }
+
+    int getColEnd(int node) {
+        return colEnd[node];
+    }
+
+    int getIntValue(int node) {
+        return intValue[node];
+    }
+
+    String[] getAttributeNames(int node) {
+        return schemaAttributes.get(schema[node]);
+    }
+
+    /**
+     * The encoded value of an attribute of the schema, or ABSENT if the node does not have it.
+     */
+    int getAttribute(int node, String name) {
+        String[] names = getAttributeNames(node);
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return attributePool[attributeStart[node] + i];
+            }
+        }
+
+        return ABSENT;
+    }
+
+    int getAttribute(int node, int attribute) {
+        return attributePool[attributeStart[node] + attribute];
+    }
+
+    Object decode(int node, int value) {
+        if (value >= 0) {
+            return strings.get(value);
+        }
+
+        return switch (value) {
+            case ABSENT, NULL -> null;
+            case INT_LITERAL -> Integer.toString(intValue[node]);
+            default -> {
+                Object object = objects.get(FIRST_OBJECT - value);
+                // References to nodes are kept as indexes until they are read
+                yield object instanceof NodeReference reference ? getNode(reference.node()) : object;
+            }
+        };
+    }
+
+    Map<String, Object> getChangedAttributes(int node) {
+        return changedAttributes.get(node);
+    }
+
+    Map<String, Object> changeAttributes(int node) {
+        return changedAttributes.computeIfAbsent(node, key -> new LinkedHashMap<>());
+    }
+
+    JmmNode getParent(int node) {
+        if (changedParents.containsKey(node)) {
+            return changedParents.get(node);
+        }
+
+        return parent[node] < 0 ? null : getNode(parent[node]);
+    }
+
+    void setParent(int node, JmmNode newParent) {
+        changedParents.put(node, newParent);
+    }
+
+    int getNumChildren(int node) {
+        List<JmmNode> children = changedChildren.get(node);
+        return children != null ? children.size() : childCount[node];
+    }
+
+    JmmNode getChild(int node, int index) {
+        List<JmmNode> children = changedChildren.get(node);
+        if (children != null) {
+            return children.get(index);
+        }
+
+        if (index < 0 || index >= childCount[node]) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + childCount[node]
+                    + " children");
+        }
+        return getNode(childPool[childStart[node] + index]);
+    }
+
+    /**
+     * The children of the node as a list that can be changed, which replaces the children in the arrays.
+     */
+    List<JmmNode> changeChildren(int node) {
+        return changedChildren.computeIfAbsent(node, key -> {
+            List<JmmNode> children = new ArrayList<>(childCount[node]);
+            for (int i = 0; i < childCount[node]; i++) {
+                children.add(getNode(childPool[childStart[node] + i]));
+            }
+            return children;
+        });
+    }
+
+    /**
+     * An attribute whose value is another node of the tree, like the type of a method.
+     */
+    record NodeReference(int node) {
+    }
+}
@@ -0,0 +1,229 @@
+package pt.up.fe.comp2023.ast;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Converts an ANTLR parse tree into a {@link CompactAst}, with the same nodes and attributes as the conversion of the
+ * library ({@code AntlrToJmmNodeConverter}): one node per rule context, the public fields of the context classes as
+ * attributes, and the positions of the first and last tokens.
+ * <p>
+ * The fields of each context class are looked up once, instead of once per node.
+ */
+public class CompactAstBuilder {
+
+    private final TokenStream tokens;
+    private final CompactAst ast = new CompactAst();
+
+    private final Map<Class<?>, Schema> schemas = new HashMap<>();
+    private final Map<Object, Integer> constants = new HashMap<>();
+
+    // Rule contexts used as attributes are replaced by their nodes once the whole tree is built
+    private final Map<ParseTree, Integer> nodes = new IdentityHashMap<>();
+    private final Map<Integer, ParseTree> references = new LinkedHashMap<>();
+
+    private final int[] position = new int[4];
+
+    private CompactAstBuilder(Parser parser) {
+        this.tokens = parser.getTokenStream();
+    }
+
+    public static CompactAst build(ParseTree root, Parser parser) {
+        CompactAstBuilder builder = new CompactAstBuilder(parser);
+
+        builder.convert(root, -1);
+        builder.ast.trim();
+
+        return builder.ast;
+    }
+
+    private int convert(ParseTree node, int parent) {
+        if (!(node instanceof ParserRuleContext context)) {
+            throw new RuntimeException("Expected node to be of class '" + ParserRuleContext.class + "', but got '"
+                    + node.getClass() + "'");
+        }
+
+        Schema schema = getSchema(context.getClass());
+
+        Token start = tokens.get(node.getSourceInterval().a);
+        Token end = tokens.get(node.getSourceInterval().b);
+        position[0] = start.getLine();
+        position[1] = start.getCharPositionInLine();
+        position[2] = end.getLine();
+        position[3] = end.getCharPositionInLine();
+
+        int index = ast.addNode(schema.id, parent, position);
+        nodes.put(node, index);
+        addAttributes(index, context, schema);
+
+        int[] children = new int[node.getChildCount()];
+        int numChildren = 0;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            ParseTree child = node.getChild(i);
+
+            // Tokens are not nodes of the AST
+            if (child instanceof TerminalNode) {
+                continue;
+            }
+
+            children[numChildren++] = convert(child, index);
+        }
+        ast.setChildren(index, children, numChildren);
+
+        if (parent == -1) {
+            resolveReferences();
+        }
+
+        return index;
+    }
+
+    private void addAttributes(int index, ParserRuleContext context, Schema schema) {
+        boolean hasIntLiteral = false;
+
+        for (int i = 0; i < schema.fields.length; i++) {
+            Object value;
+            try {
+                value = schema.fields[i].get(context);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Could not access field '" + schema.fields[i].getName() + "' from node "
+                        + context);
+            }
+
+            if (schema.isToken[i]) {
+                // A field without a token is not an attribute
+                if (value == null) {
+                    continue;
+                }
+
+                String text = ((Token) value).getText();
+                Integer literal = hasIntLiteral ? null : parseInt(text);
+                if (literal != null) {
+                    ast.setIntValue(index, literal);
+                    ast.setAttribute(index, i, CompactAst.INT_LITERAL);
+                    hasIntLiteral = true;
+                } else {
+                    ast.setAttribute(index, i, ast.intern(text));
+                }
+                continue;
+            }
+
+            ast.setAttribute(index, i, encode(value));
+        }
+    }
+
+    private int encode(Object value) {
+        if (value == null) {
+            return CompactAst.NULL;
+        }
+
+        if (value instanceof Token token) {
+            return ast.intern(token.getText());
+        }
+
+        if (value instanceof ParserRuleContext context) {
+            int encoded = ast.encodeObject(context);
+            references.put(encoded, context);
+            return encoded;
+        }
+
+        if (value instanceof List<?> list) {
+            List<Object> elements = new ArrayList<>(list.size());
+            for (Object element : list) {
+                elements.add(element instanceof Token token ? token.getText() : element);
+            }
+            return ast.encodeObject(elements);
+        }
+
+        // Values like the booleans of the rule locals are shared by all the nodes
+        return constants.computeIfAbsent(value, ast::encodeObject);
+    }
+
+    private void resolveReferences() {
+        for (Map.Entry<Integer, ParseTree> reference : references.entrySet()) {
+            Integer node = nodes.get(reference.getValue());
+            if (node == null) {
+                System.out.println("Could not find JmmNode for ANTLR node " + reference.getValue());
+                continue;
+            }
+
+            ast.setObject(reference.getKey(), new CompactAst.NodeReference(node));
+        }
+    }
+
+    /**
+     * The value of an integer literal, if it is written exactly like its int value (so that it reads the same).
+     */
+    private static Integer parseInt(String text) {
+        if (text.isEmpty() || text.length() > 10) {
+            return null;
+        }
+
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return null;
+            }
+        }
+
+        try {
+            int value = Integer.parseInt(text);
+            return Integer.toString(value).equals(text) ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Schema getSchema(Class<?> contextClass) {
+        Schema schema = schemas.get(contextClass);
+        if (schema != null) {
+            return schema;
+        }
+
+        // The hierarchy and the fields of all the classes up to ParserRuleContext
+        List<String> hierarchy = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> current = contextClass; !current.equals(ParserRuleContext.class);
+             current = current.getSuperclass()) {
+            hierarchy.add(getKind(current));
+
+            for (Field field : current.getDeclaredFields()) {
+                if (Modifier.isPublic(field.getModifiers())) {
+                    fields.add(field);
+                }
+            }
+        }
+
+        String[] names = new String[fields.size()];
+        boolean[] isToken = new boolean[fields.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = fields.get(i).getName();
+            isToken[i] = fields.get(i).getType().isAssignableFrom(Token.class);
+        }
+
+        schema = new Schema(ast.addSchema(hierarchy, names), fields.toArray(new Field[0]), isToken);
+        schemas.put(contextClass, schema);
+
+        return schema;
+    }
+
+    private static String getKind(Class<?> nodeClass) {
+        String className = nodeClass.getSimpleName();
+
+        // Rules end with context
+        if (!className.endsWith("Context")) {
+            throw new RuntimeException("Expected classname to end with 'Context' " + className);
+        }
+
+        return className.substring(0, className.length() - "Context".length());
+    }
+
+    private record Schema(int id, Field[] fields, boolean[] isToken) {
+    }
+}
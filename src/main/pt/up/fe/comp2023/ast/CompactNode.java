@@ -0,0 +1,278 @@
+package pt.up.fe.comp2023.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.specs.util.SpecsCheck;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * A node of a {@link CompactAst}, which only holds the tree and the index of the node. It behaves like the
+ * {@code JmmNodeImpl} built by the library parser: same kinds, hierarchies and attributes (with the positions as
+ * Strings), and the same results when the tree is changed.
+ */
+public class CompactNode implements JmmNode {
+
+    private static final List<String> POSITIONS = List.of(NodePosition.LINE_START.getKey(),
+            NodePosition.COL_START.getKey(), NodePosition.LINE_END.getKey(), NodePosition.COL_END.getKey());
+
+    private final CompactAst ast;
+    private final int index;
+
+    CompactNode(CompactAst ast, int index) {
+        this.ast = ast;
+        this.index = index;
+    }
+
+    public CompactAst getAst() {
+        return ast;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getLineStart() {
+        return ast.getLineStart(index);
+    }
+
+    public int getColStart() {
+        return ast.getColStart(index);
+    }
+
+    public int getLineEnd() {
+        return ast.getLineEnd(index);
+    }
+
+    public int getColEnd() {
+        return ast.getColEnd(index);
+    }
+
+    /**
+     * The id of the kind of the node, see {@link NodeKinds}.
+     */
+    public int getKindId() {
+        return ast.getKindId(index);
+    }
+
+    int[] getHierarchyIds() {
+        return ast.getHierarchyIds(index);
+    }
+
+    @Override
+    public String getKind() {
+        return ast.getKind(index);
+    }
+
+    @Override
+    public Collection<String> getHierarchy() {
+        return ast.getHierarchy(index);
+    }
+
+    @Override
+    public Collection<String> getAttributes() {
+        // Iterated in the same order as the attributes of a JmmNodeImpl, which are kept in a HashMap
+        Set<String> attributes = new HashSet<>(POSITIONS);
+
+        String[] names = ast.getAttributeNames(index);
+        for (int i = 0; i < names.length; i++) {
+            if (ast.getAttribute(index, i) != CompactAst.ABSENT) {
+                attributes.add(names[i]);
+            }
+        }
+
+        Map<String, Object> changed = ast.getChangedAttributes(index);
+        if (changed != null) {
+            attributes.addAll(changed.keySet());
+        }
+
+        return attributes;
+    }
+
+    @Override
+    public boolean hasAttribute(String attribute) {
+        Map<String, Object> changed = ast.getChangedAttributes(index);
+        if (changed != null && changed.containsKey(attribute)) {
+            return true;
+        }
+
+        return ast.getAttribute(index, attribute) != CompactAst.ABSENT || POSITIONS.contains(attribute);
+    }
+
+    @Override
+    public void putObject(String attribute, Object value) {
+        ast.changeAttributes(index).put(attribute, value);
+    }
+
+    @Override
+    public Object getObject(String attribute) {
+        Object value = getOptionalObject(attribute).orElse(null);
+
+        SpecsCheck.checkNotNull(value, () -> "Node " + getKind() + " does not contain attribute '" + attribute + "'");
+
+        return value;
+    }
+
+    @Override
+    public Optional<Object> getOptionalObject(String attribute) {
+        Map<String, Object> changed = ast.getChangedAttributes(index);
+        if (changed != null && changed.containsKey(attribute)) {
+            return Optional.ofNullable(changed.get(attribute));
+        }
+
+        int value = ast.getAttribute(index, attribute);
+        if (value != CompactAst.ABSENT) {
+            return Optional.ofNullable(ast.decode(index, value));
+        }
+
+        return Optional.ofNullable(getPosition(attribute));
+    }
+
+    private String getPosition(String attribute) {
+        return switch (attribute) {
+            case "lineStart" -> Integer.toString(getLineStart());
+            case "colStart" -> Integer.toString(getColStart());
+            case "lineEnd" -> Integer.toString(getLineEnd());
+            case "colEnd" -> Integer.toString(getColEnd());
+            default -> null;
+        };
+    }
+
+    @Override
+    public JmmNode getJmmParent() {
+        return ast.getParent(index);
+    }
+
+    @Override
+    public void setParent(JmmNode parent) {
+        ast.setParent(index, parent);
+    }
+
+    @Override
+    public void removeParent() {
+        ast.setParent(index, null);
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        int numChildren = getNumChildren();
+
+        List<JmmNode> children = new ArrayList<>(numChildren);
+        for (int i = 0; i < numChildren; i++) {
+            children.add(getJmmChild(i));
+        }
+
+        return children;
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        return ast.getChild(this.index, index);
+    }
+
+    @Override
+    public int getNumChildren() {
+        return ast.getNumChildren(index);
+    }
+
+    @Override
+    public void add(JmmNode child, int index) {
+        ast.changeChildren(this.index).add(index, child);
+        child.setParent(this);
+    }
+
+    @Override
+    public void setChild(JmmNode newNode, int index) {
+        JmmNode currentChild = getJmmChild(index);
+
+        // Remove parent before setting
+        JmmNode newNodeParent = newNode.getJmmParent();
+        int newNodeCurrentIndex = -1;
+
+        if (newNodeParent != null) {
+            newNodeCurrentIndex = newNode.getIndexOfSelf();
+            newNode.removeParent();
+        }
+
+        ast.changeChildren(this.index).set(index, newNode);
+        newNode.setParent(this);
+
+        // Remove parent from current child
+        currentChild.removeParent();
+
+        // If new node had a parent, set this node at the old position of the new node. It is replaced in place, since
+        // removing it would also clear the parent of the new node when both have the same parent
+        if (newNodeParent instanceof CompactNode compactParent) {
+            compactParent.ast.changeChildren(compactParent.index).set(newNodeCurrentIndex, currentChild);
+            currentChild.setParent(newNodeParent);
+        } else if (newNodeParent != null) {
+            newNodeParent.removeJmmChild(newNodeCurrentIndex);
+            newNodeParent.add(currentChild, newNodeCurrentIndex);
+            newNode.setParent(this);
+        }
+    }
+
+    @Override
+    public JmmNode removeJmmChild(int index) {
+        int numChildren = getNumChildren();
+        if (index >= numChildren) {
+            System.out.println("[WARNING] Tried to remove child at index " + index + ", but node only has "
+                    + numChildren + " children");
+            return null;
+        }
+
+        JmmNode removedChild = ast.changeChildren(this.index).remove(index);
+        removedChild.removeParent();
+        return removedChild;
+    }
+
+    @Override
+    public int removeJmmChild(JmmNode node) {
+        int numChildren = getNumChildren();
+        for (int i = 0; i < numChildren; i++) {
+            if (getJmmChild(i) == node) {
+                removeJmmChild(i);
+                return i;
+            }
+        }
+
+        System.out.println("[WARNING] Tried to remove child from node, but could not find it.\nChild:" + node
+                + "\nParent:" + this);
+        return -1;
+    }
+
+    @Override
+    public void delete() {
+        JmmNode parent = getJmmParent();
+        if (parent == null) {
+            System.out.println("[WARNING] Tried to remove itself from the tree, but node has no parent");
+            return;
+        }
+
+        parent.removeJmmChild(this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder(getKind());
+
+        List<String> attributes = getAttributes().stream()
+                .filter(attribute -> !POSITIONS.contains(attribute))
+                .collect(Collectors.toList());
+
+        if (!attributes.isEmpty()) {
+            string.append(attributes.stream()
+                    .map(attribute -> attribute + ": " + get(attribute))
+                    .collect(Collectors.joining(", ", " (", ")")));
+        }
+
+        if (SpecsSystem.isDebug()) {
+            string.append(" ").append(getLineStart()).append(":").append(getColStart())
+                    .append("->").append(getLineEnd()).append(":").append(getColEnd());
+        }
+
+        return string.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package pt.up.fe.comp2023.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.specs.util.SpecsCheck;
+
+import java.util.Arrays;
+import java.util.function.BiFunction;
+
+/**
+ * The visit methods of a visitor, in an array indexed by kind id (see {@link NodeKinds}) instead of a map from the
+ * name of the kind.
+ * <p>
+ * Like {@code AJmmVisitor}, a node whose kind has no visit method uses the method of the first kind of its hierarchy
+ * that has one, or the default visit.
+ */
+public class KindDispatch<D, R> {
+
+    private BiFunction<JmmNode, D, R>[] visits = newArray(0);
+    private BiFunction<JmmNode, D, R> defaultVisit;
+
+    public void addVisit(String kind, BiFunction<JmmNode, D, R> method) {
+        int id = NodeKinds.getId(kind);
+        if (id >= visits.length) {
+            visits = Arrays.copyOf(visits, id + 1);
+        }
+
+        visits[id] = method;
+    }
+
+    public void setDefaultVisit(BiFunction<JmmNode, D, R> defaultVisit) {
+        this.defaultVisit = defaultVisit;
+    }
+
+    public BiFunction<JmmNode, D, R> getVisit(JmmNode node) {
+        BiFunction<JmmNode, D, R> visit = getVisit(NodeKinds.getId(node));
+        if (visit != null) {
+            return visit;
+        }
+
+        for (int kind : NodeKinds.getHierarchyIds(node)) {
+            visit = getVisit(kind);
+            if (visit != null) {
+                return visit;
+            }
+        }
+
+        SpecsCheck.checkNotNull(defaultVisit, () -> "Could not find a suitable visit method for node of kind "
+                + node.getKind() + ", and no default visitor is set");
+
+        return defaultVisit;
+    }
+
+    private BiFunction<JmmNode, D, R> getVisit(int kind) {
+        return kind < visits.length ? visits[kind] : null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <D, R> BiFunction<JmmNode, D, R>[] newArray(int size) {
+        return (BiFunction<JmmNode, D, R>[]) new BiFunction[size];
+    }
+}
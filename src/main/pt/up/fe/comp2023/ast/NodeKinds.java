@@ -0,0 +1,82 @@
+package pt.up.fe.comp2023.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Small integer ids for the kinds of the nodes, shared by all the trees and visitors, so that visitors can dispatch
+ * with an array indexed by kind id (see {@link KindDispatch}).
+ * <p>
+ * The nodes of a {@link CompactAst} get their ids when the tree is built. Other nodes (like the {@code JmmNodeImpl}
+ * of the library parser) look up their kind here when they are visited.
+ */
+public class NodeKinds {
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final List<String> KINDS = new ArrayList<>();
+
+    private NodeKinds() {
+    }
+
+    public static int getId(String kind) {
+        Integer id = IDS.get(kind);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (KINDS) {
+            return IDS.computeIfAbsent(kind, key -> {
+                KINDS.add(key);
+                return KINDS.size() - 1;
+            });
+        }
+    }
+
+    public static int getId(JmmNode node) {
+        if (node instanceof CompactNode compactNode) {
+            return compactNode.getKindId();
+        }
+
+        return getId(node.getKind());
+    }
+
+    public static int[] getIds(Collection<String> kinds) {
+        int[] ids = new int[kinds.size()];
+
+        int i = 0;
+        for (String kind : kinds) {
+            ids[i++] = getId(kind);
+        }
+
+        return ids;
+    }
+
+    /**
+     * The ids of the hierarchy of the node, starting from its own kind.
+     */
+    public static int[] getHierarchyIds(JmmNode node) {
+        if (node instanceof CompactNode compactNode) {
+            return compactNode.getHierarchyIds();
+        }
+
+        return getIds(node.getHierarchy());
+    }
+
+    public static String getKind(int id) {
+        synchronized (KINDS) {
+            return KINDS.get(id);
+        }
+    }
+
+    /**
+     * The number of kinds with an id, all ids are lower than this.
+     */
+    public static int size() {
+        return IDS.size();
+    }
+}
@@ -0,0 +1,38 @@
+package pt.up.fe.comp2023.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+
+import java.util.function.BiFunction;
+
+/**
+ * A {@link PreorderJmmVisitor} that finds the visit method of each node with a {@link KindDispatch}.
+ */
+public abstract class PreorderKindVisitor<D, R> extends PreorderJmmVisitor<D, R> {
+
+    // Created by the constructor of AJmmVisitor, which calls buildVisitor, so it cannot have an initializer
+    private KindDispatch<D, R> dispatch;
+
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, D, R> method) {
+        getDispatch().addVisit(kind, method);
+    }
+
+    @Override
+    public void setDefaultVisit(BiFunction<JmmNode, D, R> defaultVisit) {
+        getDispatch().setDefaultVisit(defaultVisit);
+    }
+
+    @Override
+    protected BiFunction<JmmNode, D, R> getVisit(JmmNode node) {
+        return getDispatch().getVisit(node);
+    }
+
+    private KindDispatch<D, R> getDispatch() {
+        if (dispatch == null) {
+            dispatch = new KindDispatch<>();
+        }
+
+        return dispatch;
+    }
+}
@@ -0,0 +1,531 @@
+package pt.up.fe.comp2023.jmm.jasmin;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.*;
+
+import static org.specs.comp.ollir.InstructionType.BINARYOPER;
+import static org.specs.comp.ollir.InstructionType.RETURN;
+
+/**
+ * Backend that generates the class file directly from the OLLIR class, without writing and assembling Jasmin code.
+ * <p>
+ * It selects the same instructions as the {@link JasminBuilder}, and lets ASM compute the stack map frames and the
+ * maximum stack and locals of each method. It can be used by the tests by setting it as the {@code BackendClass} in
+ * config.properties, and by the launcher with {@code -backend=bytecode}.
+ */
+public class BytecodeBuilder implements JasminBackend {
+
+    private ClassUnit classUnit;
+    private String superClass;
+
+    // Labels of the method being generated
+    private final Map<String, Label> labels = new HashMap<>();
+
+    public static boolean usesBytecode(Map<String, String> config) {
+        return "bytecode".equals(config.get("backend"));
+    }
+
+    @Override
+    public JasminResult toJasmin(OllirResult ollirResult) {
+        JasminResult result = toBytecode(ollirResult.getOllirClass(), ollirResult.getConfig());
+
+        List<Report> reports = new ArrayList<>(ollirResult.getReports());
+        reports.addAll(result.getReports());
+
+        return new BytecodeResult(result.getClassName(), ((BytecodeResult) result).getBytecode(), reports,
+                result.getConfig());
+    }
+
+    public BytecodeResult toBytecode(ClassUnit classUnit, Map<String, String> config) {
+        try {
+            this.classUnit = classUnit;
+
+            // SETUP classUnit
+            this.classUnit.checkMethodLabels();
+            this.classUnit.buildCFGs();
+            this.classUnit.buildVarTables();
+
+            System.out.println("Generating bytecode ...");
+
+            return new BytecodeResult(classUnit.getClassName(), buildClass(), new ArrayList<>(), config);
+
+        } catch (OllirErrorException | RuntimeException e) {
+            return new BytecodeResult(classUnit.getClassName(), null,
+                    Collections.singletonList(Report.newError(Stage.GENERATION, -1, -1,
+                            "Bytecode generation exception: " + e.getMessage(), e)), config);
+        }
+    }
+
+    private byte[] buildClass() {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            // The default implementation loads the classes, which fails for the class being generated and for
+            // classes that are not in the classpath of the compiler
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                try {
+                    return super.getCommonSuperClass(type1, type2);
+                } catch (RuntimeException | LinkageError e) {
+                    return "java/lang/Object";
+                }
+            }
+        };
+
+        this.superClass = this.classUnit.getSuperClass();
+        if (this.superClass == null || this.superClass.equals("Object")) {
+            this.superClass = "java/lang/Object";
+        } else {
+            this.superClass = getClassFullName(this.superClass);
+        }
+
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, this.classUnit.getClassName(), null,
+                this.superClass, null);
+
+        for (Field field : this.classUnit.getFields()) {
+            int access = getAccess(field.getFieldAccessModifier());
+            if (field.isStaticField()) {
+                access |= Opcodes.ACC_STATIC;
+            }
+            if (field.isInitialized()) {
+                access |= Opcodes.ACC_FINAL;
+            }
+
+            classWriter.visitField(access, field.getFieldName(), getDescriptor(field.getFieldType()), null, null)
+                    .visitEnd();
+        }
+
+        for (Method method : this.classUnit.getMethods()) {
+            buildMethod(classWriter, method);
+        }
+
+        classWriter.visitEnd();
+
+        return classWriter.toByteArray();
+    }
+
+    private void buildMethod(ClassWriter classWriter, Method method) {
+        int access = getAccess(method.getMethodAccessModifier());
+        if (method.isStaticMethod()) {
+            access |= Opcodes.ACC_STATIC;
+        }
+        if (method.isFinalMethod()) {
+            access |= Opcodes.ACC_FINAL;
+        }
+
+        String name = method.getMethodName();
+        if (method.isConstructMethod()) {
+            access |= Opcodes.ACC_PUBLIC;
+            name = "<init>";
+        }
+
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Element param : method.getParams()) {
+            descriptor.append(getDescriptor(param.getType()));
+        }
+        descriptor.append(")").append(getDescriptor(method.getReturnType()));
+
+        MethodVisitor mv = classWriter.visitMethod(access, name, descriptor.toString(), null, null);
+        mv.visitCode();
+
+        this.labels.clear();
+        HashMap<String, Descriptor> varTable = method.getVarTable();
+
+        Map<Instruction, List<String>> labelIndex = JasminBuilder.buildLabelIndex(method);
+
+        List<Instruction> methodInst = method.getInstructions();
+        for (Instruction inst : methodInst) {
+            for (String label : labelIndex.getOrDefault(inst, Collections.emptyList())) {
+                mv.visitLabel(getLabel(label));
+            }
+
+            dealWithInst(inst, varTable, mv);
+
+            if (inst.getInstType() == InstructionType.CALL
+                    && ((CallInstruction) inst).getReturnType().getTypeOfElement() != ElementType.VOID) {
+                mv.visitInsn(Opcodes.POP);
+            }
+        }
+
+        boolean hasReturnInstruction = methodInst.size() > 0
+                && methodInst.get(methodInst.size() - 1).getInstType() == RETURN;
+
+        if (!hasReturnInstruction && method.getReturnType().getTypeOfElement() == ElementType.VOID) {
+            mv.visitInsn(Opcodes.RETURN);
+        }
+
+        // The maximums are computed by the class writer
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void dealWithInst(Instruction inst, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        switch (inst.getInstType()) {
+            case ASSIGN -> dealWithAssign((AssignInstruction) inst, varTable, mv);
+            case CALL -> dealWithCall((CallInstruction) inst, varTable, mv);
+            case GOTO -> mv.visitJumpInsn(Opcodes.GOTO, getLabel(((GotoInstruction) inst).getLabel()));
+            case BRANCH -> dealWithBranch((CondBranchInstruction) inst, varTable, mv);
+            case RETURN -> dealWithReturn((ReturnInstruction) inst, varTable, mv);
+            case PUTFIELD -> dealWithPutField((PutFieldInstruction) inst, varTable, mv);
+            case GETFIELD -> dealWithGetField((GetFieldInstruction) inst, varTable, mv);
+            case UNARYOPER -> dealWithUnaryOper((UnaryOpInstruction) inst, varTable, mv);
+            case BINARYOPER -> dealWithBinaryOper((BinaryOpInstruction) inst, varTable, mv);
+            case NOPER -> dealWithLoadToStack(((SingleOpInstruction) inst).getSingleOperand(), varTable, mv);
+        }
+    }
+
+    private void dealWithUnaryOper(UnaryOpInstruction inst, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        if (inst.getOperation().getOpType() != OperationType.NOTB) {
+            throw new RuntimeException("Unary operation not implemented: " + inst.getOperation().getOpType());
+        }
+
+        // Booleans are 0 or 1, so the negation does not need a jump
+        dealWithLoadToStack(inst.getOperand(), varTable, mv);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitInsn(Opcodes.IXOR);
+    }
+
+    private void dealWithBinaryOper(BinaryOpInstruction inst, HashMap<String, Descriptor> varTable,
+                                    MethodVisitor mv) {
+        dealWithLoadToStack(inst.getLeftOperand(), varTable, mv);
+        dealWithLoadToStack(inst.getRightOperand(), varTable, mv);
+
+        OperationType operType = inst.getOperation().getOpType();
+        switch (operType) {
+            case ADD -> mv.visitInsn(Opcodes.IADD);
+            case SUB -> mv.visitInsn(Opcodes.ISUB);
+            case MUL -> mv.visitInsn(Opcodes.IMUL);
+            case DIV -> mv.visitInsn(Opcodes.IDIV);
+            case ANDB -> mv.visitInsn(Opcodes.IAND);
+            case ORB -> mv.visitInsn(Opcodes.IOR);
+            case EQ, GTH, GTE, LTH, LTE, NEQ -> {
+                Label isTrue = new Label();
+                Label next = new Label();
+
+                mv.visitJumpInsn(getCompareOpcode(operType), isTrue);
+                mv.visitInsn(Opcodes.ICONST_0);
+                mv.visitJumpInsn(Opcodes.GOTO, next);
+                mv.visitLabel(isTrue);
+                mv.visitInsn(Opcodes.ICONST_1);
+                mv.visitLabel(next);
+            }
+            default -> throw new RuntimeException("Binary operation not implemented: " + operType);
+        }
+    }
+
+    private void dealWithBranch(CondBranchInstruction inst, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        Instruction condition = inst.getCondition();
+        Label label = getLabel(inst.getLabel());
+
+        if (condition instanceof BinaryOpInstruction binaryOp) {
+            OperationType operType = binaryOp.getOperation().getOpType();
+            Element leftElement = binaryOp.getLeftOperand();
+            Element rightElement = binaryOp.getRightOperand();
+
+            switch (operType) {
+                case LTH -> {
+                    // instruction selection for 0 < x and x < 0
+                    if (isZero(leftElement)) {
+                        dealWithLoadToStack(rightElement, varTable, mv);
+                        mv.visitJumpInsn(Opcodes.IFGT, label);
+                    } else if (isZero(rightElement)) {
+                        dealWithLoadToStack(leftElement, varTable, mv);
+                        mv.visitJumpInsn(Opcodes.IFLT, label);
+                    } else {
+                        dealWithLoadToStack(leftElement, varTable, mv);
+                        dealWithLoadToStack(rightElement, varTable, mv);
+                        mv.visitJumpInsn(Opcodes.IF_ICMPLT, label);
+                    }
+                    return;
+                }
+                case EQ, GTH, GTE, LTE, NEQ -> {
+                    dealWithLoadToStack(leftElement, varTable, mv);
+                    dealWithLoadToStack(rightElement, varTable, mv);
+                    mv.visitJumpInsn(getCompareOpcode(operType), label);
+                    return;
+                }
+                default -> {
+                }
+            }
+        } else if (condition instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            dealWithLoadToStack(unaryOp.getOperand(), varTable, mv);
+            mv.visitJumpInsn(Opcodes.IFEQ, label);
+            return;
+        }
+
+        dealWithInst(condition, varTable, mv);
+        mv.visitJumpInsn(Opcodes.IFNE, label);
+    }
+
+    private void dealWithPutField(PutFieldInstruction inst, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        dealWithLoadToStack(inst.getFirstOperand(), varTable, mv);
+        dealWithLoadToStack(inst.getThirdOperand(), varTable, mv);
+
+        mv.visitFieldInsn(Opcodes.PUTFIELD, getClassFullName(((Operand) inst.getFirstOperand()).getName()),
+                ((Operand) inst.getSecondOperand()).getName(), getDescriptor(inst.getSecondOperand().getType()));
+    }
+
+    private void dealWithGetField(GetFieldInstruction inst, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        dealWithLoadToStack(inst.getFirstOperand(), varTable, mv);
+
+        mv.visitFieldInsn(Opcodes.GETFIELD, getClassFullName(((Operand) inst.getFirstOperand()).getName()),
+                ((Operand) inst.getSecondOperand()).getName(), getDescriptor(inst.getSecondOperand().getType()));
+    }
+
+    private void dealWithReturn(ReturnInstruction inst, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        if (!inst.hasReturnValue()) {
+            mv.visitInsn(Opcodes.RETURN);
+            return;
+        }
+
+        dealWithLoadToStack(inst.getOperand(), varTable, mv);
+
+        ElementType elementType = inst.getOperand().getType().getTypeOfElement();
+        if (elementType == ElementType.INT32 || elementType == ElementType.BOOLEAN) {
+            mv.visitInsn(Opcodes.IRETURN);
+        } else {
+            mv.visitInsn(Opcodes.ARETURN);
+        }
+    }
+
+    private void dealWithCall(CallInstruction inst, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        switch (inst.getInvocationType()) {
+            case invokevirtual -> {
+                dealWithLoadToStack(inst.getFirstArg(), varTable, mv);
+                for (Element element : inst.getListOfOperands()) {
+                    dealWithLoadToStack(element, varTable, mv);
+                }
+
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                        getClassFullName(((ClassType) inst.getFirstArg().getType()).getName()),
+                        getMethodName(inst), getMethodDescriptor(inst), false);
+            }
+            case invokespecial -> {
+                dealWithLoadToStack(inst.getFirstArg(), varTable, mv);
+
+                String owner = inst.getFirstArg().getType().getTypeOfElement() == ElementType.THIS
+                        ? this.superClass
+                        : getClassFullName(((ClassType) inst.getFirstArg().getType()).getName());
+
+                mv.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, "<init>", getMethodDescriptor(inst), false);
+            }
+            case invokestatic -> {
+                for (Element element : inst.getListOfOperands()) {
+                    dealWithLoadToStack(element, varTable, mv);
+                }
+
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, getClassFullName(((Operand) inst.getFirstArg()).getName()),
+                        getMethodName(inst), getMethodDescriptor(inst), false);
+            }
+            case NEW -> {
+                ElementType elementType = inst.getReturnType().getTypeOfElement();
+
+                if (elementType == ElementType.OBJECTREF) {
+                    mv.visitTypeInsn(Opcodes.NEW, getClassFullName(((Operand) inst.getFirstArg()).getName()));
+                } else if (elementType == ElementType.ARRAYREF
+                        && inst.getListOfOperands().get(0).getType().getTypeOfElement() == ElementType.INT32) {
+                    dealWithLoadToStack(inst.getListOfOperands().get(0), varTable, mv);
+                    mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+                } else {
+                    throw new RuntimeException("NEW invocation type not implemented: " + elementType);
+                }
+            }
+            case arraylength -> {
+                dealWithLoadToStack(inst.getFirstArg(), varTable, mv);
+                mv.visitInsn(Opcodes.ARRAYLENGTH);
+            }
+            case ldc -> dealWithLoadToStack(inst.getFirstArg(), varTable, mv);
+            default -> throw new RuntimeException("Call instruction not implemented: " + inst.getInvocationType());
+        }
+    }
+
+    private void dealWithAssign(AssignInstruction inst, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        Operand dest = (Operand) inst.getDest();
+
+        if (dest instanceof ArrayOperand arrayOperand) {
+            mv.visitVarInsn(Opcodes.ALOAD, getVirtualReg(arrayOperand.getName(), varTable));
+            dealWithLoadToStack(arrayOperand.getIndexOperands().get(0), varTable, mv);
+
+        } else if (inst.getRhs() instanceof BinaryOpInstruction binaryOp
+                && binaryOp.getOperation().getOpType() == OperationType.ADD) {
+            // var = var + literal, with a literal that fits in a byte
+            Element left = binaryOp.getLeftOperand();
+            Element right = binaryOp.getRightOperand();
+
+            LiteralElement literal = null;
+            Operand operand = null;
+            if (left.isLiteral() && !right.isLiteral()) {
+                literal = (LiteralElement) left;
+                operand = (Operand) right;
+            } else if (!left.isLiteral() && right.isLiteral()) {
+                literal = (LiteralElement) right;
+                operand = (Operand) left;
+            }
+
+            if (literal != null && operand.getName().equals(dest.getName())) {
+                int literalValue = Integer.parseInt(literal.getLiteral());
+
+                if (literalValue >= -128 && literalValue <= 127) {
+                    mv.visitIincInsn(varTable.get(operand.getName()).getVirtualReg(), literalValue);
+                    return;
+                }
+            }
+        }
+
+        dealWithInst(inst.getRhs(), varTable, mv);
+        dealWithStore(dest, varTable, mv);
+    }
+
+    private void dealWithStore(Operand dest, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        switch (dest.getType().getTypeOfElement()) {
+            case INT32, BOOLEAN -> {
+                if (varTable.get(dest.getName()).getVarType().getTypeOfElement() == ElementType.ARRAYREF) {
+                    mv.visitInsn(Opcodes.IASTORE);
+                } else {
+                    mv.visitVarInsn(Opcodes.ISTORE, getVirtualReg(dest.getName(), varTable));
+                }
+            }
+            case OBJECTREF, THIS, STRING, ARRAYREF ->
+                    mv.visitVarInsn(Opcodes.ASTORE, getVirtualReg(dest.getName(), varTable));
+            default -> throw new RuntimeException("Store not implemented: " + dest.getType().getTypeOfElement());
+        }
+    }
+
+    private void dealWithLoadToStack(Element element, HashMap<String, Descriptor> varTable, MethodVisitor mv) {
+        if (element instanceof LiteralElement literalElement) {
+            String literal = literalElement.getLiteral();
+            ElementType elementType = element.getType().getTypeOfElement();
+
+            if (elementType == ElementType.INT32 || elementType == ElementType.BOOLEAN) {
+                pushInt(Integer.parseInt(literal), mv);
+            } else {
+                mv.visitLdcInsn(literal);
+            }
+
+        } else if (element instanceof ArrayOperand operand) {
+            mv.visitVarInsn(Opcodes.ALOAD, getVirtualReg(operand.getName(), varTable));
+            dealWithLoadToStack(operand.getIndexOperands().get(0), varTable, mv);
+            mv.visitInsn(Opcodes.IALOAD);
+
+        } else if (element instanceof Operand operand) {
+            if (!varTable.containsKey(operand.getName())
+                    && (operand.getName().equals("false") || operand.getName().equals("true"))) {
+                mv.visitInsn(operand.getName().equals("true") ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+                return;
+            }
+
+            switch (operand.getType().getTypeOfElement()) {
+                case INT32, BOOLEAN -> mv.visitVarInsn(Opcodes.ILOAD, getVirtualReg(operand.getName(), varTable));
+                case OBJECTREF, STRING, ARRAYREF ->
+                        mv.visitVarInsn(Opcodes.ALOAD, getVirtualReg(operand.getName(), varTable));
+                case THIS -> mv.visitVarInsn(Opcodes.ALOAD, 0);
+                default -> throw new RuntimeException("Load not implemented: " + operand.getType().getTypeOfElement());
+            }
+
+        } else {
+            throw new RuntimeException("Invalid element instance: " + element);
+        }
+    }
+
+    private void pushInt(int value, MethodVisitor mv) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= -128 && value <= 127) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= -32768 && value <= 32767) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && Integer.parseInt(literal.getLiteral()) == 0;
+    }
+
+    private static int getCompareOpcode(OperationType operType) {
+        return switch (operType) {
+            case EQ -> Opcodes.IF_ICMPEQ;
+            case GTH -> Opcodes.IF_ICMPGT;
+            case GTE -> Opcodes.IF_ICMPGE;
+            case LTH -> Opcodes.IF_ICMPLT;
+            case LTE -> Opcodes.IF_ICMPLE;
+            case NEQ -> Opcodes.IF_ICMPNE;
+            default -> throw new RuntimeException("Not a comparison: " + operType);
+        };
+    }
+
+    private static int getAccess(AccessModifiers accessModifier) {
+        return switch (accessModifier) {
+            case PUBLIC -> Opcodes.ACC_PUBLIC;
+            case PRIVATE -> Opcodes.ACC_PRIVATE;
+            case PROTECTED -> Opcodes.ACC_PROTECTED;
+            case DEFAULT -> 0;
+        };
+    }
+
+    private Label getLabel(String name) {
+        return this.labels.computeIfAbsent(name, key -> new Label());
+    }
+
+    private static int getVirtualReg(String name, HashMap<String, Descriptor> varTable) {
+        if (name.equals("this")) {
+            return 0;
+        }
+
+        return varTable.get(name).getVirtualReg();
+    }
+
+    private static String getMethodName(CallInstruction inst) {
+        return ((LiteralElement) inst.getSecondArg()).getLiteral().replace("\"", "");
+    }
+
+    private String getMethodDescriptor(CallInstruction inst) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Element element : inst.getListOfOperands()) {
+            descriptor.append(getDescriptor(element.getType()));
+        }
+
+        return descriptor.append(")").append(getDescriptor(inst.getReturnType())).toString();
+    }
+
+    private String getDescriptor(Type type) {
+        ElementType elementType = type.getTypeOfElement();
+
+        if (elementType == ElementType.ARRAYREF) {
+            return "[" + getDescriptor(((ArrayType) type).getElementType());
+        }
+
+        return switch (elementType) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case OBJECTREF -> "L" + getClassFullName(((ClassType) type).getName()) + ";";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+            default -> throw new RuntimeException("Descriptor type not implemented: " + elementType);
+        };
+    }
+
+    private String getClassFullName(String classNameWithoutImports) {
+        if (classNameWithoutImports.equals("this")) {
+            return this.classUnit.getClassName();
+        }
+
+        for (String importName : this.classUnit.getImports()) {
+            if (importName.endsWith(classNameWithoutImports)) {
+                return importName.replaceAll("\\.", "/");
+            }
+        }
+
+        return classNameWithoutImports;
+    }
+}
@@ -0,0 +1,48 @@
+package pt.up.fe.comp2023.jmm.jasmin;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of the {@link BytecodeBuilder}. It holds the bytes of the class file instead of Jasmin code, so compiling
+ * (and running) it just writes the class file, without assembling any code.
+ */
+public class BytecodeResult extends JasminResult {
+
+    private final byte[] bytecode;
+
+    public BytecodeResult(String className, byte[] bytecode, List<Report> reports, Map<String, String> config) {
+        super(className, null, reports, config);
+        this.bytecode = bytecode;
+    }
+
+    public byte[] getBytecode() {
+        return bytecode;
+    }
+
+    /**
+     * Writes the class file to the given folder.
+     *
+     * @return a reference to the .class file
+     */
+    @Override
+    public File compile(File outputDir) {
+        File classFile = new File(outputDir, getClassName() + ".class");
+        SpecsIo.mkdir(outputDir);
+
+        try {
+            Files.write(classFile.toPath(), bytecode);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write class file '" + classFile + "'", e);
+        }
+
+        return classFile;
+    }
+}
@@ -7,7 +7,14 @@ import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
-
+import pt.up.fe.comp2023.ParallelTasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 import static org.specs.comp.ollir.InstructionType.BINARYOPER;
@@ -16,40 +23,97 @@ import static org.specs.comp.ollir.InstructionType.RETURN;
 
 public class JasminBuilder implements JasminBackend {
     ClassUnit classUnit = null;
+    // Numbers the TRUE/NEXT labels of a method
     int condNumber = 0;
     String superClass;
 
-    int methodStackLimit = 0;
-    int currentStack = 0;
+    List<Report> reports = new ArrayList<>();
+
+    public JasminBuilder() {
+    }
+
+    /**
+     * The builder of one method of the class, with its own labels and reports, so that methods can be emitted at the
+     * same time.
+     */
+    private JasminBuilder(JasminBuilder classBuilder) {
+        this.classUnit = classBuilder.classUnit;
+        this.superClass = classBuilder.superClass;
+    }
 
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
-        try {
-            this.classUnit = ollirResult.getOllirClass();
+        JasminResult result = toJasmin(ollirResult.getOllirClass(), ollirResult.getConfig());
 
-            // SETUP classUnit
-            this.classUnit.checkMethodLabels();
-            this.classUnit.buildCFGs();
-            this.classUnit.buildVarTables();
+        List<Report> reports = new ArrayList<>(ollirResult.getReports());
+        reports.addAll(result.getReports());
 
-            System.out.println("Generating Jasmin code ...");
+        return new JasminResult(result.getClassName(), result.getJasminCode(), reports, result.getConfig());
+    }
 
-            String jasminCode = buildJasmin();
-            List<Report> reports = new ArrayList<>();
+    /**
+     * Generates the Jasmin code of an OLLIR class that was built directly, without going through OLLIR code.
+     */
+    public JasminResult toJasmin(ClassUnit classUnit, Map<String, String> config) {
+        try {
+            StringBuilder jasminCode = new StringBuilder();
+            writeJasmin(classUnit, jasminCode, true);
 
             System.out.println("JASMIN CODE : \n" + jasminCode);
 
-            return new JasminResult(ollirResult, jasminCode, reports);
+            return new JasminResult(classUnit.getClassName(), jasminCode.toString(), this.reports, config);
 
         } catch (OllirErrorException e) {
             return new JasminResult(classUnit.getClassName(), null,
                     Collections.singletonList(Report.newError(Stage.GENERATION, -1, -1,
-                            "Jasmin generation exception.", e)));
+                            "Jasmin generation exception.", e)), config);
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new UncheckedIOException(e);
         }
 
     }
 
-    private String buildJasmin() {
+    /**
+     * Writes the Jasmin code of the class straight to a .j file, without keeping the whole code in memory.
+     */
+    public void writeJasmin(ClassUnit classUnit, File jasminFile) throws OllirErrorException {
+        try (Writer writer = Files.newBufferedWriter(jasminFile.toPath(), StandardCharsets.UTF_8)) {
+            writeJasmin(classUnit, writer);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write Jasmin file '" + jasminFile + "'", e);
+        }
+    }
+
+    /**
+     * Writes the Jasmin code of the class to the given sink, one method at a time. Every instruction is appended to a
+     * single buffer that is reused by all methods; a method is only buffered because its .limit directives come before
+     * its instructions.
+     */
+    public void writeJasmin(ClassUnit classUnit, Appendable out) throws OllirErrorException, IOException {
+        writeJasmin(classUnit, out, false);
+    }
+
+    /**
+     * @param parallel whether to emit the methods in parallel, which keeps the code of every method in memory until it
+     *                 is written, so it is only worth it when the whole code is kept anyway
+     */
+    private void writeJasmin(ClassUnit classUnit, Appendable out, boolean parallel)
+            throws OllirErrorException, IOException {
+        this.classUnit = classUnit;
+        this.reports = new ArrayList<>();
+
+        // SETUP classUnit
+        this.classUnit.checkMethodLabels();
+        this.classUnit.buildCFGs();
+        this.classUnit.buildVarTables();
+
+        System.out.println("Generating Jasmin code ...");
+
+        this.buildJasmin(out, parallel);
+    }
+
+    private void buildJasmin(Appendable out, boolean parallel) throws IOException {
         StringBuilder jasminBuilder = new StringBuilder();
 
         jasminBuilder.append(".class public ").append(this.classUnit.getClassName()).append("\n");
@@ -62,33 +126,66 @@ public class JasminBuilder implements JasminBackend {
         jasminBuilder.append(".super ").append(dealWithClassFullName(this.superClass)).append("\n");
 
         for (Field field : this.classUnit.getFields()) {
-            StringBuilder access = new StringBuilder();
+            jasminBuilder.append(".field ");
             if (field.getFieldAccessModifier() != AccessModifiers.DEFAULT) {
-                access.append(field.getFieldAccessModifier().name().toLowerCase()).append(" ");
+                jasminBuilder.append(field.getFieldAccessModifier().name().toLowerCase()).append(" ");
             }
 
             if (field.isStaticField()) {
-                access.append("static ");
+                jasminBuilder.append("static ");
             }
             if (field.isInitialized()) {
-                access.append("final ");
+                jasminBuilder.append("final ");
             }
 
-            jasminBuilder.append(".field ").append(access).append(field.getFieldName())
-                    .append(" ").append(this.dealWithFieldDescriptor(field.getFieldType())).append("\n");
+            jasminBuilder.append(field.getFieldName()).append(" ");
+            this.dealWithFieldDescriptor(field.getFieldType(), jasminBuilder);
+            jasminBuilder.append("\n");
+        }
+
+        out.append(jasminBuilder);
+
+        if (parallel) {
+            // The methods only read the class, so each is emitted by its own builder, and they are joined in order
+            List<MethodCode> methods = ParallelTasks.map(this.classUnit.getMethods(),
+                    method -> new JasminBuilder(this).buildMethod(method));
+
+            for (MethodCode method : methods) {
+                out.append(method.code());
+                this.reports.addAll(method.reports());
+            }
+            return;
         }
 
+        StringBuilder methodBody = new StringBuilder();
         for (Method method : this.classUnit.getMethods()) {
-            jasminBuilder.append(this.dealWithMethodHeader(method));
-            jasminBuilder.append(this.dealWithMethodStatements(method));
-            jasminBuilder.append(".end method\n");
+            jasminBuilder.setLength(0);
+            methodBody.setLength(0);
+            // Numbered from 0 in each method, like when they are emitted in parallel
+            this.condNumber = 0;
+
+            this.dealWithMethodHeader(method, jasminBuilder);
+            this.dealWithMethodStatements(method, jasminBuilder, methodBody);
+
+            out.append(jasminBuilder).append(methodBody).append(".end method\n");
         }
+    }
+
+    private record MethodCode(String code, List<Report> reports) {
+    }
+
+    private MethodCode buildMethod(Method method) {
+        StringBuilder header = new StringBuilder();
+        StringBuilder body = new StringBuilder();
 
-        return jasminBuilder.toString();
+        this.dealWithMethodHeader(method, header);
+        this.dealWithMethodStatements(method, header, body);
+
+        return new MethodCode(header.append(body).append(".end method\n").toString(), this.reports);
     }
 
-    private String dealWithMethodHeader(Method method) {
-        StringBuilder jasminBuilder = new StringBuilder("\n.method ");
+    private void dealWithMethodHeader(Method method, StringBuilder jasminBuilder) {
+        jasminBuilder.append("\n.method ");
 
         // <access-spec>
         if (method.getMethodAccessModifier() != AccessModifiers.DEFAULT) {
@@ -104,49 +201,49 @@ public class JasminBuilder implements JasminBackend {
 
         if (method.isConstructMethod()) {
             jasminBuilder.append("public <init>");
-        } else jasminBuilder.append(method.getMethodName());
-        {
-            jasminBuilder.append("(");
+        } else {
+            jasminBuilder.append(method.getMethodName());
         }
+        jasminBuilder.append("(");
 
         for (Element param : method.getParams()) {
-            jasminBuilder.append(this.dealWithFieldDescriptor(param.getType()));
+            this.dealWithFieldDescriptor(param.getType(), jasminBuilder);
         }
         jasminBuilder.append(")");
-        jasminBuilder.append(this.dealWithFieldDescriptor(method.getReturnType())).append("\n");
-
-        return jasminBuilder.toString();
+        this.dealWithFieldDescriptor(method.getReturnType(), jasminBuilder);
+        jasminBuilder.append("\n");
     }
 
-    private String dealWithMethodStatements(Method method) {
+    /**
+     * Appends the .limit directives to the header and the instructions to the body of the method.
+     */
+    private void dealWithMethodStatements(Method method, StringBuilder header, StringBuilder body) {
 
         int limitLocals = calculateLimitLocals(method);
 
-        this.currentStack = 0;
-        this.methodStackLimit = 0;
-        String methodInstructions = this.dealWithMethodInst(method);
+        this.dealWithMethodInst(method, body);
+
+        // The stack is measured on the finished code, following its jumps, so that it is exact on every path
+        StackAnalyzer stackAnalyzer = new StackAnalyzer(method.getMethodName(), body);
+        this.reports.addAll(stackAnalyzer.getReports());
 
-        return "\t.limit stack " + this.methodStackLimit + "\n" +
-                "\t.limit locals " + limitLocals + "\n" +
-                methodInstructions;
+        header.append("\t.limit stack ").append(stackAnalyzer.getMaxStack()).append("\n")
+                .append("\t.limit locals ").append(limitLocals).append("\n");
     }
 
-    private String dealWithMethodInst(Method method) {
-        StringBuilder jasminBuilder = new StringBuilder();
+    private void dealWithMethodInst(Method method, StringBuilder jasminBuilder) {
+        Map<Instruction, List<String>> labels = buildLabelIndex(method);
 
         List<Instruction> methodInst = method.getInstructions();
         for (Instruction inst : methodInst) {
-            for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
-                if (label.getValue().equals(inst)) {
-                    jasminBuilder.append(label.getKey()).append(":\n");
-                }
+            for (String label : labels.getOrDefault(inst, Collections.emptyList())) {
+                jasminBuilder.append(label).append(":\n");
             }
-            jasminBuilder.append(this.dealWithInst(inst, method.getVarTable()));
+            this.dealWithInst(inst, method.getVarTable(), jasminBuilder);
             if (inst.getInstType() == InstructionType.CALL
                     && ((CallInstruction) inst).getReturnType().getTypeOfElement() != ElementType.VOID) {
 
                 jasminBuilder.append("\tpop\n");
-                this.changeStackLimits(-1);
             }
 
         }
@@ -157,51 +254,47 @@ public class JasminBuilder implements JasminBackend {
         if (!hasReturnInstruction && method.getReturnType().getTypeOfElement() == ElementType.VOID) {
             jasminBuilder.append("\treturn\n");
         }
-
-        return jasminBuilder.toString();
     }
 
-    private String dealWithInst(Instruction inst, HashMap<String, Descriptor> varTable) {
-        return switch (inst.getInstType()) {
-            case ASSIGN -> this.dealWithAssign((AssignInstruction) inst, varTable);
-            case CALL -> this.dealWithCall((CallInstruction) inst, varTable);
-            case GOTO -> this.dealWithGoto((GotoInstruction) inst);
-            case BRANCH -> this.dealWithBranch((CondBranchInstruction) inst, varTable);
-            case RETURN -> this.dealWithReturn((ReturnInstruction) inst, varTable);
-            case PUTFIELD -> this.dealWithPutField((PutFieldInstruction) inst, varTable);
-            case GETFIELD -> this.dealWithGetField((GetFieldInstruction) inst, varTable);
-            case UNARYOPER -> this.dealWithUnaryOper((UnaryOpInstruction) inst, varTable);
-            case BINARYOPER -> this.dealWithBinaryOper((BinaryOpInstruction) inst, varTable);
-            case NOPER -> this.dealWithLoadToStack(((SingleOpInstruction) inst).getSingleOperand(), varTable);
-        };
+    private void dealWithInst(Instruction inst, HashMap<String, Descriptor> varTable, StringBuilder jasminBuilder) {
+        switch (inst.getInstType()) {
+            case ASSIGN -> this.dealWithAssign((AssignInstruction) inst, varTable, jasminBuilder);
+            case CALL -> this.dealWithCall((CallInstruction) inst, varTable, jasminBuilder);
+            case GOTO -> this.dealWithGoto((GotoInstruction) inst, jasminBuilder);
+            case BRANCH -> this.dealWithBranch((CondBranchInstruction) inst, varTable, jasminBuilder);
+            case RETURN -> this.dealWithReturn((ReturnInstruction) inst, varTable, jasminBuilder);
+            case PUTFIELD -> this.dealWithPutField((PutFieldInstruction) inst, varTable, jasminBuilder);
+            case GETFIELD -> this.dealWithGetField((GetFieldInstruction) inst, varTable, jasminBuilder);
+            case UNARYOPER -> this.dealWithUnaryOper((UnaryOpInstruction) inst, varTable, jasminBuilder);
+            case BINARYOPER -> this.dealWithBinaryOper((BinaryOpInstruction) inst, varTable, jasminBuilder);
+            case NOPER ->
+                    this.dealWithLoadToStack(((SingleOpInstruction) inst).getSingleOperand(), varTable, jasminBuilder);
+        }
     }
 
-    private String dealWithUnaryOper(UnaryOpInstruction inst, HashMap<String, Descriptor> varTable) {
-        StringBuilder jasminBuilder = new StringBuilder();
-
-        jasminBuilder.append(this.dealWithLoadToStack(inst.getOperand(), varTable))
-                .append("\t").append(this.dealWithOper(inst.getOperation()));
+    private void dealWithUnaryOper(UnaryOpInstruction inst, HashMap<String, Descriptor> varTable,
+                                   StringBuilder jasminBuilder) {
+        this.dealWithLoadToStack(inst.getOperand(), varTable, jasminBuilder);
+        jasminBuilder.append("\t").append(this.dealWithOper(inst.getOperation()));
 
         boolean isBooleanOperation = inst.getOperation().getOpType() == OperationType.NOTB;
         if (isBooleanOperation) {
-            jasminBuilder.append(this.dealWithBoolOperResultToStack());
+            this.dealWithBoolOperResultToStack(jasminBuilder);
         } else {
             jasminBuilder.append("; Invalid UNARYOPER\n");
         }
 
         jasminBuilder.append("\n");
-        return jasminBuilder.toString();
     }
 
-    private String dealWithBinaryOper(BinaryOpInstruction inst, HashMap<String, Descriptor> varTable) {
-        StringBuilder jasminBuilder = new StringBuilder();
-
+    private void dealWithBinaryOper(BinaryOpInstruction inst, HashMap<String, Descriptor> varTable,
+                                    StringBuilder jasminBuilder) {
         Element leftElement = inst.getLeftOperand();
         Element rightElement = inst.getRightOperand();
 
-        jasminBuilder.append(this.dealWithLoadToStack(leftElement, varTable))
-                .append(this.dealWithLoadToStack(rightElement, varTable))
-                .append("\t").append(this.dealWithOper(inst.getOperation()));
+        this.dealWithLoadToStack(leftElement, varTable, jasminBuilder);
+        this.dealWithLoadToStack(rightElement, varTable, jasminBuilder);
+        jasminBuilder.append("\t").append(this.dealWithOper(inst.getOperation()));
 
         OperationType operType = inst.getOperation().getOpType();
         boolean isBoolOper =
@@ -213,19 +306,14 @@ public class JasminBuilder implements JasminBackend {
                         || operType == OperationType.NEQ;
 
         if (isBoolOper) {
-            jasminBuilder.append(this.dealWithBoolOperResultToStack());
+            this.dealWithBoolOperResultToStack(jasminBuilder);
         }
 
         jasminBuilder.append("\n");
-
-        this.changeStackLimits(-1);
-
-        return jasminBuilder.toString();
     }
 
-    private String dealWithBranch(CondBranchInstruction inst, HashMap<String, Descriptor> varTable) {
-        StringBuilder jasminBuilder = new StringBuilder();
-
+    private void dealWithBranch(CondBranchInstruction inst, HashMap<String, Descriptor> varTable,
+                                StringBuilder jasminBuilder) {
         Instruction condition;
         if (inst instanceof SingleOpCondInstruction singleOperCond) {
             condition = singleOperCond.getCondition();
@@ -234,7 +322,8 @@ public class JasminBuilder implements JasminBackend {
             condition = operCond.getCondition();
 
         } else {
-            return "; ERROR: invalid CondBranchInstruction instance\n";
+            jasminBuilder.append("; ERROR: invalid CondBranchInstruction instance\n");
+            return;
         }
 
         String operation;
@@ -267,29 +356,29 @@ public class JasminBuilder implements JasminBackend {
                         }
 
                         if (parsedInt != null && parsedInt == 0) {
-                            jasminBuilder.append(this.dealWithLoadToStack(otherElement, varTable));
+                            this.dealWithLoadToStack(otherElement, varTable, jasminBuilder);
 
                         } else {
-                            jasminBuilder.append(this.dealWithLoadToStack(leftElement, varTable))
-                                    .append(this.dealWithLoadToStack(rightElement, varTable));
+                            this.dealWithLoadToStack(leftElement, varTable, jasminBuilder);
+                            this.dealWithLoadToStack(rightElement, varTable, jasminBuilder);
 
                             operation = "if_icmplt";
                         }
 
                     }
                     case ANDB -> {
-                        jasminBuilder.append(this.dealWithInst(condition, varTable));
+                        this.dealWithInst(condition, varTable, jasminBuilder);
                         operation = "ifne";
                     }
                     case EQ, GTH, GTE, LTE, NEQ -> {
-                        jasminBuilder.append(this.dealWithLoadToStack(binaryOpInstruction.getLeftOperand(), varTable))
-                                .append(this.dealWithLoadToStack(binaryOpInstruction.getRightOperand(), varTable));
+                        this.dealWithLoadToStack(binaryOpInstruction.getLeftOperand(), varTable, jasminBuilder);
+                        this.dealWithLoadToStack(binaryOpInstruction.getRightOperand(), varTable, jasminBuilder);
                         operation = this.dealWithOper(binaryOpInstruction.getOperation());
                     }
                     default -> {
                         // not supposed to happen
                         jasminBuilder.append("; Invalid BINARYOPER\n");
-                        jasminBuilder.append(this.dealWithInst(condition, varTable));
+                        this.dealWithInst(condition, varTable, jasminBuilder);
                         operation = "ifne";
                     }
                 }
@@ -298,30 +387,22 @@ public class JasminBuilder implements JasminBackend {
                 assert condition instanceof UnaryOpInstruction;
                 UnaryOpInstruction unaryOper = (UnaryOpInstruction) condition;
                 if (unaryOper.getOperation().getOpType() == OperationType.NOTB) {
-                    jasminBuilder.append(this.dealWithLoadToStack(unaryOper.getOperand(), varTable));
+                    this.dealWithLoadToStack(unaryOper.getOperand(), varTable, jasminBuilder);
                     operation = "ifeq";
                 } else {
                     // not supposed to happen
                     jasminBuilder.append("; Invalid UNARYOPER\n");
-                    jasminBuilder.append(this.dealWithInst(condition, varTable));
+                    this.dealWithInst(condition, varTable, jasminBuilder);
                     operation = "ifne";
                 }
             }
             default -> {
-                jasminBuilder.append(this.dealWithInst(condition, varTable));
+                this.dealWithInst(condition, varTable, jasminBuilder);
                 operation = "ifne";
             }
         }
 
         jasminBuilder.append("\t").append(operation).append(" ").append(inst.getLabel()).append("\n");
-
-        if (operation.equals("if_icmplt")) {
-            this.changeStackLimits(-2);
-        } else {
-            this.changeStackLimits(-1);
-        }
-
-        return jasminBuilder.toString();
     }
 
     private String dealWithOper(Operation operation) {
@@ -344,29 +425,31 @@ public class JasminBuilder implements JasminBackend {
         };
     }
 
-    private String dealWithPutField(PutFieldInstruction inst, HashMap<String, Descriptor> varTable) {
-        String result = this.dealWithLoadToStack(inst.getFirstOperand(), varTable) +
-                this.dealWithLoadToStack(inst.getThirdOperand(), varTable) +
-                "\tputfield " + this.dealWithClassFullName(((Operand) inst.getFirstOperand()).getName()) +
-                "/" + ((Operand) inst.getSecondOperand()).getName() +
-                " " + this.dealWithFieldDescriptor(inst.getSecondOperand().getType()) + "\n";
-
-        this.changeStackLimits(-2);
-        return result;
+    private void dealWithPutField(PutFieldInstruction inst, HashMap<String, Descriptor> varTable,
+                                  StringBuilder jasminBuilder) {
+        this.dealWithLoadToStack(inst.getFirstOperand(), varTable, jasminBuilder);
+        this.dealWithLoadToStack(inst.getThirdOperand(), varTable, jasminBuilder);
+        jasminBuilder.append("\tputfield ")
+                .append(this.dealWithClassFullName(((Operand) inst.getFirstOperand()).getName()))
+                .append("/").append(((Operand) inst.getSecondOperand()).getName()).append(" ");
+        this.dealWithFieldDescriptor(inst.getSecondOperand().getType(), jasminBuilder);
+        jasminBuilder.append("\n");
     }
 
-    private String dealWithGetField(GetFieldInstruction inst, HashMap<String, Descriptor> varTable) {
-        return this.dealWithLoadToStack(inst.getFirstOperand(), varTable) +
-                "\tgetfield " + this.dealWithClassFullName(((Operand) inst.getFirstOperand()).getName()) +
-                "/" + ((Operand) inst.getSecondOperand()).getName() +
-                " " + this.dealWithFieldDescriptor(inst.getSecondOperand().getType()) + "\n";
+    private void dealWithGetField(GetFieldInstruction inst, HashMap<String, Descriptor> varTable,
+                                  StringBuilder jasminBuilder) {
+        this.dealWithLoadToStack(inst.getFirstOperand(), varTable, jasminBuilder);
+        jasminBuilder.append("\tgetfield ")
+                .append(this.dealWithClassFullName(((Operand) inst.getFirstOperand()).getName()))
+                .append("/").append(((Operand) inst.getSecondOperand()).getName()).append(" ");
+        this.dealWithFieldDescriptor(inst.getSecondOperand().getType(), jasminBuilder);
+        jasminBuilder.append("\n");
     }
 
-    private String dealWithReturn(ReturnInstruction inst, HashMap<String, Descriptor> varTable) {
-        StringBuilder jasminBuilder = new StringBuilder();
-
+    private void dealWithReturn(ReturnInstruction inst, HashMap<String, Descriptor> varTable,
+                                StringBuilder jasminBuilder) {
         if (inst.hasReturnValue()) {
-            jasminBuilder.append(this.dealWithLoadToStack(inst.getOperand(), varTable));
+            this.dealWithLoadToStack(inst.getOperand(), varTable, jasminBuilder);
         }
 
         jasminBuilder.append("\t");
@@ -381,27 +464,24 @@ public class JasminBuilder implements JasminBackend {
         }
 
         jasminBuilder.append("return\n");
-
-        return jasminBuilder.toString();
     }
 
-    private String dealWithGoto(GotoInstruction inst) {
-        return "\tgoto " + inst.getLabel() + "\n";
+    private void dealWithGoto(GotoInstruction inst, StringBuilder jasminBuilder) {
+        jasminBuilder.append("\tgoto ").append(inst.getLabel()).append("\n");
     }
 
-    private String dealWithLoadToStack(Element element, HashMap<String, Descriptor> varTable) {
-        StringBuilder jasminBuilder = new StringBuilder();
-
+    private void dealWithLoadToStack(Element element, HashMap<String, Descriptor> varTable,
+                                     StringBuilder jasminBuilder) {
         if (element instanceof Operand && !varTable.containsKey(((Operand) element).getName())) {
             Operand operand = (Operand) element;
             if (operand.getName().equals("false")) {
                 jasminBuilder.append("\ticonst_0");
                 jasminBuilder.append("\n");
-                return jasminBuilder.toString();
+                return;
             } else if (operand.getName().equals("true")) {
                 jasminBuilder.append("\ticonst_1");
                 jasminBuilder.append("\n");
-                return jasminBuilder.toString();
+                return;
             }
         }
         if (element instanceof LiteralElement) {
@@ -431,67 +511,59 @@ public class JasminBuilder implements JasminBackend {
             } else {
                 jasminBuilder.append("\tldc ").append(literal);
             }
-            this.changeStackLimits(+1);
         } else if (element instanceof ArrayOperand) {
             ArrayOperand operand = (ArrayOperand) element;
-            jasminBuilder.append("\taload").append(this.dealWithVariableNumber(operand.getName(), varTable)).append("\n"); // load array (ref)
-            this.changeStackLimits(+1);
-            jasminBuilder.append(dealWithLoadToStack(operand.getIndexOperands().get(0), varTable)); // load index
+            jasminBuilder.append("\taload");
+            this.dealWithVariableNumber(operand.getName(), varTable, jasminBuilder);
+            jasminBuilder.append("\n"); // load array (ref)
+            this.dealWithLoadToStack(operand.getIndexOperands().get(0), varTable, jasminBuilder); // load index
             jasminBuilder.append("\tiaload");
-            this.changeStackLimits(-1);
         } else if (element instanceof Operand) {
             Operand operand = (Operand) element;
             switch (operand.getType().getTypeOfElement()) {
-                case INT32, BOOLEAN ->
-                        jasminBuilder.append("\tiload").append(this.dealWithVariableNumber(operand.getName(), varTable));
-                case OBJECTREF, STRING, ARRAYREF ->
-                        jasminBuilder.append("\taload").append(this.dealWithVariableNumber(operand.getName(), varTable));
+                case INT32, BOOLEAN -> {
+                    jasminBuilder.append("\tiload");
+                    this.dealWithVariableNumber(operand.getName(), varTable, jasminBuilder);
+                }
+                case OBJECTREF, STRING, ARRAYREF -> {
+                    jasminBuilder.append("\taload");
+                    this.dealWithVariableNumber(operand.getName(), varTable, jasminBuilder);
+                }
                 case THIS -> jasminBuilder.append("\taload_0");
                 default ->
                         jasminBuilder.append("; ERROR: getLoadToStack() operand ").append(operand.getType().getTypeOfElement()).append("\n");
             }
-        this.changeStackLimits(+1);
         } else {
             jasminBuilder.append("; ERROR: getLoadToStack() invalid element instance\n");
         }
         jasminBuilder.append("\n");
-        return jasminBuilder.toString();
     }
 
-    private String dealWithCall(CallInstruction inst, HashMap<String, Descriptor> varTable) {
-        StringBuilder jasminBuilder = new StringBuilder();
-
-        int numToPop = 0;
-
+    private void dealWithCall(CallInstruction inst, HashMap<String, Descriptor> varTable,
+                              StringBuilder jasminBuilder) {
         switch (inst.getInvocationType()) {
             case invokevirtual -> {
-                jasminBuilder.append(this.dealWithLoadToStack(inst.getFirstArg(), varTable));
-                numToPop = 1;
+                this.dealWithLoadToStack(inst.getFirstArg(), varTable, jasminBuilder);
                 for (Element element : inst.getListOfOperands()) {
-                    jasminBuilder.append(this.dealWithLoadToStack(element, varTable));
-                    numToPop++;
+                    this.dealWithLoadToStack(element, varTable, jasminBuilder);
                 }
 
                 jasminBuilder.append("\tinvokevirtual ")
                         .append(this.dealWithClassFullName(((ClassType) inst.getFirstArg().getType()).getName()))
-                        .append("/").append(((LiteralElement) inst.getSecondArg()).getLiteral().replace("\"", ""))
-                        .append("(");
+                        .append("/");
+                this.dealWithMethodName((LiteralElement) inst.getSecondArg(), jasminBuilder);
+                jasminBuilder.append("(");
 
                 for (Element element : inst.getListOfOperands()) {
-                    jasminBuilder.append(this.dealWithFieldDescriptor(element.getType()));
+                    this.dealWithFieldDescriptor(element.getType(), jasminBuilder);
                 }
 
-                jasminBuilder.append(")").append(this.dealWithFieldDescriptor(inst.getReturnType())).append("\n");
-
-                if (inst.getReturnType().getTypeOfElement() != ElementType.VOID) {
-                    numToPop--;
-                }
-
-
+                jasminBuilder.append(")");
+                this.dealWithFieldDescriptor(inst.getReturnType(), jasminBuilder);
+                jasminBuilder.append("\n");
             }
             case invokespecial -> {
-                jasminBuilder.append(this.dealWithLoadToStack(inst.getFirstArg(), varTable));
-                numToPop = 1;
+                this.dealWithLoadToStack(inst.getFirstArg(), varTable, jasminBuilder);
 
                 jasminBuilder.append("\tinvokespecial ");
 
@@ -505,51 +577,43 @@ public class JasminBuilder implements JasminBackend {
                 jasminBuilder.append("/").append("<init>(");
 
                 for (Element element : inst.getListOfOperands()) {
-                    jasminBuilder.append(this.dealWithFieldDescriptor(element.getType()));
+                    this.dealWithFieldDescriptor(element.getType(), jasminBuilder);
                 }
 
-                jasminBuilder.append(")").append(this.dealWithFieldDescriptor(inst.getReturnType())).append("\n");
-                if (inst.getReturnType().getTypeOfElement() != ElementType.VOID) {
-                    numToPop--;
-                }
+                jasminBuilder.append(")");
+                this.dealWithFieldDescriptor(inst.getReturnType(), jasminBuilder);
+                jasminBuilder.append("\n");
             }
             case invokestatic -> {
-                numToPop = 0;
-
                 for (Element element : inst.getListOfOperands()) {
-                    jasminBuilder.append(this.dealWithLoadToStack(element, varTable));
-                    numToPop++;
+                    this.dealWithLoadToStack(element, varTable, jasminBuilder);
                 }
 
                 jasminBuilder.append("\tinvokestatic ")
                         .append(this.dealWithClassFullName(((Operand) inst.getFirstArg()).getName()))
-                        .append("/").append(((LiteralElement) inst.getSecondArg()).getLiteral().replace("\"", ""))
-                        .append("(");
+                        .append("/");
+                this.dealWithMethodName((LiteralElement) inst.getSecondArg(), jasminBuilder);
+                jasminBuilder.append("(");
 
                 for (Element element : inst.getListOfOperands()) {
-                    jasminBuilder.append(this.dealWithFieldDescriptor(element.getType()));
+                    this.dealWithFieldDescriptor(element.getType(), jasminBuilder);
                 }
 
-                jasminBuilder.append(")").append(this.dealWithFieldDescriptor(inst.getReturnType())).append("\n");
-
-                if (inst.getReturnType().getTypeOfElement() != ElementType.VOID) {
-                    numToPop--;
-                }
+                jasminBuilder.append(")");
+                this.dealWithFieldDescriptor(inst.getReturnType(), jasminBuilder);
+                jasminBuilder.append("\n");
             }
             case NEW -> {
-                numToPop = -1;
                 ElementType elementType = inst.getReturnType().getTypeOfElement();
 
                 if (elementType == ElementType.OBJECTREF) {
                     for (Element element : inst.getListOfOperands()) {
-                        jasminBuilder.append(this.dealWithLoadToStack(element, varTable));
-                        numToPop++;
+                        this.dealWithLoadToStack(element, varTable, jasminBuilder);
                     }
                     jasminBuilder.append("\tnew ").append(this.dealWithClassFullName(((Operand) inst.getFirstArg()).getName())).append("\n");
                 } else if (elementType == ElementType.ARRAYREF) {
                     for (Element element : inst.getListOfOperands()) {
-                        jasminBuilder.append(this.dealWithLoadToStack(element, varTable));
-                        numToPop++;
+                        this.dealWithLoadToStack(element, varTable, jasminBuilder);
                     }
 
                     jasminBuilder.append("\tnewarray ");
@@ -564,25 +628,22 @@ public class JasminBuilder implements JasminBackend {
                 }
             }
             case arraylength -> {
-                jasminBuilder.append(this.dealWithLoadToStack(inst.getFirstArg(), varTable));
+                this.dealWithLoadToStack(inst.getFirstArg(), varTable, jasminBuilder);
                 jasminBuilder.append("\tarraylength\n");
             }
-            case ldc -> jasminBuilder.append(this.dealWithLoadToStack(inst.getFirstArg(), varTable));
+            case ldc -> this.dealWithLoadToStack(inst.getFirstArg(), varTable, jasminBuilder);
             default -> jasminBuilder.append("; ERROR: call instruction not implemented\n");
         }
-        this.changeStackLimits(-numToPop);
-
-        return jasminBuilder.toString();
     }
 
-    private String dealWithAssign(AssignInstruction inst, HashMap<String, Descriptor> varTable) {
-        StringBuilder jasminBuilder = new StringBuilder();
-
+    private void dealWithAssign(AssignInstruction inst, HashMap<String, Descriptor> varTable,
+                                StringBuilder jasminBuilder) {
         Operand dest = (Operand) inst.getDest();
         if (dest instanceof ArrayOperand arrayOperand) {
-            this.changeStackLimits(+1);
-            jasminBuilder.append("\taload").append(this.dealWithVariableNumber(arrayOperand.getName(), varTable)).append("\n"); // load array (ref)
-            jasminBuilder.append(this.dealWithLoadToStack(arrayOperand.getIndexOperands().get(0), varTable)); // load index
+            jasminBuilder.append("\taload");
+            this.dealWithVariableNumber(arrayOperand.getName(), varTable, jasminBuilder);
+            jasminBuilder.append("\n"); // load array (ref)
+            this.dealWithLoadToStack(arrayOperand.getIndexOperands().get(0), varTable, jasminBuilder); // load index
 
         } else {
             if (inst.getRhs().getInstType() == BINARYOPER) {
@@ -608,7 +669,9 @@ public class JasminBuilder implements JasminBackend {
                             int literalValue = Integer.parseInt((literal).getLiteral());
 
                             if (literalValue >= -128 && literalValue <= 127) {
-                                return "\tiinc " + varTable.get(operand.getName()).getVirtualReg() + " " + literalValue + "\n";
+                                jasminBuilder.append("\tiinc ").append(varTable.get(operand.getName()).getVirtualReg())
+                                        .append(" ").append(literalValue).append("\n");
+                                return;
                             }
                         }
                     }
@@ -616,52 +679,45 @@ public class JasminBuilder implements JasminBackend {
             }
         }
 
-        jasminBuilder.append(this.dealWithInst(inst.getRhs(), varTable));
-        jasminBuilder.append(this.dealWithStore(dest, varTable)); // store in array[index] if (dest instanceof ArrayOperand)
-
-        return jasminBuilder.toString();
+        this.dealWithInst(inst.getRhs(), varTable, jasminBuilder);
+        this.dealWithStore(dest, varTable, jasminBuilder); // store in array[index] if (dest instanceof ArrayOperand)
     }
 
-    private String dealWithStore(Operand dest, HashMap<String, Descriptor> varTable) {
-        StringBuilder jasminBuilder = new StringBuilder();
-
+    private void dealWithStore(Operand dest, HashMap<String, Descriptor> varTable, StringBuilder jasminBuilder) {
         switch (dest.getType().getTypeOfElement()) {
             case INT32, BOOLEAN -> {
                 if (varTable.get(dest.getName()).getVarType().getTypeOfElement() == ElementType.ARRAYREF) {
                     jasminBuilder.append("\tiastore").append("\n");
-                    this.changeStackLimits(-3);
                 } else {
-                    jasminBuilder.append("\tistore").append(this.dealWithVariableNumber(dest.getName(), varTable)).append("\n");
-                    this.changeStackLimits(-1);
+                    jasminBuilder.append("\tistore");
+                    this.dealWithVariableNumber(dest.getName(), varTable, jasminBuilder);
+                    jasminBuilder.append("\n");
                 }
             }
             case OBJECTREF, THIS, STRING, ARRAYREF -> {
-                jasminBuilder.append("\tastore").append(this.dealWithVariableNumber(dest.getName(), varTable)).append("\n");
-                this.changeStackLimits(-1);
+                jasminBuilder.append("\tastore");
+                this.dealWithVariableNumber(dest.getName(), varTable, jasminBuilder);
+                jasminBuilder.append("\n");
             }
             default -> jasminBuilder.append("; ERROR: getStore()\n");
         }
-        return jasminBuilder.toString();
     }
 
-    private String dealWithVariableNumber(String name, HashMap<String, Descriptor> varTable) {
+    private void dealWithVariableNumber(String name, HashMap<String, Descriptor> varTable,
+                                        StringBuilder jasminBuilder) {
         if (name.equals("this")) {
-            return "_0";
+            jasminBuilder.append("_0");
+            return;
         }
         int virtualRegister = varTable.get(name).getVirtualReg();
 
-        StringBuilder stringBuilder = new StringBuilder();
-
-        if (virtualRegister < 4) stringBuilder.append("_");
-        else stringBuilder.append(" ");
+        if (virtualRegister < 4) jasminBuilder.append("_");
+        else jasminBuilder.append(" ");
 
-        stringBuilder.append(virtualRegister);
-
-        return stringBuilder.toString();
+        jasminBuilder.append(virtualRegister);
     }
 
-    private String dealWithFieldDescriptor(Type type) {
-        StringBuilder jasminBuilder = new StringBuilder();
+    private void dealWithFieldDescriptor(Type type, StringBuilder jasminBuilder) {
         ElementType elementType = type.getTypeOfElement();
 
         if (elementType == ElementType.ARRAYREF) {
@@ -682,8 +738,17 @@ public class JasminBuilder implements JasminBackend {
             case VOID -> jasminBuilder.append("V");
             default -> jasminBuilder.append("; ERROR: descriptor type not implemented\n");
         }
+    }
 
-        return jasminBuilder.toString();
+    /**
+     * Method names are string literals, appended without their quotes.
+     */
+    private void dealWithMethodName(LiteralElement methodName, StringBuilder jasminBuilder) {
+        String literal = methodName.getLiteral();
+        int start = literal.startsWith("\"") ? 1 : 0;
+        int end = literal.endsWith("\"") && literal.length() > start ? literal.length() - 1 : literal.length();
+
+        jasminBuilder.append(literal, start, end);
     }
 
     private String dealWithClassFullName(String classNameWithoutImports) {
@@ -701,29 +766,43 @@ public class JasminBuilder implements JasminBackend {
         return classNameWithoutImports;
     }
 
-    private String dealWithBoolOperResultToStack() {
-        return " TRUE" + this.condNumber + "\n"
-                + "\ticonst_0\n"
-                + "\tgoto NEXT" + this.condNumber + "\n"
-                + "TRUE" + this.condNumber + ":\n"
-                + "\ticonst_1\n"
-                + "NEXT" + this.condNumber++ + ":";
+    /**
+     * Maps each instruction to its labels, so that they are found without going through all the labels of the method
+     * for every instruction. Instructions are compared by identity, and the labels keep the order of the label table.
+     */
+    public static Map<Instruction, List<String>> buildLabelIndex(Method method) {
+        Map<Instruction, List<String>> labels = new IdentityHashMap<>();
+
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            labels.computeIfAbsent(label.getValue(), inst -> new ArrayList<>(1)).add(label.getKey());
+        }
+
+        return labels;
     }
 
-    private void changeStackLimits(int variation) {
-        this.currentStack += variation;
-        this.methodStackLimit = Math.max(this.methodStackLimit, this.currentStack);
+    private void dealWithBoolOperResultToStack(StringBuilder jasminBuilder) {
+        jasminBuilder.append(" TRUE").append(this.condNumber).append("\n")
+                .append("\ticonst_0\n")
+                .append("\tgoto NEXT").append(this.condNumber).append("\n")
+                .append("TRUE").append(this.condNumber).append(":\n")
+                .append("\ticonst_1\n")
+                .append("NEXT").append(this.condNumber++).append(":");
     }
 
+    /**
+     * The locals go up to the highest register used, which after register allocation can be shared by many variables.
+     * Fields are also in the var table, but do not use a register.
+     */
     public static int calculateLimitLocals(Method method) {
-        Set<Integer> virtualRegs = new TreeSet<>();
-        virtualRegs.add(0);
+        int maxRegister = 0;
 
         for (Descriptor descriptor : method.getVarTable().values()) {
-            virtualRegs.add(descriptor.getVirtualReg());
+            if (descriptor.getScope() != VarScope.FIELD) {
+                maxRegister = Math.max(maxRegister, descriptor.getVirtualReg());
+            }
         }
 
-        return virtualRegs.size();
+        return maxRegister + 1;
     }
 
 }
\ No newline at end of file
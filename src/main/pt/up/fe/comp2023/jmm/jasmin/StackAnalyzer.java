@@ -0,0 +1,201 @@
+package pt.up.fe.comp2023.jmm.jasmin;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.*;
+
+/**
+ * Computes the exact maximum stack depth of the Jasmin code of a method, by following every path of the code (like
+ * the JVM verifier) instead of adding up the effect of each instruction as it is generated.
+ * <p>
+ * The code is expected to be the instructions and labels of a single method, one per line. Stack underflows, paths
+ * that reach the same instruction with different depths, and code that runs past its end are reported as errors.
+ */
+public class StackAnalyzer {
+
+    private final String methodName;
+
+    private final List<String> opcodes = new ArrayList<>();
+    private final List<String> arguments = new ArrayList<>();
+    private final Map<String, Integer> labels = new HashMap<>();
+
+    private final List<Report> reports = new ArrayList<>();
+    private int maxStack = 0;
+
+    public StackAnalyzer(String methodName, CharSequence code) {
+        this.methodName = methodName;
+
+        parse(code);
+        analyze();
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    private void parse(CharSequence code) {
+        int start = 0;
+        while (start < code.length()) {
+            int end = start;
+            while (end < code.length() && code.charAt(end) != '\n') {
+                end++;
+            }
+
+            String line = code.subSequence(start, end).toString().trim();
+            start = end + 1;
+
+            if (line.isEmpty() || line.startsWith(";") || line.startsWith(".")) {
+                continue;
+            }
+
+            if (line.endsWith(":")) {
+                labels.put(line.substring(0, line.length() - 1), opcodes.size());
+                continue;
+            }
+
+            int space = line.indexOf(' ');
+            opcodes.add(space < 0 ? line : line.substring(0, space));
+            arguments.add(space < 0 ? "" : line.substring(space + 1).trim());
+        }
+    }
+
+    private void analyze() {
+        int size = opcodes.size();
+        if (size == 0) {
+            return;
+        }
+
+        // Depth before each instruction, -1 while it is not reached
+        int[] depths = new int[size];
+        Arrays.fill(depths, -1);
+
+        Deque<Integer> worklist = new ArrayDeque<>();
+        depths[0] = 0;
+        worklist.push(0);
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            String opcode = opcodes.get(index);
+            String argument = arguments.get(index);
+
+            int depth = depths[index];
+            int popped = getPopped(opcode, argument);
+            if (popped < 0) {
+                addError("unknown instruction '" + opcode + "'");
+                continue;
+            }
+            if (popped > depth) {
+                addError("stack underflow at '" + describe(index) + "' (depth " + depth + ")");
+                continue;
+            }
+
+            int after = depth - popped + getPushed(opcode, argument);
+            maxStack = Math.max(maxStack, after);
+
+            if (opcode.equals("goto") || opcode.startsWith("if")) {
+                Integer target = labels.get(argument);
+                if (target == null) {
+                    addError("undefined label '" + argument + "'");
+                } else {
+                    flowTo(target, after, depths, worklist);
+                }
+            }
+
+            if (!opcode.equals("goto") && !opcode.endsWith("return")) {
+                flowTo(index + 1, after, depths, worklist);
+            }
+        }
+    }
+
+    private void flowTo(int index, int depth, int[] depths, Deque<Integer> worklist) {
+        if (index >= depths.length) {
+            addError("code runs past the end of the method");
+            return;
+        }
+
+        if (depths[index] == -1) {
+            depths[index] = depth;
+            worklist.push(index);
+        } else if (depths[index] != depth) {
+            addError("instruction '" + describe(index) + "' is reached with stack depths " + depths[index]
+                    + " and " + depth);
+        }
+    }
+
+    private String describe(int index) {
+        String argument = arguments.get(index);
+        return argument.isEmpty() ? opcodes.get(index) : opcodes.get(index) + " " + argument;
+    }
+
+    private void addError(String message) {
+        reports.add(Report.newError(Stage.GENERATION, -1, -1,
+                "Invalid stack in method '" + methodName + "': " + message, null));
+    }
+
+    /**
+     * Number of values an instruction takes from the stack, or -1 if the instruction is not known.
+     */
+    private static int getPopped(String opcode, String argument) {
+        return switch (opcode) {
+            case "iconst_m1", "iconst_0", "iconst_1", "iconst_2", "iconst_3", "iconst_4", "iconst_5", "bipush",
+                    "sipush", "ldc", "iload", "iload_0", "iload_1", "iload_2", "iload_3", "aload", "aload_0",
+                    "aload_1", "aload_2", "aload_3", "new", "goto", "return", "iinc", "nop" -> 0;
+            case "istore", "istore_0", "istore_1", "istore_2", "istore_3", "astore", "astore_0", "astore_1",
+                    "astore_2", "astore_3", "pop", "ifeq", "ifne", "iflt", "ifge", "ifgt", "ifle", "ireturn",
+                    "areturn", "newarray", "arraylength", "getfield", "dup", "ineg" -> 1;
+            case "iadd", "isub", "imul", "idiv", "irem", "iand", "ior", "ixor", "iaload", "if_icmpeq",
+                    "if_icmpne", "if_icmplt", "if_icmpge", "if_icmpgt", "if_icmple", "putfield" -> 2;
+            case "iastore" -> 3;
+            case "invokestatic" -> getArgumentSlots(argument);
+            case "invokevirtual", "invokespecial" -> 1 + getArgumentSlots(argument);
+            default -> -1;
+        };
+    }
+
+    private static int getPushed(String opcode, String argument) {
+        return switch (opcode) {
+            case "iconst_m1", "iconst_0", "iconst_1", "iconst_2", "iconst_3", "iconst_4", "iconst_5", "bipush",
+                    "sipush", "ldc", "iload", "iload_0", "iload_1", "iload_2", "iload_3", "aload", "aload_0",
+                    "aload_1", "aload_2", "aload_3", "new", "newarray", "arraylength", "getfield", "ineg", "iadd",
+                    "isub", "imul", "idiv", "irem", "iand", "ior", "ixor", "iaload" -> 1;
+            case "dup" -> 2;
+            case "invokestatic", "invokevirtual", "invokespecial" -> argument.endsWith(")V") ? 0 : 1;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Counts the arguments of a method descriptor like "Foo/bar(I[ILjava/lang/String;)V".
+     */
+    private static int getArgumentSlots(String argument) {
+        int index = argument.indexOf('(') + 1;
+        int slots = 0;
+        boolean isArray = false;
+
+        while (index < argument.length() && argument.charAt(index) != ')') {
+            char type = argument.charAt(index);
+
+            if (type == '[') {
+                isArray = true;
+                index++;
+                continue;
+            }
+
+            if (type == 'L') {
+                index = argument.indexOf(';', index);
+            }
+
+            // Only long and double values take two slots, arrays of them are references
+            slots += !isArray && (type == 'J' || type == 'D') ? 2 : 1;
+            isArray = false;
+            index++;
+        }
+
+        return slots;
+    }
+}
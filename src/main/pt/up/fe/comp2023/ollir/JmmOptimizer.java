@@ -2,45 +2,31 @@ package pt.up.fe.comp2023.ollir;
 
 //import jmmSemanticsResult from ..
 
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp2023.Analysis.MySymbolTable;
-import pt.up.fe.comp2023.ollir.optimizations.ConstFoldVisitor;
-import pt.up.fe.comp2023.ollir.optimizations.ConstPropParameters;
-import pt.up.fe.comp2023.ollir.optimizations.ConstPropVisitor;
+import pt.up.fe.comp2023.ollir.optimizations.ConstantPropagation;
+import pt.up.fe.comp2023.ollir.optimizations.ControlFlow;
+import pt.up.fe.comp2023.ollir.optimizations.DeadCodeElimination;
+import pt.up.fe.comp2023.ollir.optimizations.LoopInvariantCodeMotion;
+import pt.up.fe.comp2023.ollir.optimizations.RegisterAllocator;
+import pt.up.fe.comp2023.ollir.optimizations.ValueNumbering;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 
 public class JmmOptimizer implements JmmOptimization {
 
+    /**
+     * The AST is not changed: the constants are propagated on the OLLIR class, see {@link #optimize(ClassUnit, Map)}.
+     */
     public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
-
-        boolean optimize = semanticsResult.getConfig().get("optimize") != null
-                && semanticsResult.getConfig().get("optimize").equals("true");
-
-        if (!optimize) {
-            System.out.println("Optimization disabled");
-            return semanticsResult;
-        }
-
-        System.out.println("Optimization enabled");
-
-        boolean changed = true;
-
-        while (changed) {
-            ConstPropVisitor constPropVisitor = new ConstPropVisitor();
-
-            ConstPropParameters constPropPar = new ConstPropParameters();
-
-            changed = constPropVisitor.visit(semanticsResult.getRootNode(), constPropPar);
-
-            ConstFoldVisitor constFoldVisitor = new ConstFoldVisitor();
-
-            changed = constFoldVisitor.visit(semanticsResult.getRootNode());
-        }
-
         return semanticsResult;
     }
 
@@ -63,10 +49,59 @@ public class JmmOptimizer implements JmmOptimization {
         return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
     }
 
-}
+    @Override
+    public OllirResult optimize(OllirResult ollirResult) {
+        ollirResult.getReports().addAll(optimize(ollirResult.getOllirClass(), ollirResult.getConfig()));
+
+        return ollirResult;
+    }
+
+    /**
+     * Optimizes an OLLIR class: when the config sets "optimize", the constants of every method are propagated (see
+     * {@link ConstantPropagation}), the dead code is removed (see {@link DeadCodeElimination}), the redundant
+     * computations reuse earlier ones (see {@link ValueNumbering}) and the loop invariant computations are moved out of
+     * the loops (see {@link LoopInvariantCodeMotion}), and then the registers are allocated when it sets
+     * "registerAllocation".
+     *
+     * @return the reports of the optimizations, with an error if the requested registers are not enough
+     */
+    public List<Report> optimize(ClassUnit classUnit, Map<String, String> config) {
+        if ("true".equals(config.get("optimize"))) {
+            for (Method method : classUnit.getMethods()) {
+                ControlFlow.ensureBuilt(method);
+                ConstantPropagation.propagate(method);
+                DeadCodeElimination.eliminate(method);
+                ValueNumbering.number(method);
+                LoopInvariantCodeMotion.hoist(method);
+            }
+        }
 
+        return RegisterAllocator.fromConfig(config)
+                .map(allocator -> allocator.allocate(classUnit))
+                .orElse(Collections.emptyList());
+    }
 
+    /**
+     * Builds the OLLIR class straight from the AST, skipping the OLLIR code and its parser. The code is only printed
+     * when the config enables "debug".
+     */
+    public ClassUnit toClassUnit(JmmSemanticsResult semanticsResult) {
+        var classUnit = new OllirIrBuilder((MySymbolTable) semanticsResult.getSymbolTable())
+                .build(semanticsResult.getRootNode());
 
+        if ("true".equals(semanticsResult.getConfig().get("debug"))) {
+            System.out.println(OllirPrinter.print(classUnit));
+        }
 
+        return classUnit;
+    }
 
+    /**
+     * The OLLIR class is built directly unless the config sets "ollirMode" to "text", which generates OLLIR code and
+     * parses it (the path used by {@link #toOllir(JmmSemanticsResult)}).
+     */
+    public static boolean usesOllirText(Map<String, String> config) {
+        return "text".equals(config.get("ollirMode"));
+    }
 
+}
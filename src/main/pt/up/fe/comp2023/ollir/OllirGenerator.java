@@ -2,15 +2,19 @@ package pt.up.fe.comp2023.ollir;
 
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp2023.Analysis.MySymbolTable;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp2023.Analysis.NodeTypes;
+import pt.up.fe.comp2023.Analysis.SymbolKind;
+import pt.up.fe.comp2023.ParallelTasks;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.ast.KindVisitor;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 
-public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
+public class OllirGenerator extends KindVisitor<OllirInference, String> {
 
     private final StringBuilder ollirCode;
     private final MySymbolTable st;
@@ -26,6 +30,23 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
     private Map<String, Integer> parameterIndex = new HashMap<>();
 
+    // Kinds of the nodes that enclose others, which the visits ask for instead of walking up the tree
+    private static final List<String> ENCLOSING_KINDS = List.of("Assignment", "ReturnStmt", "AccessMethod",
+            "ArrayAccess", "ArrayAssignment", "BinaryOp", "RelationalOp", "MethodCall", "This");
+
+    /**
+     * The kinds of the nodes that enclose a node (a bit for each of the ENCLOSING_KINDS), and the closest enclosing
+     * Assignment.
+     */
+    private record Enclosing(int kinds, JmmNode assignment) {
+    }
+
+    // Context of the method being generated, set when entering its declaration
+    private String currentMethodName;
+    private Type currentReturnType;
+    private Set<String> methodVars = Set.of();
+    private final Map<JmmNode, Enclosing> enclosingNodes = new IdentityHashMap<>();
+
     @Override
     protected void buildVisitor() {
         addVisit("Start", this::startVisit);
@@ -66,10 +87,14 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
     //TODO: visit assignments and arithmetic operations (with correct precedence)
 
     public OllirGenerator(MySymbolTable st, boolean optimize) {
+        this(st, optimize, 0);
+    }
+
+    private OllirGenerator(MySymbolTable st, boolean optimize, int indent) {
         this.ollirCode = new StringBuilder();
         this.st = st;
         this.optimize = optimize;
-        this.indent = 0;
+        this.indent = indent;
         this.tempVarCount = 0;
         this.ifElseCount = 0;
         //more things
@@ -88,9 +113,6 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
     }
 
     private int getAndAddTempVarCount(JmmNode node) {
-        String currentMethod = getCurrentMethodName(node);
-        Set<String> methodVars = getMethodVars(node);
-
         while (true) {
             this.tempVarCount++;
             String tempVarName = "t" + this.tempVarCount;
@@ -120,15 +142,67 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
         return this.whileCount;
     }
 
-    private Set<String> getMethodVars(JmmNode node) {
-        String currentMethod = getCurrentMethodName(node);
-        Set<String> methodVars = new HashSet<>();
-        for (var child : node.getChildren()) {
-            if (child.getKind().equals("varDeclaration")) {
-                methodVars.add(child.get("name"));
+    /**
+     * Sets the context of the method: its name and return type, the names its temporaries cannot take, and the nodes
+     * that enclose each of its nodes.
+     */
+    private void enterMethod(JmmNode methodDecl, String methodName) {
+        currentMethodName = methodName;
+        currentReturnType = st.getReturnType(methodName);
+
+        methodVars = new HashSet<>();
+        for (var local : st.getLocalVariables(methodName)) {
+            methodVars.add(local.getName());
+        }
+        for (var param : st.getParameters(methodName)) {
+            methodVars.add(param.getName());
+        }
+
+        enclosingNodes.clear();
+        indexEnclosingNodes(methodDecl, new Enclosing(0, null));
+    }
+
+    private void indexEnclosingNodes(JmmNode node, Enclosing enclosing) {
+        enclosingNodes.put(node, enclosing);
+
+        int kinds = enclosing.kinds();
+        for (var kind : node.getHierarchy()) {
+            int index = ENCLOSING_KINDS.indexOf(kind);
+            if (index >= 0) {
+                kinds |= 1 << index;
             }
         }
-        return methodVars;
+
+        var assignment = node.getKind().equals("Assignment") ? node : enclosing.assignment();
+        var childEnclosing = kinds == enclosing.kinds() && assignment == enclosing.assignment()
+                ? enclosing
+                : new Enclosing(kinds, assignment);
+
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            indexEnclosingNodes(node.getJmmChild(i), childEnclosing);
+        }
+    }
+
+    /**
+     * Whether the node is inside a node of the given kind (one of the ENCLOSING_KINDS), like getAncestor without
+     * walking up the tree.
+     */
+    private boolean hasAncestor(JmmNode node, String kind) {
+        var enclosing = enclosingNodes.get(node);
+        if (enclosing == null) {
+            return node.getAncestor(kind).isPresent();
+        }
+
+        return (enclosing.kinds() & (1 << ENCLOSING_KINDS.indexOf(kind))) != 0;
+    }
+
+    private Optional<JmmNode> getEnclosingAssignment(JmmNode node) {
+        var enclosing = enclosingNodes.get(node);
+        if (enclosing == null) {
+            return node.getAncestor("Assignment");
+        }
+
+        return Optional.ofNullable(enclosing.assignment());
     }
 
     public String getOllirCode() {
@@ -194,10 +268,17 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
         this.removeIndent();
         ollirCode.append(getIndent()).append("}\n");
 
-        //children
+        //children, with the code of the methods joined in declaration order
 
-        for (var child : classDeclarationNode.getChildren()) {
-            visit(child);
+        var children = classDeclarationNode.getChildren();
+        var methods = generateMethods(children);
+        int method = 0;
+        for (var child : children) {
+            if (isMethodDeclaration(child)) {
+                ollirCode.append(methods.get(method++));
+            } else {
+                visit(child);
+            }
         }
 
         this.removeIndent();
@@ -207,6 +288,27 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
         return "";
     }
 
+    /**
+     * Generates the code of each method declaration in parallel, in declaration order. Each method has its own
+     * generator, so its temporaries and labels are numbered from the start of the method, and its code does not
+     * depend on the other methods or on the order they finish.
+     */
+    private List<String> generateMethods(List<JmmNode> children) {
+        var methods = children.stream()
+                .filter(OllirGenerator::isMethodDeclaration)
+                .toList();
+
+        return ParallelTasks.map(methods, method -> new OllirGenerator(st, optimize, indent).generateMethod(method));
+    }
+
+    private static boolean isMethodDeclaration(JmmNode node) {
+        return node.getKind().equals("MethodDeclaration") || node.getKind().equals("MainMethodDeclaration");
+    }
+
+    private String generateMethod(JmmNode methodDecl) {
+        visit(methodDecl);
+        return getOllirCode();
+    }
 
     private String visitMethodDeclaration(JmmNode methodDecl, OllirInference inference) {
         currentSCOPE = "METHOD";
@@ -235,6 +337,8 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
             //System.out.println("METHOD DECLARATION CHILDREN: " + methodDeclChildren);
         }
 
+        enterMethod(methodDecl, methodName);
+
         //parameters
 
         var params = st.getParameters(methodName);
@@ -250,7 +354,6 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
             }
         }
 
-        //System.out.println("PARAMS: " + params);
 
         var paramCode = params.stream()
                 .map(OllirUtils::getCode).
@@ -292,15 +395,9 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
         //System.out.println("VISITING ASSIGNMENT NODE: " + assignmentNode);
         //System.out.println("VISITING ASSIGNMENT NODE CHILDREN: " + assignmentNode.getChildren());
 
-        String toAssign = assignmentNode.get("id");
-        boolean isField = false;
-        var toAssignSymbol = st.getLocalVariableFromMethod(getCurrentMethodName(assignmentNode), toAssign);
-        if (toAssignSymbol == null) {
-            toAssignSymbol = st.getField(toAssign).getKey();
-            isField = true;
-            //System.out.println("TO ASSIGN SYMBOL: " + toAssignSymbol);
-        }
-        var toAssignType = OllirUtils.getOllirType(toAssignSymbol.getType());
+        String toAssign = getVariableName(assignmentNode, assignmentNode.get("id"));
+        boolean isField = getSymbolKind(assignmentNode) == SymbolKind.FIELD;
+        var toAssignType = OllirUtils.getOllirType(getResolvedType(assignmentNode));
 
         String type = "";
 
@@ -314,14 +411,10 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
             var testRet2 = visit(c2, new OllirInference(".i32", true)); //bop
             var tVar = getAndAddTempVarCount(assignmentNode);
 
-            var localvars = st.getLocalVariables(getCurrentMethodName(assignmentNode));
-
             var argType = "";
 
-            for (var localvar : localvars) {
-                if (localvar.getName().equals(childNode.getJmmChild(0).get("id"))) {
-                    argType = OllirUtils.getOllirType(localvar.getType());
-                }
+            if (getSymbolKind(childNode.getJmmChild(0)) == SymbolKind.LOCAL) {
+                argType = OllirUtils.getOllirType(getResolvedType(childNode.getJmmChild(0)));
             }
             ollirCode.append(getIndent()).append("t").append(tVar).append(toAssignType).append(" :=").append(toAssignType).append(" invokevirtual(").append(childNode.getJmmChild(0).get("id")).append(argType).append(", \"").append(childNode.getJmmChild(1).get("id")).append("\", ").append(testRet1).append(", ").append(testRet2).append(").i32;\n");
             ollirCode.append(getIndent()).append(toAssign).append(toAssignType).append(" :=").append(toAssignType).append(" t").append(tVar).append(".i32;\n");
@@ -334,35 +427,13 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
             type = ".bool";
         } else if (assignmentNode.getJmmChild(0).getKind().equals("Variable")) {
 
-            String varid = assignmentNode.getJmmChild(0).get("id");
-            //System.out.println("VAR ID: " + varid);
-            var localvars = st.getLocalVariables(getCurrentMethodName(assignmentNode));
-            //System.out.println("LOCAL VARS: " + localvars);
-            var params = st.getParameters(getCurrentMethodName(assignmentNode));
-            //System.out.println("PARAMS: " + params);
-
-            Symbol varSymbol = null;
-            for (var localvar : localvars) {
-                if (localvar.getName().equals(varid)) {
-                    varSymbol = localvar;
-                }
-            }
-            if (varSymbol == null) {
-                for (var param : params) {
-                    if (param.getName().equals(varid)) {
-                        varSymbol = param;
-                    }
-                }
-            }
-            if (varSymbol == null) {
-                varSymbol = st.getField(varid).getKey();  //in case of being a field
-                //System.out.println("VAR SYMBOL IS FIELD: " + varSymbol);
+            var variable = assignmentNode.getJmmChild(0);
+            var varType = OllirUtils.getOllirType(getResolvedType(variable));
+            if (getSymbolKind(variable) == SymbolKind.FIELD) {
                 var newTemp = getAndAddTempVarCount(assignmentNode);
-                var varType = OllirUtils.getOllirType(varSymbol.getType());
-                ollirCode.append(getIndent()).append("t").append(newTemp).append(varType).append(" :=").append(varType).append(" getfield(this, ").append(varSymbol.getName()).append(varType).append(")").append(OllirUtils.getOllirType(varSymbol.getType())).append(";\n");
+                ollirCode.append(getIndent()).append("t").append(newTemp).append(varType).append(" :=").append(varType).append(" getfield(this, ").append(variable.get("id")).append(varType).append(")").append(varType).append(";\n");
             }
-            //System.out.println("VAR SYMBOL: " + varSymbol);
-            type = OllirUtils.getOllirType(varSymbol.getType());
+            type = varType;
         } else if (assignmentNode.getJmmChild(0).getKind().equals("BinaryOp")) {
 
             String retstr = visit(assignmentNode.getJmmChild(0));
@@ -453,71 +524,16 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
     private String visitVariable(JmmNode variableNode, OllirInference inference) {
         String varName = variableNode.get("id");
-        String currentMethod = getCurrentMethodName(variableNode);
-        String varType = "";
-
-        if (currentSCOPE.equals("CLASS")) {
-            var field = st.getField(varName);
-            var varTypeInt = field.getKey().getType();
-            varType = OllirUtils.getOllirType(varTypeInt);
-        } else if (currentSCOPE.equals("METHOD") && currentMethod != null) {
-            var _params = st.getParameters(currentMethod);
-            //System.out.println("PARAMS: " + _params);
-            var variable = st.getLocalVariableFromMethod(varName, currentMethod);
-            var variables = st.getLocalVariables(currentMethod);
-            for (var v : variables) {
-                if (v.getName().equals(varName)) {
-                    variable = v;
-                }
-            }
+        String varType = OllirUtils.getOllirType(getResolvedType(variableNode));
 
-            //var varTypeInt = variable.getType();
-            //varType = OllirUtils.getOllirType(varTypeInt);
-
-            if (variable == null) {
-                var parameters_var = st.getField(varName);
-                //System.out.println("PARAMETERS VAR: " + parameters_var);
-                var varTypeInt = parameters_var.getKey().getType();
-                varType = OllirUtils.getOllirType(varTypeInt);
-            } else {
-                var varTypeInt = variable.getType();
-                varType = OllirUtils.getOllirType(varTypeInt);
-            }
-
-        }
-
-        //System.out.println("DEBUGGING RETURN NODE: " + returnNode);
-
-        //System.out.println("DEBUGGING RETURN NODE CHILD: " + exprNode);
-
-
-        String param_indexstring = "";
-        boolean varIsParam = false;
-
-        if (parameterIndex != null) {
-            var param_index = parameterIndex.get(variableNode.get("id"));
-            if (param_index != null) {
-                param_index += 1;
-                param_indexstring = "$" + param_index.toString() + ".";
-                varIsParam = true;
-            }
-        }
-
-        var varField = st.getField(varName);
-        boolean varIsField = false;
-        var isAssignChild = variableNode.getAncestor("Assignment").isPresent();
-
-        if (varField != null) {
-            varIsField = true;
-        }
-
-        //ollirCode.append(varName).append(varType);
+        var symbolKind = getSymbolKind(variableNode);
+        var isAssignChild = hasAncestor(variableNode, "Assignment");
 
         String str;
 
-        if (varIsParam) {
-            str = param_indexstring + varName + varType;
-        } else if (varIsField) {
+        if (symbolKind == SymbolKind.PARAMETER) {
+            str = getVariableName(variableNode, varName) + varType;
+        } else if (symbolKind == SymbolKind.FIELD) {
             //str = "getfield(this, " + varName + varType + ")" + varType;
             ollirCode.append(getIndent()).append("t").append(getAndAddTempVarCount(variableNode)).append(varType).append(" :=").append(varType).append(" getfield(this, ").append(varName).append(varType).append(")").append(varType).append(";\n");
             var currentTemp = getTempVarCount();
@@ -596,14 +612,14 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
             //return "null";
             System.out.println("aaa");
         } else if (exprNode.getKind().equals("This")) {
-            var returnType = st.getReturnType(getCurrentMethodName(returnNode));
+            var returnType = currentReturnType;
             ollirCode.append(getIndent()).append("ret").append(OllirUtils.getOllirType(returnType)).append(" this").append(OllirUtils.getOllirType(returnType)).append(";\n");
         } else {
             //System.out.println("DEBUGGING RETURN NODE CHILD: " + exprNode);
             exprnodeReturn = visit(exprNode);
             //System.out.println("What is coming from expr node?: " + exprnodeReturn);
 
-            String returnString = OllirUtils.getOllirType(st.getReturnType(getCurrentMethodName(returnNode))) + " ";
+            String returnString = OllirUtils.getOllirType(currentReturnType) + " ";
 
             String returnReg = exprnodeReturn;
 
@@ -620,7 +636,7 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
     private String visitParameter(JmmNode parameterNode, OllirInference inference) {
 
-        List<Symbol> methodParameters = st.getParameters(getCurrentMethodName(parameterNode));
+        List<Symbol> methodParameters = st.getParameters(currentMethodName);
 
         for (var child : parameterNode.getChildren()) {
             visit(child);
@@ -665,12 +681,27 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
         return "";
     }
 
-    private String getCurrentMethodName(JmmNode node) {
-        Optional<JmmNode> methodDeclarationNode = node.getAncestor("MethodDeclaration");
-        if (methodDeclarationNode.isPresent()) {
-            return methodDeclarationNode.get().get("name");
+    /**
+     * The type the semantic analysis resolved for the node, see {@link NodeTypes}.
+     */
+    private Type getResolvedType(JmmNode node) {
+        return NodeTypes.getType(node)
+                .orElseThrow(() -> new RuntimeException("No type was resolved for node " + node));
+    }
+
+    private SymbolKind getSymbolKind(JmmNode node) {
+        return NodeTypes.getSymbolKind(node).orElse(null);
+    }
+
+    /**
+     * The name of the variable used by the node as OLLIR refers to it, with the index of the parameters ($1.a).
+     */
+    private String getVariableName(JmmNode node, String name) {
+        if (getSymbolKind(node) == SymbolKind.PARAMETER) {
+            return "$" + (parameterIndex.get(name) + 1) + "." + name;
         }
-        return "main";
+
+        return name;
     }
 
     private String visitVarDeclaration(JmmNode varDeclNode, OllirInference inference) {
@@ -714,7 +745,7 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         //System.out.println("DEBUG OP" + binaryOperator.get("op"));
 
-        var parentRet = binaryOperator.getAncestor("ReturnStmt").isPresent();
+        var parentRet = hasAncestor(binaryOperator, "ReturnStmt");
         //System.out.println("DEBUG PARENT RET" + parentRet);
 
         String op = binaryOperator.get("op");
@@ -766,29 +797,20 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         //System.out.println("DEBUGGING METHODCALL NODE: " + methodCallNode);
 
-        var externalMethodParams = st.getParameters(getCurrentMethodName(methodCallNode));
-
-        //System.out.println("DEBUGGING EXTERNAL METHOD PARAMS: " + externalMethodParams);
-
         //System.out.println("CHILD = " + methodCallNode.getChildren());
 
         //method call like io.println(a)
-        var parent = methodCallNode.getAncestor("Assignment");
+        var parent = getEnclosingAssignment(methodCallNode);
         //System.out.println("DEBUGGING PARENT: " + parent);
 //        System.out.println("DEBUGGING PARENT CHILDREN: " + parent.get().get("id"));
-        Symbol toAssignSymbol = null;
+        var toAssignType = "";
         if (parent.isPresent()) {
-            toAssignSymbol = st.getLocalVariableFromMethod(getCurrentMethodName(methodCallNode), parent.get().get("id"));
+            if (getSymbolKind(parent.get()) == SymbolKind.LOCAL) {
+                toAssignType = OllirUtils.getOllirType(getResolvedType(parent.get()));
+            }
         } else {
             ollirCode.append(getIndent());
         }
-//        toAssignSymbol = st.getLocalVariableFromMethod(getCurrentMethodName(methodCallNode), parent.get().get("id"));
-        var toAssignType = "";
-        if (toAssignSymbol == null) {
-            toAssignType = "";
-        } else {
-            toAssignType = OllirUtils.getOllirType(toAssignSymbol.getType());
-        }
 //        toAssignType = OllirUtils.getOllirType(toAssignSymbol.getType());
 
         String firstArg = "";
@@ -822,10 +844,6 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         List<JmmNode> argsJmm = new ArrayList<>();
 
-        var localvars = st.getLocalVariables(getCurrentMethodName(methodCallNode));
-
-        var params = st.getParameters(getCurrentMethodName(methodCallNode));
-
         boolean addIndentToNewObject = false;
 
         boolean opInsideCall = false;
@@ -834,7 +852,7 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         boolean isToAssignToTempVar = false;
 
-        var arrayAccessParent = methodCallNode.getAncestor("ArrayAccess").isPresent();
+        var arrayAccessParent = hasAncestor(methodCallNode, "ArrayAccess");
 
         for (int i = 2; i < methodCallNode.getChildren().size(); i++) {
 
@@ -860,20 +878,15 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         //System.out.println("DEBUGGING ARGS JMM: " + argsJmm);
 
-        Symbol firstArgNotImports = st.getLocalVariableFromMethod(getCurrentMethodName(methodCallNode), firstArg);
-
         StringBuilder operationString = new StringBuilder();
 
-        //check if first arg is an object from the parameters
+        //the first arg is an object if it is a local variable or a parameter, otherwise it is an imported class
 
-        for (var param : params) {
-            if (param.getName().equals(firstArg)) {
-                firstArgNotImports = param;
-            }
-        }
+        var firstArgKind = getSymbolKind(methodCallNode.getJmmChild(0));
 
-        if (firstArgNotImports != null) {
-            operationString.append(invokeType + "(" + firstArg + OllirUtils.getOllirType(firstArgNotImports.getType()) + ", \"" + methodId + "\"");
+        if (firstArgKind == SymbolKind.LOCAL || firstArgKind == SymbolKind.PARAMETER) {
+            var firstArgType = OllirUtils.getOllirType(getResolvedType(methodCallNode.getJmmChild(0)));
+            operationString.append(invokeType + "(" + firstArg + firstArgType + ", \"" + methodId + "\"");
         } else {
             if (addIndentToNewObject) {
                 operationString.append(getIndent());
@@ -916,42 +929,15 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
             else {
                 //System.out.println("ENTERED INLINE CLASS");
                 //System.out.println("DEBUGGING ARG TEMP: " + arg);
-                //System.out.println("LOCAL VARS: " + localvars);
-                //System.out.println("PARAMS: " + params);
                 boolean found = false;
-                //operationString.append(", ").append(arg.get("id"));
-                for (var localvar : localvars) {
-                    if (arg.get("id").equals(localvar.getName())) {
-                        String argType = OllirUtils.getOllirType(localvar.getType());
-                        operationString.append(", ").append(localvar.getName()).append(argType);
-                        found = true;
-                        break;
-                    }
-//                    else {
-//                        operationString.append(", ").append("t").append(getTempVarCount()).append(".").append(arg.get("id"));
-//                    }
-                }
-                if (found) {
-                    continue;
-                }
-                for (var param : params) {
-                    if (arg.get("id").equals(param.getName())) {
-                        //System.out.println("GOT PARAM C CORRECTLY");
-                        String argType = OllirUtils.getOllirType(param.getType());
-                        operationString.append(", ").append("$").append(parameterIndex.get(param.getName()) + 1).append(".").append(param.getName()).append(argType);
-                        found = true;
-                        break;
-                    }
-//                    else {
-//                        operationString.append(", ").append("t").append(getTempVarCount()).append(".").append(arg.get("id"));
-//                    }
-                }
-                if (found) {
+                var argKind = getSymbolKind(arg);
+                if (argKind == SymbolKind.LOCAL || argKind == SymbolKind.PARAMETER) {
+                    String argType = OllirUtils.getOllirType(getResolvedType(arg));
+                    operationString.append(", ").append(getVariableName(arg, arg.get("id"))).append(argType);
                     continue;
                 }
-                var argField = st.getField(arg.get("id")).getKey();
-                if (argField != null) {
-                    String argType = OllirUtils.getOllirType(argField.getType());
+                if (argKind == SymbolKind.FIELD) {
+                    String argType = OllirUtils.getOllirType(getResolvedType(arg));
                     ollirCode.append(getIndent()).append("t").append(getTempVarCount()).append(argType).append(" :=").append(argType).append(" getfield(this, ").append(arg.get("id")).append(argType).append(")").append(argType).append(";\n");
                     operationString.append(", ").append("t").append(getTempVarCount()).append(argType);
                     found = true;
@@ -980,7 +966,7 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
             return "t" + tVar + ".i32";
         }
 
-        var assignmentParent = methodCallNode.getAncestor("Assignment").isPresent();
+        var assignmentParent = hasAncestor(methodCallNode, "Assignment");
 
         if (assignmentParent) {
             var tVar = getAndAddTempVarCount(methodCallNode);
@@ -1027,26 +1013,22 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
         //System.out.println("DEBUGGING ARGS LIST: " + argsList);
 
         String invokeType = OllirUtils.getInvokeType(firstArg, st);
-        String returnType = OllirUtils.getOllirType(st.getReturnType(getCurrentMethodName(methodCallNode))) + " ";
+        String returnType = OllirUtils.getOllirType(currentReturnType) + " ";
 
         //System.out.println("DEBUGGING INVOKE TYPE: " + invokeType);
         //System.out.println("DEBUGGING METHOD ID: " + methodId);
 
-        List<Symbol> argsSymbols = new ArrayList<>();
-
-        var localvars = st.getLocalVariables(getCurrentMethodName(methodCallNode));
+        List<JmmNode> argsLocals = new ArrayList<>();
 
-        for (var localvar : localvars) {
-            for (var arg : argsList) {
-                if (localvar.getName().equals(arg)) {
-                    argsSymbols.add(localvar);
-                }
+        for (var child : methodCallNode.getChildren()) {
+            if (getSymbolKind(child) == SymbolKind.LOCAL) {
+                argsLocals.add(child);
             }
         }
 
         //System.out.println("DEBUGGING ARGS SYMBOLS: " + argsSymbols);
 
-        var parent = methodCallNode.getAncestor("This").isPresent();
+        var parent = hasAncestor(methodCallNode, "This");
         var childArrayAccess = methodCallNode.getJmmChild(0).getKind().equals("ArrayAccess");
 
         StringBuilder operationString = new StringBuilder();
@@ -1060,9 +1042,9 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         //StringBuilder operationString = new StringBuilder(invokeType + "(" + "\"" + methodId + "\"");
 
-        for (var arg : argsSymbols) {
-            String argType = OllirUtils.getOllirType(arg.getType());
-            operationString.append(", ").append(arg.getName()).append(argType);
+        for (var arg : argsLocals) {
+            String argType = OllirUtils.getOllirType(getResolvedType(arg));
+            operationString.append(", ").append(arg.get("id")).append(argType);
         }
 
         //get all entries of argsList that are String anf start with "t"
@@ -1118,7 +1100,7 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
             ollirCode.append(getIndent()).append("putfield(this,").append(thisNode.getJmmChild(0).get("id")).append(classField0Type).append(",").append(thisNode.getJmmChild(1).get("value")).append(var2Type).append(").V;\n");
         } else if (thisNode.getJmmChild(0).getKind().equals("MethodCall")) {
             var methodCallNode = thisNode.getJmmChild(0);
-            var returnType = OllirUtils.getOllirType(st.getReturnType(getCurrentMethodName(methodCallNode)));
+            var returnType = OllirUtils.getOllirType(currentReturnType);
             var methodCall = visit(thisNode.getJmmChild(0)); //visit the method call
             var newTemp = getAndAddTempVarCount(thisNode);
             ollirCode.append(getIndent()).append("t").append(newTemp).append(returnType).append(" :=").append(returnType).append(" ").append(methodCall).append(";\n");
@@ -1143,15 +1125,15 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
             visit(child);
         }
 
-        var parent = newObjectNode.getAncestor("AccessMethod");
+        var parent = hasAncestor(newObjectNode, "AccessMethod");
 
-        var parentRet = newObjectNode.getAncestor("ReturnStmt").isPresent();
+        var parentRet = hasAncestor(newObjectNode, "ReturnStmt");
 
         var type = newObjectNode.get("id");
 
         var newTemp = "";
 
-        if (parent.isPresent() || parentRet) {
+        if (parent || parentRet) {
             newTemp = String.valueOf(getAndAddTempVarCount(newObjectNode));
             ollirCode.append("t").append(newTemp).append(".").append(type).append(" :=.").append(type).append(" new(").append(newObjectNode.get("id")).append(").").append(newObjectNode.get("id")).append(";\n");
             ollirCode.append(getIndent()).append("invokespecial(").append("t").append(newTemp).append(".").append(type).append(", \"<init>\").V").append(";\n");
@@ -1236,6 +1218,8 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
         this.addIndent();
         visit(whileScope);
 
+        // The condition is evaluated again, since its temporary holds the value from before the body
+        conditionRegOrExpression = visit(condition, new OllirInference(".bool", !isNotToAssignToTemp));
         ollirCode.append(getIndent()).append("if (").append(conditionRegOrExpression).append(") goto whileBody").append(whileCount).append(";\n");
         this.removeIndent();
 
@@ -1279,7 +1263,7 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         //System.out.println("DEBUG OP" + binaryOperator.get("op"));
 
-        var parentRet = relationalOperator.getAncestor("ReturnStmt").isPresent();
+        var parentRet = hasAncestor(relationalOperator, "ReturnStmt");
         //System.out.println("DEBUG PARENT RET" + parentRet);
 
         String op = relationalOperator.get("op");
@@ -1336,28 +1320,28 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         //if array is field
 
-        var arrayAsField = st.getField(arrayName.get("id"));
+        var arrayAsField = getSymbolKind(arrayName) == SymbolKind.FIELD;
 
         var tVar = 0;
 
-        if (arrayAsField != null) {
+        if (arrayAsField) {
             tVar = getAndAddTempVarCount(arrayAccessNode);
             ollirCode.append(getIndent()).append("t").append(tVar).append(".array.i32 :=.array.i32 getfield(this, ").append(arrayName.get("id")).append(".array.i32).array.i32;\n");
         }
 
-        String opString = arrayName.get("id") + ".array.i32[" + indexReg + "].i32";
+        String opString = getVariableName(arrayName, arrayName.get("id")) + ".array.i32[" + indexReg + "].i32";
 
-        if (arrayAsField != null) {
+        if (arrayAsField) {
             opString = "t" + tVar + ".array.i32[" + indexReg + "].i32";
         }
 
         if (inference == null || inference.getIsAssignedToTempVar()) {
             int tempVar = getAndAddTempVarCount(arrayAccessNode);
             ollirCode.append(getIndent()).append("t").append(tempVar).append(".i32 :=.i32 ").append(opString).append(";\n");
-            var binaryOpParent = arrayAccessNode.getAncestor("BinaryOp").isPresent();
-            var arrayAssignmentParent = arrayAccessNode.getAncestor("ArrayAssignment").isPresent();
-            var accessMethodParent = arrayAccessNode.getAncestor("AccessMethod").isPresent();
-            var methodCallParent = arrayAccessNode.getAncestor("MethodCall").isPresent();
+            var binaryOpParent = hasAncestor(arrayAccessNode, "BinaryOp");
+            var arrayAssignmentParent = hasAncestor(arrayAccessNode, "ArrayAssignment");
+            var accessMethodParent = hasAncestor(arrayAccessNode, "AccessMethod");
+            var methodCallParent = hasAncestor(arrayAccessNode, "MethodCall");
             if (binaryOpParent || arrayAssignmentParent || accessMethodParent || methodCallParent) {
                 return "t" + tempVar + ".i32";
             }
@@ -1376,8 +1360,8 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         ollirCode.append(getIndent()).append("t").append(tVar).append(".i32 :=.i32 arraylength(").append(arrayName.get("id")).append(".array.i32).i32;\n");
 
-        var binOpParent = arrayLengthNode.getAncestor("BinaryOp").isPresent();
-        var relationalOpParent = arrayLengthNode.getAncestor("RelationalOp").isPresent();
+        var binOpParent = hasAncestor(arrayLengthNode, "BinaryOp");
+        var relationalOpParent = hasAncestor(arrayLengthNode, "RelationalOp");
 
         if (binOpParent || relationalOpParent) {
             return "t" + tVar + ".i32";
@@ -1394,7 +1378,7 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         //start
 
-        var arrayName = arrayAssignmentNode.get("id");
+        var arrayName = getVariableName(arrayAssignmentNode, arrayAssignmentNode.get("id"));
         var index = arrayAssignmentNode.getJmmChild(0);
         var value = arrayAssignmentNode.getJmmChild(1);
 
@@ -1404,9 +1388,9 @@ public class OllirGenerator extends AJmmVisitor <OllirInference, String> {
 
         //if array is field
 
-        var arrayAsField = st.getField(arrayName);
+        var arrayAsField = getSymbolKind(arrayAssignmentNode) == SymbolKind.FIELD;
 
-        if (arrayAsField != null) {
+        if (arrayAsField) {
             var tVar = getAndAddTempVarCount(arrayAssignmentNode);
             ollirCode.append(getIndent()).append("t").append(tVar).append(".array.i32 :=.array.i32 getfield(this, ").append(arrayName).append(".array.i32).array.i32;\n");
             arrayName = "t" + tVar;
@@ -0,0 +1,667 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.Analysis.MySymbolTable;
+import pt.up.fe.comp2023.ast.KindVisitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the OLLIR class (ClassUnit, Method and Instruction objects) directly from the AST, without printing OLLIR
+ * code and parsing it back.
+ * <p>
+ * Statements append instructions to the method being built and return null. Expressions return the instruction that
+ * computes their value, after appending the instructions that compute their operands into temporaries. The data
+ * passed down is the type expected by the parent, which types the calls to methods this class does not declare.
+ */
+public class OllirIrBuilder extends KindVisitor<Type, Instruction> {
+
+    private final MySymbolTable st;
+    private final ClassUnit classUnit;
+
+    private final Map<String, pt.up.fe.comp.jmm.analysis.table.Type> fields = new HashMap<>();
+
+    // State of the method being built
+    private Method method;
+    private final Map<String, pt.up.fe.comp.jmm.analysis.table.Type> locals = new HashMap<>();
+    private final Map<String, Operand> params = new HashMap<>();
+    private final Set<String> usedNames = new HashSet<>();
+    private final List<String> pendingLabels = new ArrayList<>();
+    private int tempVarCount;
+
+    private int ifElseCount;
+    private int whileCount;
+
+    public OllirIrBuilder(MySymbolTable st) {
+        this.st = st;
+        this.classUnit = new ClassUnit();
+    }
+
+    @Override
+    protected void buildVisitor() {
+        addVisit("Program", this::visitProgram);
+        addVisit("ClassDeclaration", this::visitClassDeclaration);
+        addVisit("MethodDeclaration", this::visitMethodDeclaration);
+        addVisit("MainMethodDeclaration", this::visitMethodDeclaration);
+        addVisit("VarDeclaration", this::visitVarDeclaration);
+        addVisit("Block", this::visitBlock);
+        addVisit("IfElse", this::visitIfElse);
+        addVisit("While", this::visitWhile);
+        addVisit("Stmt", this::visitStmt);
+        addVisit("Assignment", this::visitAssignment);
+        addVisit("ArrayAssignment", this::visitArrayAssignment);
+        addVisit("ReturnStmt", this::visitReturn);
+        addVisit("Integer", this::visitInteger);
+        addVisit("Boolean", this::visitBoolean);
+        addVisit("Variable", this::visitVariable);
+        addVisit("Parenthesis", this::visitParenthesis);
+        addVisit("BinaryOp", this::visitBinaryOp);
+        addVisit("RelationalOp", this::visitBinaryOp);
+        addVisit("UnaryOp", this::visitUnaryOp);
+        addVisit("ArrayAccess", this::visitArrayAccess);
+        addVisit("ArrayLength", this::visitArrayLength);
+        addVisit("ArrayInit", this::visitArrayInit);
+        addVisit("NewObject", this::visitNewObject);
+        addVisit("This", this::visitThis);
+        addVisit("MethodCall", this::visitMethodCall);
+        addVisit("AccessMethod", this::visitAccessMethod);
+
+        setDefaultVisit((node, expected) -> null);
+    }
+
+    public ClassUnit build(JmmNode rootNode) {
+        visit(rootNode);
+        return classUnit;
+    }
+
+    private Instruction visitProgram(JmmNode programNode, Type expected) {
+        // Imports are stored as "[a, b, C]"
+        for (String importName : st.getImports()) {
+            classUnit.addImport(importName.replaceAll("[\\[\\]]", "").replace(", ", "."));
+        }
+
+        return visitAllChildren(programNode, expected);
+    }
+
+    private Instruction visitClassDeclaration(JmmNode classNode, Type expected) {
+        classUnit.setClassName(st.getClassName());
+        classUnit.setClassAccessModifier(AccessModifiers.PUBLIC);
+
+        String superClass = st.getSuper();
+        if (superClass != null && !superClass.equals("Object")) {
+            classUnit.setSuperClass(superClass);
+        }
+
+        for (JmmNode child : classNode.getChildren()) {
+            if (!child.getKind().equals("VarDeclaration")) {
+                continue;
+            }
+
+            var type = MySymbolTable.getTypeFromNode(child.getJmmChild(0));
+            fields.put(child.get("name"), type);
+
+            Field field = new Field();
+            field.setFieldName(child.get("name"));
+            field.setFieldType(toOllirType(type));
+            classUnit.addField(field);
+        }
+
+        addDefaultConstructor();
+
+        for (JmmNode child : classNode.getChildren()) {
+            if (!child.getKind().equals("VarDeclaration")) {
+                visit(child);
+            }
+        }
+
+        return null;
+    }
+
+    private void addDefaultConstructor() {
+        Method constructor = new Method(classUnit);
+        constructor.setConstructMethod();
+        constructor.setMethodName(st.getClassName());
+        constructor.setReturnType(new Type(ElementType.VOID));
+
+        constructor.addInstr(new CallInstruction(CallType.invokespecial, thisOperand(), methodName("<init>"),
+                new ArrayList<>(), new Type(ElementType.VOID)));
+
+        classUnit.addMethod(constructor);
+    }
+
+    private Instruction visitMethodDeclaration(JmmNode methodNode, Type expected) {
+        boolean isMain = methodNode.getKind().equals("MainMethodDeclaration");
+        String methodName = isMain ? "main" : methodNode.get("name");
+
+        method = new Method(classUnit);
+        method.setMethodAccessModifier(AccessModifiers.PUBLIC);
+        if (isMain) {
+            method.setStaticMethod();
+        }
+        method.setMethodName(methodName);
+        method.setReturnType(toOllirType(st.getReturnType(methodName)));
+
+        locals.clear();
+        params.clear();
+        usedNames.clear();
+        pendingLabels.clear();
+        tempVarCount = 0;
+
+        // Parameters are numbered from 1, the virtual register 0 holds 'this' (static methods start at 0)
+        int paramId = isMain ? 0 : 1;
+        for (Symbol param : st.getParameters(methodName)) {
+            Operand operand = new Operand(param.getName(), toOllirType(param.getType()));
+            operand.setParamId(paramId++);
+            method.addParam(operand);
+            params.put(param.getName(), operand);
+        }
+
+        for (Symbol local : st.getLocalVariables(methodName)) {
+            locals.put(local.getName(), local.getType());
+        }
+
+        // Temporaries must not shadow any name the method can refer to
+        usedNames.addAll(locals.keySet());
+        usedNames.addAll(params.keySet());
+        usedNames.addAll(fields.keySet());
+        usedNames.addAll(classUnit.getImportedClasseNames());
+
+        for (JmmNode child : methodNode.getChildren()) {
+            switch (child.getKind()) {
+                case "Parameter", "MainParam", "IntType", "IntArrayType", "BooleanType", "StringType", "ObjectType" -> {
+                }
+                default -> visit(child);
+            }
+        }
+
+        // Labels at the end of the method need an instruction to refer to
+        List<Instruction> instructions = method.getInstructions();
+        boolean endsWithReturn = !instructions.isEmpty()
+                && instructions.get(instructions.size() - 1).getInstType() == InstructionType.RETURN;
+
+        if (method.getReturnType().getTypeOfElement() == ElementType.VOID
+                && (!endsWithReturn || !pendingLabels.isEmpty())) {
+            ReturnInstruction ret = new ReturnInstruction();
+            ret.setReturnType(new Type(ElementType.VOID));
+            addInstruction(ret);
+        }
+
+        classUnit.addMethod(method);
+        method = null;
+
+        return null;
+    }
+
+    private Instruction visitVarDeclaration(JmmNode varDeclaration, Type expected) {
+        // Declarations with an initializer behave as an assignment
+        if (varDeclaration.getNumChildren() > 1) {
+            assign(varDeclaration.get("name"), varDeclaration.getJmmChild(1));
+        }
+
+        return null;
+    }
+
+    private Instruction visitBlock(JmmNode block, Type expected) {
+        return visitAllChildren(block, expected);
+    }
+
+    private Instruction visitIfElse(JmmNode ifElse, Type expected) {
+        int count = ifElseCount++;
+        String thenLabel = "ifTrue" + count;
+        String endLabel = "endIf" + count;
+
+        addInstruction(buildBranch(ifElse.getJmmChild(0), thenLabel));
+
+        if (ifElse.getNumChildren() > 2) {
+            visit(ifElse.getJmmChild(2));
+        }
+        addInstruction(new GotoInstruction(endLabel));
+
+        pendingLabels.add(thenLabel);
+        visit(ifElse.getJmmChild(1));
+
+        pendingLabels.add(endLabel);
+
+        return null;
+    }
+
+    private Instruction visitWhile(JmmNode whileNode, Type expected) {
+        int count = whileCount++;
+        String bodyLabel = "whileBody" + count;
+        String condLabel = "whileCond" + count;
+
+        // The condition is tested at the bottom of the loop, so each iteration takes a single jump
+        addInstruction(new GotoInstruction(condLabel));
+
+        pendingLabels.add(bodyLabel);
+        visit(whileNode.getJmmChild(1));
+
+        pendingLabels.add(condLabel);
+        addInstruction(buildBranch(whileNode.getJmmChild(0), bodyLabel));
+
+        return null;
+    }
+
+    private CondBranchInstruction buildBranch(JmmNode condition, String label) {
+        Instruction conditionInst = visit(condition, new Type(ElementType.BOOLEAN));
+
+        CondBranchInstruction branch = conditionInst instanceof OpInstruction opInst
+                ? new OpCondInstruction(opInst)
+                : new SingleOpCondInstruction(new SingleOpInstruction(toElement(conditionInst)));
+
+        branch.setLabel(label);
+
+        return branch;
+    }
+
+    private Instruction visitStmt(JmmNode stmt, Type expected) {
+        Instruction value = visit(stmt.getJmmChild(0), new Type(ElementType.VOID));
+
+        // Only calls have side effects, any other value is discarded
+        if (value != null && value.getInstType() == InstructionType.CALL) {
+            addInstruction(value);
+        }
+
+        return null;
+    }
+
+    private Instruction visitAssignment(JmmNode assignment, Type expected) {
+        assign(assignment.get("id"), assignment.getJmmChild(0));
+        return null;
+    }
+
+    private void assign(String name, JmmNode valueNode) {
+        Operand dest = getVariable(name);
+
+        if (dest == null) {
+            Type fieldType = toOllirType(fields.get(name));
+            Element value = toElement(valueNode, fieldType);
+
+            addInstruction(new PutFieldInstruction(thisOperand(), new Operand(name, fieldType), value,
+                    new Type(ElementType.VOID)));
+            return;
+        }
+
+        // Objects created straight into a variable do not need a temporary
+        if (valueNode.getKind().equals("NewObject")) {
+            addInstruction(new AssignInstruction(dest, dest.getType(), newObject(valueNode.get("id"))));
+            addInstruction(constructorCall(dest));
+            return;
+        }
+
+        addInstruction(new AssignInstruction(dest, dest.getType(), visit(valueNode, dest.getType())));
+    }
+
+    private Instruction visitArrayAssignment(JmmNode arrayAssignment, Type expected) {
+        Operand array = toVariable(arrayAssignment.get("id"));
+        Operand index = toOperand(toElement(arrayAssignment.getJmmChild(0), new Type(ElementType.INT32)));
+        Element value = toElement(arrayAssignment.getJmmChild(1), new Type(ElementType.INT32));
+
+        Type intType = new Type(ElementType.INT32);
+        addInstruction(new AssignInstruction(arrayElement(array, index), intType, new SingleOpInstruction(value)));
+
+        return null;
+    }
+
+    private Instruction visitReturn(JmmNode returnNode, Type expected) {
+        ReturnInstruction ret;
+
+        if (returnNode.getNumChildren() > 0) {
+            ret = new ReturnInstruction(toElement(returnNode.getJmmChild(0), method.getReturnType()));
+            ret.setReturnType(method.getReturnType());
+        } else {
+            ret = new ReturnInstruction();
+            ret.setReturnType(new Type(ElementType.VOID));
+        }
+
+        addInstruction(ret);
+
+        return null;
+    }
+
+    private Instruction visitInteger(JmmNode integer, Type expected) {
+        return new SingleOpInstruction(new LiteralElement(integer.get("value"), new Type(ElementType.INT32)));
+    }
+
+    private Instruction visitBoolean(JmmNode bool, Type expected) {
+        String value = bool.get("value").equals("true") ? "1" : "0";
+        return new SingleOpInstruction(new LiteralElement(value, new Type(ElementType.BOOLEAN)));
+    }
+
+    private Instruction visitVariable(JmmNode variable, Type expected) {
+        return new SingleOpInstruction(toVariable(variable.get("id")));
+    }
+
+    private Instruction visitParenthesis(JmmNode parenthesis, Type expected) {
+        return visit(parenthesis.getJmmChild(0), expected);
+    }
+
+    private Instruction visitBinaryOp(JmmNode binaryOp, Type expected) {
+        OperationType opType = switch (binaryOp.get("op")) {
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "<" -> OperationType.LTH;
+            case ">" -> OperationType.GTH;
+            case "<=" -> OperationType.LTE;
+            case ">=" -> OperationType.GTE;
+            case "==" -> OperationType.EQ;
+            case "!=" -> OperationType.NEQ;
+            case "&&" -> OperationType.ANDB;
+            case "||" -> OperationType.ORB;
+            default -> throw new IllegalArgumentException("Unexpected operator: " + binaryOp.get("op"));
+        };
+
+        boolean isBoolean = opType == OperationType.ANDB || opType == OperationType.ORB;
+        Type operandType = new Type(isBoolean ? ElementType.BOOLEAN : ElementType.INT32);
+
+        Element left = toElement(binaryOp.getJmmChild(0), operandType);
+        Element right = toElement(binaryOp.getJmmChild(1), operandType);
+
+        boolean isArithmetic = switch (opType) {
+            case ADD, SUB, MUL, DIV -> true;
+            default -> false;
+        };
+        Type resultType = new Type(isArithmetic ? ElementType.INT32 : ElementType.BOOLEAN);
+
+        return new BinaryOpInstruction(left, new Operation(opType, resultType), right);
+    }
+
+    private Instruction visitUnaryOp(JmmNode unaryOp, Type expected) {
+        Element operand = toElement(unaryOp.getJmmChild(0), new Type(ElementType.BOOLEAN));
+        return new UnaryOpInstruction(new Operation(OperationType.NOTB, new Type(ElementType.BOOLEAN)), operand);
+    }
+
+    private Instruction visitArrayAccess(JmmNode arrayAccess, Type expected) {
+        Operand array = toOperand(toElement(arrayAccess.getJmmChild(0), intArrayType()));
+        Operand index = toOperand(toElement(arrayAccess.getJmmChild(1), new Type(ElementType.INT32)));
+
+        return new SingleOpInstruction(arrayElement(array, index));
+    }
+
+    private Instruction visitArrayLength(JmmNode arrayLength, Type expected) {
+        Element array = toElement(arrayLength.getJmmChild(0), intArrayType());
+        return new CallInstruction(CallType.arraylength, array, new Type(ElementType.INT32));
+    }
+
+    private Instruction visitArrayInit(JmmNode arrayInit, Type expected) {
+        ArrayList<Element> size = new ArrayList<>();
+        size.add(toElement(arrayInit.getJmmChild(0), new Type(ElementType.INT32)));
+
+        return new CallInstruction(CallType.NEW, new Operand("array", intArrayType()), size, intArrayType());
+    }
+
+    private Instruction visitNewObject(JmmNode newObject, Type expected) {
+        Operand object = toTemp(newObject(newObject.get("id")));
+        addInstruction(constructorCall(object));
+
+        return new SingleOpInstruction(object);
+    }
+
+    private Instruction visitThis(JmmNode thisNode, Type expected) {
+        // this
+        if (thisNode.getNumChildren() == 0) {
+            return new SingleOpInstruction(thisOperand());
+        }
+
+        JmmNode member = thisNode.getJmmChild(0);
+
+        // this.field = value
+        if (thisNode.getNumChildren() == 2) {
+            String fieldName = member.get("id");
+            Type fieldType = toOllirType(fields.get(fieldName));
+            Element value = toElement(thisNode.getJmmChild(1), fieldType);
+
+            addInstruction(new PutFieldInstruction(thisOperand(), new Operand(fieldName, fieldType), value,
+                    new Type(ElementType.VOID)));
+            return null;
+        }
+
+        // this.field
+        if (member.getKind().equals("Variable") && fields.containsKey(member.get("id"))) {
+            return getField(member.get("id"));
+        }
+
+        // this.method(...), which is the same as method(...)
+        return visit(member, expected);
+    }
+
+    private Instruction visitMethodCall(JmmNode methodCall, Type expected) {
+        return buildCall(CallType.invokevirtual, thisOperand(), methodCall.get("method"), methodCall.getChildren(),
+                expected);
+    }
+
+    private Instruction visitAccessMethod(JmmNode accessMethod, Type expected) {
+        JmmNode targetNode = accessMethod.getJmmChild(0);
+        String name = accessMethod.getJmmChild(1).get("id");
+        List<JmmNode> args = accessMethod.getChildren().subList(2, accessMethod.getNumChildren());
+
+        // A name that is not a variable refers to a class, and the call is static
+        if (targetNode.getKind().equals("Variable") && !isVariable(targetNode.get("id"))) {
+            Operand target = new Operand(targetNode.get("id"), new ClassType(ElementType.CLASS, st.getClassName()));
+            return buildCall(CallType.invokestatic, target, name, args, expected);
+        }
+
+        Element target = toElement(targetNode, null);
+        return buildCall(CallType.invokevirtual, target, name, args, expected);
+    }
+
+    private CallInstruction buildCall(CallType callType, Element target, String name, List<JmmNode> argNodes,
+                                      Type expected) {
+
+        // Methods of this class have known signatures, the type of other calls is the one their parent expects
+        boolean isOwnMethod = callType == CallType.invokevirtual && isThisClass(target.getType())
+                && st.getMethods().contains(name);
+
+        List<Symbol> paramSymbols = isOwnMethod ? st.getParameters(name) : List.of();
+
+        ArrayList<Element> args = new ArrayList<>();
+        for (int i = 0; i < argNodes.size(); i++) {
+            Type argType = i < paramSymbols.size() ? toOllirType(paramSymbols.get(i).getType()) : null;
+            args.add(toElement(argNodes.get(i), argType));
+        }
+
+        Type returnType;
+        if (isOwnMethod) {
+            returnType = toOllirType(st.getReturnType(name));
+        } else if (expected != null) {
+            returnType = expected;
+        } else {
+            returnType = new Type(ElementType.INT32);
+        }
+
+        return new CallInstruction(callType, target, methodName(name), args, returnType);
+    }
+
+    private Instruction getField(String name) {
+        Type fieldType = toOllirType(fields.get(name));
+        return new GetFieldInstruction(thisOperand(), new Operand(name, fieldType), fieldType);
+    }
+
+    private CallInstruction newObject(String className) {
+        Type type = new ClassType(ElementType.OBJECTREF, className);
+        return new CallInstruction(CallType.NEW, new Operand(className, type), new ArrayList<>(), type);
+    }
+
+    private CallInstruction constructorCall(Operand object) {
+        return new CallInstruction(CallType.invokespecial, object, methodName("<init>"), new ArrayList<>(),
+                new Type(ElementType.VOID));
+    }
+
+    /**
+     * Evaluates the expression into an element (an operand or a literal), storing it in a temporary if needed.
+     */
+    private Element toElement(JmmNode expression, Type expected) {
+        return toElement(visit(expression, expected));
+    }
+
+    private Element toElement(Instruction value) {
+        if (value instanceof SingleOpInstruction singleOp && !(singleOp.getSingleOperand() instanceof ArrayOperand)) {
+            return singleOp.getSingleOperand();
+        }
+
+        return toTemp(value);
+    }
+
+    /**
+     * Array indexes and references must be variables, literals are stored in a temporary.
+     */
+    private Operand toOperand(Element element) {
+        if (element instanceof Operand operand) {
+            return operand;
+        }
+
+        return toTemp(new SingleOpInstruction(element));
+    }
+
+    private Operand toTemp(Instruction value) {
+        Type type = getResultType(value);
+        Operand temp = new Operand(newTempName(), type);
+
+        addInstruction(new AssignInstruction(temp, type, value));
+
+        return temp;
+    }
+
+    private static Type getResultType(Instruction value) {
+        return switch (value.getInstType()) {
+            case BINARYOPER, UNARYOPER -> ((OpInstruction) value).getOperation().getTypeInfo();
+            case CALL -> ((CallInstruction) value).getReturnType();
+            case GETFIELD -> ((GetFieldInstruction) value).getFieldType();
+            case NOPER -> {
+                Element operand = ((SingleOpInstruction) value).getSingleOperand();
+                yield operand instanceof ArrayOperand ? new Type(ElementType.INT32) : operand.getType();
+            }
+            default -> throw new IllegalArgumentException("Instruction has no value: " + value.getInstType());
+        };
+    }
+
+    private String newTempName() {
+        String name;
+        do {
+            name = "t" + ++tempVarCount;
+        } while (usedNames.contains(name));
+
+        return name;
+    }
+
+    private void addInstruction(Instruction instruction) {
+        for (String label : pendingLabels) {
+            method.addLabel(label, instruction);
+        }
+        pendingLabels.clear();
+
+        method.addInstr(instruction);
+    }
+
+    private boolean isVariable(String name) {
+        return locals.containsKey(name) || params.containsKey(name)
+                || (fields.containsKey(name) && !method.isStaticMethod());
+    }
+
+    /**
+     * @return the operand of a local variable or parameter, or null if the name is not one
+     */
+    private Operand getVariable(String name) {
+        if (locals.containsKey(name)) {
+            return new Operand(name, toOllirType(locals.get(name)));
+        }
+
+        Operand param = params.get(name);
+        if (param != null) {
+            Operand operand = new Operand(name, param.getType());
+            operand.setParamId(param.getParamId());
+            return operand;
+        }
+
+        return null;
+    }
+
+    /**
+     * Variables are locals, parameters or fields, the latter being loaded into a temporary.
+     */
+    private Operand toVariable(String name) {
+        Operand variable = getVariable(name);
+        if (variable != null) {
+            return variable;
+        }
+
+        if (fields.containsKey(name)) {
+            return toTemp(getField(name));
+        }
+
+        throw new RuntimeException("Unknown variable '" + name + "' in method " + method.getMethodName());
+    }
+
+    private static ArrayOperand arrayElement(Operand array, Operand index) {
+        ArrayList<Element> indexes = new ArrayList<>();
+        indexes.add(index);
+
+        ArrayOperand element = new ArrayOperand(array.getName(), new Type(ElementType.INT32), indexes);
+        if (array.isParameter()) {
+            element.setParamId(array.getParamId());
+        }
+
+        return element;
+    }
+
+    private Operand thisOperand() {
+        return new Operand("this", new ClassType(ElementType.THIS, st.getClassName()));
+    }
+
+    private boolean isThisClass(Type type) {
+        return type.getTypeOfElement() == ElementType.THIS
+                || (type instanceof ClassType classType && classType.getName().equals(st.getClassName()));
+    }
+
+    private static LiteralElement methodName(String name) {
+        return new LiteralElement("\"" + name + "\"", new Type(ElementType.STRING));
+    }
+
+    private static ArrayType intArrayType() {
+        ArrayType type = new ArrayType();
+        type.setNumDimensions(1);
+        type.setTypeOfElements(ElementType.INT32);
+        return type;
+    }
+
+    public static Type toOllirType(pt.up.fe.comp.jmm.analysis.table.Type type) {
+        String name = type.getName().replace("[]", "");
+
+        if (type.isArray() || type.getName().endsWith("[]")) {
+            ArrayType arrayType = new ArrayType();
+            arrayType.setNumDimensions(1);
+
+            switch (name) {
+                case "int" -> arrayType.setTypeOfElements(ElementType.INT32);
+                case "boolean" -> arrayType.setTypeOfElements(ElementType.BOOLEAN);
+                case "String" -> {
+                    arrayType.setTypeOfElements(ElementType.STRING);
+                    arrayType.setElementClass("String");
+                }
+                default -> {
+                    arrayType.setTypeOfElements(ElementType.OBJECTREF);
+                    arrayType.setElementClass(name);
+                }
+            }
+
+            return arrayType;
+        }
+
+        return switch (name) {
+            case "int" -> new Type(ElementType.INT32);
+            case "boolean" -> new Type(ElementType.BOOLEAN);
+            case "void" -> new Type(ElementType.VOID);
+            case "String" -> new Type(ElementType.STRING);
+            default -> new ClassType(ElementType.OBJECTREF, name);
+        };
+    }
+}
@@ -0,0 +1,204 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Prints an OLLIR class as OLLIR code. The compiler builds the class directly (see {@link OllirIrBuilder}), so the
+ * code is only needed for debugging and to keep a readable copy of the generated OLLIR.
+ */
+public class OllirPrinter {
+
+    public static String print(ClassUnit classUnit) {
+        StringBuilder code = new StringBuilder();
+
+        for (String importName : classUnit.getImports()) {
+            code.append("import ").append(importName).append(";\n");
+        }
+        code.append("\n");
+
+        code.append("public ").append(classUnit.getClassName());
+        if (classUnit.getSuperClass() != null) {
+            code.append(" extends ").append(classUnit.getSuperClass());
+        }
+        code.append(" {\n");
+
+        for (Field field : classUnit.getFields()) {
+            code.append("\t.field ").append(field.getFieldName()).append(printType(field.getFieldType()))
+                    .append(";\n");
+        }
+
+        for (Method method : classUnit.getMethods()) {
+            printMethod(method, code);
+        }
+
+        code.append("}\n");
+
+        return code.toString();
+    }
+
+    private static void printMethod(Method method, StringBuilder code) {
+        if (method.isConstructMethod()) {
+            code.append("\t.construct ");
+        } else {
+            code.append("\t.method public ");
+            if (method.isStaticMethod()) {
+                code.append("static ");
+            }
+        }
+
+        String params = method.getParams().stream()
+                .map(param -> ((Operand) param).getName() + printType(param.getType()))
+                .collect(Collectors.joining(", "));
+
+        code.append(method.getMethodName()).append("(").append(params).append(")")
+                .append(printType(method.getReturnType())).append(" {\n");
+
+        // Method.getLabels(Instruction) caches the labels, which the optimizations may have moved since
+        Map<Instruction, List<String>> labels = new IdentityHashMap<>();
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            labels.computeIfAbsent(label.getValue(), instruction -> new ArrayList<>()).add(label.getKey());
+        }
+
+        for (Instruction instruction : method.getInstructions()) {
+            for (String label : labels.getOrDefault(instruction, List.of())) {
+                code.append("\t").append(label).append(":\n");
+            }
+            code.append("\t\t").append(printInstruction(instruction)).append(";\n");
+        }
+
+        code.append("\t}\n");
+    }
+
+    private static String printInstruction(Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                yield printElement(assign.getDest()) + " :=" + printType(assign.getTypeOfAssign()) + " "
+                        + printInstruction(assign.getRhs());
+            }
+            case CALL -> printCall((CallInstruction) instruction);
+            case GOTO -> "goto " + ((GotoInstruction) instruction).getLabel();
+            case BRANCH -> {
+                CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                yield "if (" + printInstruction(branch.getCondition()) + ") goto " + branch.getLabel();
+            }
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                yield "ret" + printType(ret.getReturnType())
+                        + (ret.hasReturnValue() ? " " + printElement(ret.getOperand()) : "");
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                yield "putfield(" + printElement(putField.getFirstOperand()) + ", "
+                        + printElement(putField.getSecondOperand()) + ", "
+                        + printElement(putField.getThirdOperand()) + ").V";
+            }
+            case GETFIELD -> {
+                GetFieldInstruction getField = (GetFieldInstruction) instruction;
+                yield "getfield(" + printElement(getField.getFirstOperand()) + ", "
+                        + printElement(getField.getSecondOperand()) + ")" + printType(getField.getFieldType());
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) instruction;
+                yield printOperation(unaryOp.getOperation()) + " " + printElement(unaryOp.getOperand());
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) instruction;
+                yield printElement(binaryOp.getLeftOperand()) + " " + printOperation(binaryOp.getOperation()) + " "
+                        + printElement(binaryOp.getRightOperand());
+            }
+            case NOPER -> printElement(((SingleOpInstruction) instruction).getSingleOperand());
+        };
+    }
+
+    private static String printCall(CallInstruction call) {
+        String name = call.getInvocationType() == CallType.NEW ? "new" : call.getInvocationType().name();
+        StringBuilder code = new StringBuilder(name).append("(");
+
+        switch (call.getInvocationType()) {
+            // The first argument of these is a class (or "array"), printed without a type
+            case NEW, invokestatic -> code.append(((Operand) call.getFirstArg()).getName());
+            default -> code.append(printElement(call.getFirstArg()));
+        }
+
+        if (call.getSecondArg() != null) {
+            code.append(", ").append(printElement(call.getSecondArg()));
+        }
+
+        List<Element> operands = call.getListOfOperands();
+        if (operands != null) {
+            for (Element operand : operands) {
+                code.append(", ").append(printElement(operand));
+            }
+        }
+
+        return code.append(")").append(printType(call.getReturnType())).toString();
+    }
+
+    private static String printElement(Element element) {
+        if (element instanceof LiteralElement literal) {
+            // Method names are string literals and have no type
+            if (element.getType().getTypeOfElement() == ElementType.STRING) {
+                return literal.getLiteral();
+            }
+            return literal.getLiteral() + printType(element.getType());
+        }
+
+        Operand operand = (Operand) element;
+        if (operand.getType().getTypeOfElement() == ElementType.THIS) {
+            return "this";
+        }
+
+        StringBuilder code = new StringBuilder();
+        if (operand.isParameter()) {
+            code.append("$").append(operand.getParamId()).append(".");
+        }
+        code.append(operand.getName());
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            for (Element index : arrayOperand.getIndexOperands()) {
+                code.append("[").append(printElement(index)).append("]");
+            }
+        }
+
+        return code.append(printType(operand.getType())).toString();
+    }
+
+    private static String printOperation(Operation operation) {
+        String symbol = switch (operation.getOpType()) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case LTH -> "<";
+            case GTH -> ">";
+            case LTE -> "<=";
+            case GTE -> ">=";
+            case EQ -> "==";
+            case NEQ -> "!=";
+            case ANDB -> "&&";
+            case ORB -> "||";
+            case NOTB -> "!";
+            default -> throw new IllegalArgumentException("Unexpected operation: " + operation.getOpType());
+        };
+
+        return symbol + printType(operation.getTypeInfo());
+    }
+
+    private static String printType(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> ".i32";
+            case BOOLEAN -> ".bool";
+            case VOID -> ".V";
+            case STRING -> ".String";
+            case ARRAYREF -> ".array" + printType(((ArrayType) type).getElementType());
+            case OBJECTREF, CLASS, THIS -> "." + ((ClassType) type).getName();
+        };
+    }
+}
@@ -0,0 +1,697 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck) of the local variables of a method, over the CFG built
+ * by the OLLIR library.
+ * <p>
+ * The method is put in SSA form on the side: phis are placed on the dominance frontiers of the assignments of each
+ * variable, and every variable read by an instruction is linked to the definition that reaches it, without changing
+ * the instructions. The values only go down the lattice (unknown, constant, not constant), and an instruction is only
+ * evaluated again when one of the definitions it reads changes, so the whole method is solved in a single pass of two
+ * worklists instead of iterating to a fixpoint. A branch whose condition is a constant only makes one of its edges
+ * executable, so the assignments on the other side do not spoil the constants after the join.
+ * <p>
+ * Afterwards, the constant variables read by the reachable instructions are replaced by literals, and the assignments
+ * of an operation with a constant result become copies of the literal. Assignments that are no longer read and
+ * branches on constants are left as they are.
+ */
+public class ConstantPropagation {
+
+    private final Method method;
+    private final List<Instruction> instructions;
+    private final Map<String, Integer> variableIds = new HashMap<>();
+
+    // Node 0 is the entry of the method and node i + 1 is the instruction i
+    private final int size;
+    private final DominatorTree graph;
+
+    // The SSA form, with the definition of each node and the definitions its instruction reads
+    private final List<List<Phi>> phis = new ArrayList<>();
+    private final Definition[] definitions;
+    private final Uses[] uses;
+
+    private boolean[][] executableEdges;
+    private boolean[] executableNodes;
+    private final Deque<int[]> edgeWorklist = new ArrayDeque<>();
+    private final Deque<Definition> definitionWorklist = new ArrayDeque<>();
+
+    private ConstantPropagation(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+        this.size = instructions.size() + 1;
+        this.graph = new DominatorTree(method);
+        this.definitions = new Definition[size];
+        this.uses = new Uses[size];
+    }
+
+    /**
+     * Propagates the constants of the method, whose CFG must be built.
+     *
+     * @return whether any instruction changed
+     */
+    public static boolean propagate(Method method) {
+        ConstantPropagation propagation = new ConstantPropagation(method);
+
+        propagation.buildSSA();
+        propagation.solve();
+
+        return propagation.substitute();
+    }
+
+    // The SSA form
+
+    private void buildSSA() {
+        List<String> variables = new ArrayList<>();
+        List<List<Integer>> assignments = new ArrayList<>();
+
+        for (Element param : method.getParams()) {
+            addVariable(((Operand) param).getName(), variables, assignments);
+        }
+        for (int node : graph.getOrder()) {
+            if (node > 0 && getAssignedVariable(instructions.get(node - 1)) instanceof Operand dest) {
+                int variable = addVariable(dest.getName(), variables, assignments);
+                assignments.get(variable).add(node);
+                definitions[node] = new Definition();
+            }
+        }
+
+        placePhis(variables.size(), assignments);
+        rename(variables.size());
+    }
+
+    private int addVariable(String name, List<String> variables, List<List<Integer>> assignments) {
+        Integer id = variableIds.get(name);
+        if (id == null) {
+            id = variables.size();
+            variableIds.put(name, id);
+            variables.add(name);
+            assignments.add(new ArrayList<>());
+        }
+
+        return id;
+    }
+
+    /**
+     * The variable assigned by an instruction, or null if it does not assign one (stores into arrays included).
+     */
+    private static Element getAssignedVariable(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign && !(assign.getDest() instanceof ArrayOperand)) {
+            return assign.getDest();
+        }
+
+        return null;
+    }
+
+    /**
+     * Places the phis of every variable on the iterated dominance frontier of its assignments.
+     */
+    private void placePhis(int variables, List<List<Integer>> assignments) {
+        List<List<Integer>> frontiers = new ArrayList<>();
+        for (int node = 0; node < size; node++) {
+            frontiers.add(new ArrayList<>());
+            phis.add(new ArrayList<>());
+        }
+        for (int node : graph.getOrder()) {
+            if (graph.getPredecessors(node).length < 2) {
+                continue;
+            }
+            for (int predecessor : graph.getPredecessors(node)) {
+                for (int runner = predecessor; runner != graph.getImmediateDominator(node);
+                     runner = graph.getImmediateDominator(runner)) {
+                    List<Integer> frontier = frontiers.get(runner);
+                    if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != node) {
+                        frontier.add(node);
+                    }
+                }
+            }
+        }
+
+        int[] hasPhi = new int[size];
+        int[] queued = new int[size];
+        Arrays.fill(hasPhi, -1);
+        Arrays.fill(queued, -1);
+        Deque<Integer> worklist = new ArrayDeque<>();
+
+        for (int variable = 0; variable < variables; variable++) {
+            for (int node : assignments.get(variable)) {
+                queued[node] = variable;
+                worklist.add(node);
+            }
+
+            while (!worklist.isEmpty()) {
+                for (int node : frontiers.get(worklist.poll())) {
+                    if (hasPhi[node] == variable) {
+                        continue;
+                    }
+
+                    hasPhi[node] = variable;
+                    phis.get(node).add(new Phi(node, variable, graph.getPredecessors(node).length));
+                    if (queued[node] != variable) {
+                        queued[node] = variable;
+                        worklist.add(node);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Links every read of a variable to the definition that reaches it, walking the dominator tree with the current
+     * definition of each variable (see {@link Environment}). Leaving a node of the tree undoes the definitions its
+     * subtree made, so the environment is never copied for a branch.
+     */
+    private void rename(int variables) {
+        // Parameters and variables read before being assigned are not constants
+        Environment environment = new Environment(variables);
+        for (int variable = 0; variable < variables; variable++) {
+            Definition entry = new Definition();
+            entry.value = Value.BOTTOM;
+            environment.define(variable, entry);
+        }
+
+        // A node is pushed to enter it, and its complement to leave it once its children are done
+        int[] marks = new int[size];
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(0);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            if (node < 0) {
+                environment.undo(marks[~node]);
+                continue;
+            }
+
+            marks[node] = environment.mark();
+
+            for (Phi phi : phis.get(node)) {
+                environment.define(phi.variable, phi.result);
+            }
+
+            if (node > 0) {
+                Instruction instruction = instructions.get(node - 1);
+                uses[node] = new Uses();
+                addUses(node, instruction, environment);
+
+                if (definitions[node] != null) {
+                    Operand dest = (Operand) getAssignedVariable(instruction);
+                    environment.define(variableIds.get(dest.getName()), definitions[node]);
+                }
+            }
+
+            for (int successor : graph.getSuccessors(node)) {
+                int edge = getEdge(node, successor);
+                for (Phi phi : phis.get(successor)) {
+                    Definition operand = environment.get(phi.variable);
+                    phi.operands[edge] = operand;
+                    operand.phiUsers.add(phi);
+                }
+            }
+
+            stack.push(~node);
+            for (int child : graph.getChildren(node)) {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * Records the variables read by an instruction that may be replaced by a constant, so not the indexes and
+     * references of arrays, the objects of calls or the fields.
+     */
+    private void addUses(int node, Instruction instruction, Environment environment) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> addUses(node, ((AssignInstruction) instruction).getRhs(), environment);
+            case CALL -> {
+                CallInstruction call = (CallInstruction) instruction;
+                if (call.getListOfOperands() != null) {
+                    for (Element operand : call.getListOfOperands()) {
+                        addUse(node, operand, environment);
+                    }
+                }
+            }
+            case BRANCH -> addUses(node, ((CondBranchInstruction) instruction).getCondition(), environment);
+            case RETURN -> addUse(node, ((ReturnInstruction) instruction).getOperand(), environment);
+            case PUTFIELD -> addUse(node, ((PutFieldInstruction) instruction).getThirdOperand(), environment);
+            case UNARYOPER -> addUse(node, ((UnaryOpInstruction) instruction).getOperand(), environment);
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) instruction;
+                addUse(node, binaryOp.getLeftOperand(), environment);
+                addUse(node, binaryOp.getRightOperand(), environment);
+            }
+            case NOPER -> addUse(node, ((SingleOpInstruction) instruction).getSingleOperand(), environment);
+            default -> {
+            }
+        }
+    }
+
+    private void addUse(int node, Element element, Environment environment) {
+        if (!(element instanceof Operand operand) || element instanceof ArrayOperand) {
+            return;
+        }
+
+        Integer variable = variableIds.get(operand.getName());
+        if (variable != null) {
+            Definition definition = environment.get(variable);
+            uses[node].add(element, definition);
+            definition.nodeUsers.add(node);
+        }
+    }
+
+    private int getEdge(int from, int to) {
+        int[] nodePredecessors = graph.getPredecessors(to);
+        for (int edge = 0; edge < nodePredecessors.length; edge++) {
+            if (nodePredecessors[edge] == from) {
+                return edge;
+            }
+        }
+
+        throw new IllegalStateException("No edge from " + from + " to " + to);
+    }
+
+    // Propagation
+
+    private void solve() {
+        executableEdges = new boolean[size][];
+        for (int node = 0; node < size; node++) {
+            executableEdges[node] = new boolean[graph.getPredecessors(node).length];
+        }
+        executableNodes = new boolean[size];
+
+        executableNodes[0] = true;
+        visitNode(0);
+
+        while (!edgeWorklist.isEmpty() || !definitionWorklist.isEmpty()) {
+            if (!edgeWorklist.isEmpty()) {
+                int[] edge = edgeWorklist.poll();
+                int node = edge[1];
+                int index = getEdge(edge[0], node);
+                if (executableEdges[node][index]) {
+                    continue;
+                }
+
+                executableEdges[node][index] = true;
+                for (Phi phi : phis.get(node)) {
+                    visitPhi(phi);
+                }
+                if (!executableNodes[node]) {
+                    executableNodes[node] = true;
+                    visitNode(node);
+                }
+            } else {
+                Definition definition = definitionWorklist.poll();
+                for (Phi phi : definition.phiUsers) {
+                    if (executableNodes[phi.node]) {
+                        visitPhi(phi);
+                    }
+                }
+                for (int node : definition.nodeUsers) {
+                    if (executableNodes[node]) {
+                        visitNode(node);
+                    }
+                }
+            }
+        }
+    }
+
+    private void visitPhi(Phi phi) {
+        Value value = Value.TOP;
+        for (int edge = 0; edge < phi.operands.length; edge++) {
+            if (executableEdges[phi.node][edge]) {
+                value = value.meet(phi.operands[edge].value);
+            }
+        }
+
+        lower(phi.result, value);
+    }
+
+    private void visitNode(int node) {
+        if (node == 0) {
+            addEdges(node);
+            return;
+        }
+
+        Instruction instruction = instructions.get(node - 1);
+        if (definitions[node] != null) {
+            lower(definitions[node], evaluate(node, ((AssignInstruction) instruction).getRhs()));
+        }
+
+        if (!(instruction instanceof CondBranchInstruction branch)) {
+            addEdges(node);
+            return;
+        }
+
+        Value condition = evaluate(node, branch.getCondition());
+        switch (condition.kind()) {
+            case TOP -> {
+            }
+            case CONSTANT -> {
+                Integer target = condition.constant() != 0
+                        ? graph.getNode(method.getLabels().get(branch.getLabel()))
+                        : Integer.valueOf(node + 1);
+                for (int successor : graph.getSuccessors(node)) {
+                    if (target != null && successor == target) {
+                        edgeWorklist.add(new int[]{node, successor});
+                    }
+                }
+            }
+            case BOTTOM -> addEdges(node);
+        }
+    }
+
+    private void addEdges(int node) {
+        for (int successor : graph.getSuccessors(node)) {
+            edgeWorklist.add(new int[]{node, successor});
+        }
+    }
+
+    private void lower(Definition definition, Value value) {
+        Value lowered = definition.value.meet(value);
+        if (!lowered.equals(definition.value)) {
+            definition.value = lowered;
+            definitionWorklist.add(definition);
+        }
+    }
+
+    private Value evaluate(int node, Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case NOPER -> valueOf(node, ((SingleOpInstruction) instruction).getSingleOperand());
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) instruction;
+                Value operand = valueOf(node, unaryOp.getOperand());
+                if (unaryOp.getOperation().getOpType() != OperationType.NOTB || operand.kind() == Kind.BOTTOM) {
+                    yield Value.BOTTOM;
+                }
+                yield operand.kind() == Kind.TOP ? Value.TOP : Value.of(operand.constant() == 0 ? 1 : 0);
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) instruction;
+                Value left = valueOf(node, binaryOp.getLeftOperand());
+                Value right = valueOf(node, binaryOp.getRightOperand());
+                if (left.kind() == Kind.BOTTOM || right.kind() == Kind.BOTTOM) {
+                    yield Value.BOTTOM;
+                }
+                if (left.kind() == Kind.TOP || right.kind() == Kind.TOP) {
+                    yield Value.TOP;
+                }
+
+                Integer result = fold(binaryOp.getOperation().getOpType(), left.constant(), right.constant());
+                yield result == null ? Value.BOTTOM : Value.of(result);
+            }
+            default -> Value.BOTTOM;
+        };
+    }
+
+    private Value valueOf(int node, Element element) {
+        if (element instanceof LiteralElement literal) {
+            try {
+                return Value.of(Integer.parseInt(literal.getLiteral()));
+            } catch (NumberFormatException e) {
+                return Value.BOTTOM;
+            }
+        }
+
+        if (!(element instanceof Operand operand) || element instanceof ArrayOperand) {
+            return Value.BOTTOM;
+        }
+
+        Definition definition = uses[node].get(element);
+        if (definition != null) {
+            return definition.value;
+        }
+
+        // The OLLIR parser reads the boolean literals as operands
+        if (!variableIds.containsKey(operand.getName())) {
+            if (operand.getName().equals("true")) {
+                return Value.of(1);
+            } else if (operand.getName().equals("false")) {
+                return Value.of(0);
+            }
+        }
+
+        return Value.BOTTOM;
+    }
+
+    /**
+     * The result of an operation on two constants, or null if it is not known at compile time.
+     */
+    static Integer fold(OperationType operation, int left, int right) {
+        return switch (operation) {
+            case ADD -> left + right;
+            case SUB -> left - right;
+            case MUL -> left * right;
+            case DIV -> right == 0 ? null : left / right;
+            case SHL -> left << right;
+            case SHR -> left >> right;
+            case SHRR -> left >>> right;
+            case AND -> left & right;
+            case OR -> left | right;
+            case XOR -> left ^ right;
+            case LTH -> left < right ? 1 : 0;
+            case GTH -> left > right ? 1 : 0;
+            case LTE -> left <= right ? 1 : 0;
+            case GTE -> left >= right ? 1 : 0;
+            case EQ -> left == right ? 1 : 0;
+            case NEQ -> left != right ? 1 : 0;
+            case ANDB -> left != 0 && right != 0 ? 1 : 0;
+            case ORB -> left != 0 || right != 0 ? 1 : 0;
+            default -> null;
+        };
+    }
+
+    // Substitution
+
+    private boolean substitute() {
+        boolean changed = false;
+        Map<Integer, Instruction> replacements = new HashMap<>();
+
+        for (int node = 1; node < size; node++) {
+            if (!executableNodes[node]) {
+                continue;
+            }
+
+            Instruction instruction = instructions.get(node - 1);
+            changed |= substituteUses(node, instruction);
+
+            if (definitions[node] != null && definitions[node].value.kind() == Kind.CONSTANT) {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                InstructionType rhsType = assign.getRhs().getInstType();
+
+                if (rhsType == InstructionType.BINARYOPER || rhsType == InstructionType.UNARYOPER) {
+                    Element literal = literal(definitions[node].value.constant(), assign.getDest().getType());
+                    replacements.put(node - 1, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                            new SingleOpInstruction(literal)));
+                }
+            }
+        }
+
+        if (!replacements.isEmpty()) {
+            ControlFlow.replace(method, replacements);
+            ControlFlow.rebuild(method);
+        }
+
+        return changed || !replacements.isEmpty();
+    }
+
+    private boolean substituteUses(int node, Instruction instruction) {
+        boolean changed = false;
+
+        switch (instruction.getInstType()) {
+            case ASSIGN -> changed = substituteUses(node, ((AssignInstruction) instruction).getRhs());
+            case CALL -> {
+                List<Element> operands = ((CallInstruction) instruction).getListOfOperands();
+                if (operands != null) {
+                    for (int i = 0; i < operands.size(); i++) {
+                        Element constant = getConstant(node, operands.get(i));
+                        if (constant != null) {
+                            operands.set(i, constant);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+            case BRANCH -> changed = substituteUses(node, ((CondBranchInstruction) instruction).getCondition());
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                Element constant = getConstant(node, ret.getOperand());
+                if (constant != null) {
+                    ret.setOperand(constant);
+                    changed = true;
+                }
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                Element constant = getConstant(node, putField.getThirdOperand());
+                if (constant != null) {
+                    putField.setThirdOperand(constant);
+                    changed = true;
+                }
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) instruction;
+                Element constant = getConstant(node, unaryOp.getOperand());
+                if (constant != null) {
+                    unaryOp.setOperand(constant);
+                    changed = true;
+                }
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) instruction;
+                Element left = getConstant(node, binaryOp.getLeftOperand());
+                Element right = getConstant(node, binaryOp.getRightOperand());
+                if (left != null) {
+                    binaryOp.setLeftOperand(left);
+                }
+                if (right != null) {
+                    binaryOp.setRightOperand(right);
+                }
+                changed = left != null || right != null;
+            }
+            case NOPER -> {
+                SingleOpInstruction singleOp = (SingleOpInstruction) instruction;
+                Element constant = getConstant(node, singleOp.getSingleOperand());
+                if (constant != null) {
+                    singleOp.setSingleOperand(constant);
+                    changed = true;
+                }
+            }
+            default -> {
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * The literal that replaces a variable read by the instruction, or null if the variable is not a constant there.
+     */
+    private Element getConstant(int node, Element element) {
+        Definition definition = element == null ? null : uses[node].get(element);
+        if (definition == null || definition.value.kind() != Kind.CONSTANT) {
+            return null;
+        }
+
+        return literal(definition.value.constant(), element.getType());
+    }
+
+    private static Element literal(int constant, Type type) {
+        return new LiteralElement(String.valueOf(constant), type);
+    }
+
+    // The lattice and the SSA form
+
+    private enum Kind {
+        TOP, CONSTANT, BOTTOM
+    }
+
+    private record Value(Kind kind, int constant) {
+
+        static final Value TOP = new Value(Kind.TOP, 0);
+        static final Value BOTTOM = new Value(Kind.BOTTOM, 0);
+
+        static Value of(int constant) {
+            return new Value(Kind.CONSTANT, constant);
+        }
+
+        Value meet(Value other) {
+            if (kind == Kind.TOP) {
+                return other;
+            } else if (other.kind == Kind.TOP || equals(other)) {
+                return this;
+            }
+
+            return BOTTOM;
+        }
+    }
+
+    /**
+     * A definition of a variable in the SSA form: an assignment, a phi or the value at the entry of the method.
+     */
+    private static class Definition {
+        Value value = Value.TOP;
+        final List<Phi> phiUsers = new ArrayList<>();
+        final List<Integer> nodeUsers = new ArrayList<>();
+    }
+
+    private static class Phi {
+        final int node;
+        final int variable;
+        final Definition[] operands;
+        final Definition result = new Definition();
+
+        Phi(int node, int variable, int predecessors) {
+            this.node = node;
+            this.variable = variable;
+            this.operands = new Definition[predecessors];
+        }
+    }
+
+    /**
+     * The definitions read by an instruction, by the elements that read them.
+     */
+    private static class Uses {
+        private final List<Element> elements = new ArrayList<>(2);
+        private final List<Definition> definitions = new ArrayList<>(2);
+
+        void add(Element element, Definition definition) {
+            elements.add(element);
+            definitions.add(definition);
+        }
+
+        Definition get(Element element) {
+            for (int i = 0; i < elements.size(); i++) {
+                if (elements.get(i) == element) {
+                    return definitions.get(i);
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * The current definition of each variable while renaming, with a log of the definitions it replaced. Taking a mark
+     * is O(1), and undoing to it only restores the variables defined since.
+     */
+    private static class Environment {
+        private final Definition[] current;
+        private int[] loggedVariables = new int[16];
+        private Definition[] loggedDefinitions = new Definition[16];
+        private int logSize = 0;
+
+        Environment(int variables) {
+            this.current = new Definition[variables];
+        }
+
+        Definition get(int variable) {
+            return current[variable];
+        }
+
+        void define(int variable, Definition definition) {
+            if (logSize == loggedVariables.length) {
+                loggedVariables = Arrays.copyOf(loggedVariables, logSize * 2);
+                loggedDefinitions = Arrays.copyOf(loggedDefinitions, logSize * 2);
+            }
+
+            loggedVariables[logSize] = variable;
+            loggedDefinitions[logSize] = current[variable];
+            logSize++;
+
+            current[variable] = definition;
+        }
+
+        int mark() {
+            return logSize;
+        }
+
+        void undo(int mark) {
+            while (logSize > mark) {
+                logSize--;
+                current[loggedVariables[logSize]] = loggedDefinitions[logSize];
+                loggedDefinitions[logSize] = null;
+            }
+        }
+    }
+}
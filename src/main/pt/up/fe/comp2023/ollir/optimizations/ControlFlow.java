@@ -0,0 +1,117 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Keeps the CFG the OLLIR library builds for a method in sync with its instructions.
+ * <p>
+ * The OLLIR parser builds the CFG of every method, but a class built directly from the AST has none. The library only
+ * adds edges when building it, so the passes that change the instructions clear the old edges before building it
+ * again.
+ */
+public class ControlFlow {
+
+    private ControlFlow() {
+    }
+
+    public static boolean hasCFG(Method method) {
+        try {
+            method.getBeginNode();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds the CFG of the method if it was not built yet.
+     */
+    public static void ensureBuilt(Method method) {
+        if (!hasCFG(method)) {
+            method.buildCFG();
+        }
+    }
+
+    /**
+     * Builds the CFG again, after instructions were replaced, added or removed.
+     */
+    public static void rebuild(Method method) {
+        if (hasCFG(method)) {
+            clearEdges(method.getBeginNode());
+            clearEdges(method.getEndNode());
+            for (Instruction instruction : method.getInstructions()) {
+                clearEdges(instruction);
+            }
+        }
+
+        method.buildCFG();
+    }
+
+    private static void clearEdges(Node node) {
+        node.getSuccessors().clear();
+        node.getPredecessors().clear();
+    }
+
+    /**
+     * Replaces the instructions at the given positions, moving their labels to the new ones. The CFG must be rebuilt
+     * afterwards.
+     */
+    public static void replace(Method method, Map<Integer, Instruction> replacements) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Instruction> replaced = new IdentityHashMap<>();
+        for (Map.Entry<Integer, Instruction> replacement : replacements.entrySet()) {
+            replaced.put(instructions.set(replacement.getKey(), replacement.getValue()), replacement.getValue());
+        }
+
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            Instruction instruction = replaced.get(label.getValue());
+            if (instruction != null) {
+                label.setValue(instruction);
+            }
+        }
+    }
+
+    /**
+     * Removes the instructions at the given positions. Their labels move to the next instruction that is kept, where
+     * the execution would continue, or are dropped if there is none. The CFG must be rebuilt afterwards.
+     */
+    public static void remove(Method method, BitSet removed) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Instruction> following = new IdentityHashMap<>();
+        List<Instruction> kept = new ArrayList<>(instructions.size() - removed.cardinality());
+
+        Instruction next = null;
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            if (removed.get(i)) {
+                following.put(instructions.get(i), next);
+            } else {
+                next = instructions.get(i);
+            }
+        }
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!removed.get(i)) {
+                kept.add(instructions.get(i));
+            }
+        }
+
+        Iterator<Map.Entry<String, Instruction>> labels = method.getLabels().entrySet().iterator();
+        while (labels.hasNext()) {
+            Map.Entry<String, Instruction> label = labels.next();
+            if (!following.containsKey(label.getValue())) {
+                continue;
+            }
+
+            Instruction instruction = following.get(label.getValue());
+            if (instruction == null) {
+                labels.remove();
+            } else {
+                label.setValue(instruction);
+            }
+        }
+
+        instructions.clear();
+        instructions.addAll(kept);
+    }
+}
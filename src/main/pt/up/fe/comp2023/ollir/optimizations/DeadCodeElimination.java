@@ -0,0 +1,253 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Removes the code of a method that is never executed or whose result is never read, usually left behind by
+ * {@link ConstantPropagation}.
+ * <p>
+ * Branches on a constant become a goto when they are always taken and are removed when they never are, which also
+ * removes the loops whose condition starts false. The instructions the CFG no longer reaches are then removed, and so
+ * are the jumps to the instruction right after them. Finally, the assignments to local variables that are dead after
+ * them (see the strong liveness of {@link LivenessAnalysis}) are removed, unless computing their value may throw or
+ * have side effects, like calls and array accesses.
+ */
+public class DeadCodeElimination {
+
+    private DeadCodeElimination() {
+    }
+
+    /**
+     * Removes the dead code of the method, whose CFG must be built. The CFG and the var table are built again when
+     * anything is removed.
+     *
+     * @return whether any instruction was removed or replaced
+     */
+    public static boolean eliminate(Method method) {
+        boolean changed = foldBranches(method);
+        changed |= removeUnreachable(method);
+        changed |= removeJumpsToNext(method);
+        changed |= removeDeadAssignments(method);
+
+        if (changed) {
+            // The var table only keeps the variables that are still used, so they take fewer registers
+            method.getVarTable().clear();
+            method.buildVarTable();
+        }
+
+        return changed;
+    }
+
+    /**
+     * Replaces the branches on a constant by a goto, or removes them.
+     */
+    private static boolean foldBranches(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Integer, Instruction> replacements = new HashMap<>();
+        BitSet removed = new BitSet();
+
+        // The last instruction stays, so that the labels on it have somewhere to go
+        for (int i = 0; i < instructions.size() - 1; i++) {
+            if (!(instructions.get(i) instanceof CondBranchInstruction branch)) {
+                continue;
+            }
+
+            Integer condition = evaluate(branch.getCondition());
+            if (condition == null) {
+                continue;
+            }
+
+            if (condition != 0) {
+                replacements.put(i, new GotoInstruction(branch.getLabel()));
+            } else {
+                removed.set(i);
+            }
+        }
+
+        if (replacements.isEmpty() && removed.isEmpty()) {
+            return false;
+        }
+
+        ControlFlow.replace(method, replacements);
+        ControlFlow.remove(method, removed);
+        ControlFlow.rebuild(method);
+        return true;
+    }
+
+    /**
+     * The value of a condition whose operands are all constants, or null.
+     */
+    private static Integer evaluate(Instruction condition) {
+        switch (condition.getInstType()) {
+            case NOPER -> {
+                return constantOf(((SingleOpInstruction) condition).getSingleOperand());
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) condition;
+                Integer operand = constantOf(unaryOp.getOperand());
+                if (operand == null || unaryOp.getOperation().getOpType() != OperationType.NOTB) {
+                    return null;
+                }
+                return operand == 0 ? 1 : 0;
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) condition;
+                Integer left = constantOf(binaryOp.getLeftOperand());
+                Integer right = constantOf(binaryOp.getRightOperand());
+                if (left == null || right == null) {
+                    return null;
+                }
+                return ConstantPropagation.fold(binaryOp.getOperation().getOpType(), left, right);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static Integer constantOf(Element element) {
+        if (element instanceof LiteralElement literal) {
+            try {
+                return Integer.parseInt(literal.getLiteral());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        // The OLLIR parser reads the boolean literals as operands
+        if (element instanceof Operand operand && !(element instanceof ArrayOperand)) {
+            if (operand.getName().equals("true")) {
+                return 1;
+            } else if (operand.getName().equals("false")) {
+                return 0;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean removeUnreachable(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+
+        Set<Node> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node> worklist = new ArrayDeque<>();
+        worklist.push(method.getBeginNode());
+        while (!worklist.isEmpty()) {
+            for (Node successor : worklist.pop().getSuccessors()) {
+                if (reachable.add(successor)) {
+                    worklist.push(successor);
+                }
+            }
+        }
+
+        BitSet removed = new BitSet();
+        for (int i = 0; i < instructions.size() - 1; i++) {
+            if (!reachable.contains(instructions.get(i))) {
+                removed.set(i);
+            }
+        }
+
+        if (removed.isEmpty()) {
+            return false;
+        }
+
+        ControlFlow.remove(method, removed);
+        ControlFlow.rebuild(method);
+        return true;
+    }
+
+    /**
+     * Removes the gotos and branches to the instruction that follows them, from the last one, so that a chain of them
+     * is removed at once.
+     */
+    private static boolean removeJumpsToNext(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        HashMap<String, Instruction> labels = method.getLabels();
+        BitSet removed = new BitSet();
+        // Where the removed jumps continue, for the jumps to their labels
+        Map<Instruction, Instruction> following = new IdentityHashMap<>();
+
+        Instruction next = instructions.isEmpty() ? null : instructions.get(instructions.size() - 1);
+        for (int i = instructions.size() - 2; i >= 0; i--) {
+            Instruction instruction = instructions.get(i);
+
+            String label = null;
+            if (instruction instanceof GotoInstruction jump) {
+                label = jump.getLabel();
+            } else if (instruction instanceof CondBranchInstruction branch) {
+                label = branch.getLabel();
+            }
+
+            Instruction target = label == null ? null : labels.get(label);
+            if (target != null && following.getOrDefault(target, target) == next) {
+                removed.set(i);
+                following.put(instruction, next);
+            } else {
+                next = instruction;
+            }
+        }
+
+        if (removed.isEmpty()) {
+            return false;
+        }
+
+        ControlFlow.remove(method, removed);
+        ControlFlow.rebuild(method);
+        return true;
+    }
+
+    private static boolean removeDeadAssignments(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+
+        // The liveness reads the locals from the var table, which a class built directly does not have yet
+        method.buildVarTable();
+        LivenessAnalysis liveness = new LivenessAnalysis(method, DeadCodeElimination::isRemovable);
+
+        BitSet removed = new BitSet();
+        for (int i = 0; i < instructions.size() - 1; i++) {
+            Instruction instruction = instructions.get(i);
+            BitSet defs = liveness.getDefs(i);
+            if (isRemovable(instruction) && !defs.isEmpty() && !liveness.getLiveOut(i).intersects(defs)) {
+                removed.set(i);
+            }
+        }
+
+        if (removed.isEmpty()) {
+            return false;
+        }
+
+        ControlFlow.remove(method, removed);
+        ControlFlow.rebuild(method);
+        return true;
+    }
+
+    /**
+     * Whether the instruction is an assignment to a local variable that can be removed when the variable is dead:
+     * computing its value has no side effects and cannot throw.
+     */
+    private static boolean isRemovable(Instruction instruction) {
+        if (!(instruction instanceof AssignInstruction assign) || assign.getDest() instanceof ArrayOperand) {
+            return false;
+        }
+
+        Instruction rhs = assign.getRhs();
+        return switch (rhs.getInstType()) {
+            case NOPER -> !(((SingleOpInstruction) rhs).getSingleOperand() instanceof ArrayOperand);
+            case UNARYOPER -> true;
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                if (binaryOp.getOperation().getOpType() != OperationType.DIV) {
+                    yield true;
+                }
+
+                // Dividing by zero throws
+                Integer divisor = constantOf(binaryOp.getRightOperand());
+                yield divisor != null && divisor != 0;
+            }
+            case GETFIELD -> ((Operand) ((GetFieldInstruction) rhs).getFirstOperand()).getName().equals("this");
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,249 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * The CFG of a method, built by the OLLIR library, as arrays of node numbers, with the dominator tree of the nodes
+ * reachable from its entry.
+ * <p>
+ * Node 0 is the entry of the method and node i + 1 is the instruction i; the end of the method is not a node. The
+ * immediate dominators are computed with the algorithm of Cooper, Harvey and Kennedy over the reverse postorder, and
+ * the tree is numbered in preorder and postorder so that {@link #dominates} takes constant time.
+ */
+public class DominatorTree {
+
+    private final int size;
+    private final Map<Node, Integer> nodeIds = new IdentityHashMap<>();
+    private final int[][] successors;
+    private final int[][] predecessors;
+
+    // Reverse postorder of the reachable nodes, and the position of each node in it (-1 if unreachable)
+    private final int[] order;
+    private final int[] orderIndex;
+
+    private final int[] dominators;
+    private final int[][] children;
+    private final int[] preorder;
+    private final int[] postorder;
+
+    /**
+     * @param method a method whose CFG is built
+     */
+    public DominatorTree(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        this.size = instructions.size() + 1;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            nodeIds.put(instructions.get(i), i + 1);
+        }
+
+        this.successors = new int[size][];
+        successors[0] = size > 1 ? new int[]{1} : new int[0];
+        for (int i = 0; i < instructions.size(); i++) {
+            successors[i + 1] = instructions.get(i).getSuccessors().stream()
+                    .map(nodeIds::get)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        this.orderIndex = new int[size];
+        this.order = buildOrder();
+        this.predecessors = buildPredecessors();
+        this.dominators = buildDominators();
+        this.children = buildChildren();
+        this.preorder = new int[size];
+        this.postorder = new int[size];
+        numberTree();
+    }
+
+    private int[] buildOrder() {
+        Arrays.fill(orderIndex, -1);
+        int[] finished = new int[size];
+        int visited = 0;
+
+        boolean[] seen = new boolean[size];
+        int[] stack = new int[size];
+        int[] nextSuccessor = new int[size];
+        int top = 0;
+        stack[top++] = 0;
+        seen[0] = true;
+        while (top > 0) {
+            int node = stack[top - 1];
+            if (nextSuccessor[node] < successors[node].length) {
+                int successor = successors[node][nextSuccessor[node]++];
+                if (!seen[successor]) {
+                    seen[successor] = true;
+                    stack[top++] = successor;
+                }
+            } else {
+                finished[visited++] = node;
+                top--;
+            }
+        }
+
+        int[] reversePostorder = new int[visited];
+        for (int i = 0; i < visited; i++) {
+            reversePostorder[i] = finished[visited - 1 - i];
+            orderIndex[reversePostorder[i]] = i;
+        }
+
+        return reversePostorder;
+    }
+
+    /**
+     * The predecessors of each node, only counting the reachable ones.
+     */
+    private int[][] buildPredecessors() {
+        List<List<Integer>> lists = new ArrayList<>();
+        for (int node = 0; node < size; node++) {
+            lists.add(new ArrayList<>());
+        }
+        for (int node : order) {
+            for (int successor : successors[node]) {
+                lists.get(successor).add(node);
+            }
+        }
+
+        int[][] result = new int[size][];
+        for (int node = 0; node < size; node++) {
+            result[node] = lists.get(node).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        return result;
+    }
+
+    private int[] buildDominators() {
+        int[] result = new int[size];
+        Arrays.fill(result, -1);
+        result[0] = 0;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = 1; i < order.length; i++) {
+                int node = order[i];
+
+                int dominator = -1;
+                for (int predecessor : predecessors[node]) {
+                    if (result[predecessor] != -1) {
+                        dominator = dominator == -1 ? predecessor : intersect(result, predecessor, dominator);
+                    }
+                }
+
+                if (result[node] != dominator) {
+                    result[node] = dominator;
+                    changed = true;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private int intersect(int[] dominators, int first, int second) {
+        while (first != second) {
+            while (orderIndex[first] > orderIndex[second]) {
+                first = dominators[first];
+            }
+            while (orderIndex[second] > orderIndex[first]) {
+                second = dominators[second];
+            }
+        }
+
+        return first;
+    }
+
+    private int[][] buildChildren() {
+        int[] counts = new int[size];
+        for (int i = 1; i < order.length; i++) {
+            counts[dominators[order[i]]]++;
+        }
+
+        int[][] result = new int[size][];
+        for (int node = 0; node < size; node++) {
+            result[node] = new int[counts[node]];
+            counts[node] = 0;
+        }
+        for (int i = 1; i < order.length; i++) {
+            int parent = dominators[order[i]];
+            result[parent][counts[parent]++] = order[i];
+        }
+
+        return result;
+    }
+
+    private void numberTree() {
+        int[] stack = new int[size];
+        int[] nextChild = new int[size];
+        int top = 0;
+        int clock = 0;
+
+        stack[top++] = 0;
+        preorder[0] = clock++;
+        while (top > 0) {
+            int node = stack[top - 1];
+            if (nextChild[node] < children[node].length) {
+                int child = children[node][nextChild[node]++];
+                preorder[child] = clock++;
+                stack[top++] = child;
+            } else {
+                postorder[node] = clock++;
+                top--;
+            }
+        }
+    }
+
+    /**
+     * The number of nodes, the entry included.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The node of an instruction (its position plus one), or null if it is not one of the method.
+     */
+    public Integer getNode(Node instruction) {
+        return nodeIds.get(instruction);
+    }
+
+    public int[] getSuccessors(int node) {
+        return successors[node];
+    }
+
+    public int[] getPredecessors(int node) {
+        return predecessors[node];
+    }
+
+    /**
+     * The reachable nodes in reverse postorder, so every node comes after its immediate dominator.
+     */
+    public int[] getOrder() {
+        return order;
+    }
+
+    public boolean isReachable(int node) {
+        return orderIndex[node] != -1;
+    }
+
+    public int getImmediateDominator(int node) {
+        return dominators[node];
+    }
+
+    public int[] getChildren(int node) {
+        return children[node];
+    }
+
+    /**
+     * Whether every path from the entry to the second node goes through the first (a node dominates itself).
+     */
+    public boolean dominates(int dominator, int node) {
+        return isReachable(dominator) && isReachable(node)
+                && preorder[dominator] <= preorder[node] && postorder[node] <= postorder[dominator];
+    }
+}
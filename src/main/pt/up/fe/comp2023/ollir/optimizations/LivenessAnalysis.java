@@ -0,0 +1,233 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Liveness of the local variables of a method, computed over the CFG built by the OLLIR library.
+ * <p>
+ * Variables are numbered (see {@link #getVariables()}) and every set is a BitSet of those numbers. The variables are
+ * the parameters and the locals of the method's var table, plus "this" for instance methods; fields are not included.
+ * <p>
+ * Given the assignments that could be removed, it computes strong liveness instead: the variables read by one of
+ * those assignments are only live when the variable it writes is live after it, so a chain of assignments that only
+ * feed each other (like a counter nobody reads) is dead as a whole.
+ */
+public class LivenessAnalysis {
+
+    private final Method method;
+    private final List<String> variables = new ArrayList<>();
+    private final Map<String, Integer> variableIds = new HashMap<>();
+
+    // Indexed by the position of the instruction in the method
+    private final Map<Instruction, Integer> positions = new HashMap<>();
+    private final BitSet[] defs;
+    private final BitSet[] uses;
+    private final BitSet[] liveIn;
+    private final BitSet[] liveOut;
+    private final boolean[] removable;
+
+    public LivenessAnalysis(Method method) {
+        this(method, instruction -> false);
+    }
+
+    /**
+     * @param removable the assignments whose reads only count when the variable they write is live
+     */
+    public LivenessAnalysis(Method method, Predicate<Instruction> removable) {
+        this.method = method;
+
+        if (!method.isStaticMethod()) {
+            addVariable("this");
+        }
+        for (Element param : method.getParams()) {
+            addVariable(((Operand) param).getName());
+        }
+        for (Map.Entry<String, Descriptor> entry : method.getVarTable().entrySet()) {
+            if (entry.getValue().getScope() != VarScope.FIELD) {
+                addVariable(entry.getKey());
+            }
+        }
+
+        List<Instruction> instructions = method.getInstructions();
+        int size = instructions.size();
+
+        this.defs = new BitSet[size];
+        this.uses = new BitSet[size];
+        this.liveIn = new BitSet[size];
+        this.liveOut = new BitSet[size];
+        this.removable = new boolean[size];
+
+        for (int i = 0; i < size; i++) {
+            Instruction instruction = instructions.get(i);
+            positions.put(instruction, i);
+
+            defs[i] = new BitSet();
+            uses[i] = new BitSet();
+            liveIn[i] = new BitSet();
+            liveOut[i] = new BitSet();
+            this.removable[i] = removable.test(instruction);
+
+            addDefsAndUses(instruction, defs[i], uses[i]);
+        }
+
+        solve();
+    }
+
+    private void addVariable(String name) {
+        if (!variableIds.containsKey(name)) {
+            variableIds.put(name, variables.size());
+            variables.add(name);
+        }
+    }
+
+    /**
+     * Backward data-flow: in = use + (out - def), out = union of the in sets of the successors. Instructions are
+     * visited in reverse order, so most methods converge in two passes. The uses of a removable assignment are only
+     * added when it writes a variable of out.
+     */
+    private void solve() {
+        List<Instruction> instructions = method.getInstructions();
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                BitSet out = new BitSet();
+                for (Node successor : instructions.get(i).getSuccessors()) {
+                    Integer position = positions.get(successor);
+                    if (position != null) {
+                        out.or(liveIn[position]);
+                    }
+                }
+
+                BitSet in = (BitSet) out.clone();
+                in.andNot(defs[i]);
+                if (!removable[i] || out.intersects(defs[i])) {
+                    in.or(uses[i]);
+                }
+
+                if (!in.equals(liveIn[i]) || !out.equals(liveOut[i])) {
+                    liveIn[i] = in;
+                    liveOut[i] = out;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private void addDefsAndUses(Instruction instruction, BitSet def, BitSet use) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                Element dest = assign.getDest();
+
+                // Storing into an array element reads the array reference and the index
+                if (dest instanceof ArrayOperand) {
+                    addUse(dest, use);
+                } else {
+                    addDef(dest, def);
+                }
+
+                addDefsAndUses(assign.getRhs(), def, use);
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) instruction;
+
+                // The first argument of a 'new' is the class (or "array"), and the one of invokestatic is the class
+                if (call.getInvocationType() != CallType.NEW && call.getInvocationType() != CallType.invokestatic) {
+                    addUse(call.getFirstArg(), use);
+                }
+                if (call.getListOfOperands() != null) {
+                    for (Element operand : call.getListOfOperands()) {
+                        addUse(operand, use);
+                    }
+                }
+            }
+            case BRANCH -> addDefsAndUses(((CondBranchInstruction) instruction).getCondition(), def, use);
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                if (ret.hasReturnValue()) {
+                    addUse(ret.getOperand(), use);
+                }
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                addUse(putField.getFirstOperand(), use);
+                addUse(putField.getThirdOperand(), use);
+            }
+            case GETFIELD -> addUse(((GetFieldInstruction) instruction).getFirstOperand(), use);
+            case UNARYOPER -> addUse(((UnaryOpInstruction) instruction).getOperand(), use);
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) instruction;
+                addUse(binaryOp.getLeftOperand(), use);
+                addUse(binaryOp.getRightOperand(), use);
+            }
+            case NOPER -> addUse(((SingleOpInstruction) instruction).getSingleOperand(), use);
+            case GOTO -> {
+            }
+        }
+    }
+
+    private void addDef(Element element, BitSet def) {
+        Integer id = getId(element);
+        if (id != null) {
+            def.set(id);
+        }
+    }
+
+    private void addUse(Element element, BitSet use) {
+        Integer id = getId(element);
+        if (id != null) {
+            use.set(id);
+        }
+
+        if (element instanceof ArrayOperand arrayOperand) {
+            for (Element index : arrayOperand.getIndexOperands()) {
+                addUse(index, use);
+            }
+        }
+    }
+
+    private Integer getId(Element element) {
+        if (element == null || element.isLiteral()) {
+            return null;
+        }
+
+        return variableIds.get(((Operand) element).getName());
+    }
+
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    public Integer getVariableId(String name) {
+        return variableIds.get(name);
+    }
+
+    public BitSet getDefs(int position) {
+        return defs[position];
+    }
+
+    public BitSet getUses(int position) {
+        return uses[position];
+    }
+
+    public BitSet getLiveIn(int position) {
+        return liveIn[position];
+    }
+
+    public BitSet getLiveOut(int position) {
+        return liveOut[position];
+    }
+
+    /**
+     * Variables live when the method starts, i.e. read before being written on some path.
+     */
+    public BitSet getLiveAtEntry() {
+        return liveIn.length == 0 ? new BitSet() : liveIn[0];
+    }
+}
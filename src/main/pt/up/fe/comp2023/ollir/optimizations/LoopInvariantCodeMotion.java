@@ -0,0 +1,432 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Moves the computations of a loop whose value does not change between iterations to a preheader, which runs once
+ * before the loop.
+ * <p>
+ * The loops are the natural loops of the CFG: a back edge goes to a node that dominates it (see {@link DominatorTree}),
+ * its header, and the loop holds the nodes that reach the back edge without going through the header. An assignment
+ * is moved when its right-hand side only reads literals, "this" and variables that are not assigned in the loop (or
+ * only by an assignment that is moved), it is the only assignment of its variable in the loop, its variable is not
+ * live at the header, and the variable is dead wherever the loop is left from a node the assignment does not dominate.
+ * Only operations that have no side effects are moved: arithmetic (a division only by a constant other than zero),
+ * copies, reads of a field of "this" when the loop has no calls and does not write the field, and the length of an
+ * array, which may throw and so is only moved when it runs before every exit of the loop.
+ * <p>
+ * The loops are visited from the outermost, so a computation moves out of as many loops as it can. The preheader is
+ * placed right before the header when the loop does not reach the header by falling through to it, with the jumps from
+ * outside the loop changed to a new label; otherwise, it is placed before the goto that enters the loop, when that is
+ * the only way in.
+ */
+public class LoopInvariantCodeMotion {
+
+    private final Method method;
+    private final List<Instruction> instructions;
+    private final HashMap<String, Instruction> labels;
+    private final DominatorTree graph;
+    private final LivenessAnalysis liveness;
+
+    // The loop each node was moved out of, or -1
+    private final int[] hoisted;
+    private final List<Loop> loops = new ArrayList<>();
+
+    private LoopInvariantCodeMotion(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+        this.labels = method.getLabels();
+        this.graph = new DominatorTree(method);
+        this.liveness = new LivenessAnalysis(method);
+        this.hoisted = new int[graph.size()];
+        Arrays.fill(hoisted, -1);
+    }
+
+    /**
+     * Moves the loop invariant computations of the method, whose CFG must be built. The CFG is built again when any
+     * instruction moves.
+     *
+     * @return whether any instruction moved
+     */
+    public static boolean hoist(Method method) {
+        // The liveness reads the locals from the var table, which a class built directly does not have yet
+        method.buildVarTable();
+
+        LoopInvariantCodeMotion motion = new LoopInvariantCodeMotion(method);
+        motion.findLoops();
+
+        boolean moved = false;
+        for (int loop = 0; loop < motion.loops.size(); loop++) {
+            moved |= motion.hoistFrom(loop);
+        }
+
+        if (moved) {
+            motion.moveToPreheaders();
+            ControlFlow.rebuild(method);
+        }
+
+        return moved;
+    }
+
+    // Loops
+
+    private void findLoops() {
+        Map<Integer, List<Integer>> latches = new LinkedHashMap<>();
+        for (int node : graph.getOrder()) {
+            for (int successor : graph.getSuccessors(node)) {
+                if (successor != 0 && graph.dominates(successor, node)) {
+                    latches.computeIfAbsent(successor, header -> new ArrayList<>()).add(node);
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, List<Integer>> entry : latches.entrySet()) {
+            int header = entry.getKey();
+
+            BitSet body = new BitSet();
+            body.set(header);
+            Deque<Integer> worklist = new ArrayDeque<>();
+            for (int latch : entry.getValue()) {
+                if (!body.get(latch)) {
+                    body.set(latch);
+                    worklist.push(latch);
+                }
+            }
+            while (!worklist.isEmpty()) {
+                for (int predecessor : graph.getPredecessors(worklist.pop())) {
+                    if (!body.get(predecessor)) {
+                        body.set(predecessor);
+                        worklist.push(predecessor);
+                    }
+                }
+            }
+
+            loops.add(new Loop(header, body));
+        }
+
+        // The outer loops first, since a loop is larger than the loops inside it
+        loops.sort(Comparator.comparingInt((Loop loop) -> loop.body.cardinality()).reversed());
+    }
+
+    private boolean hoistFrom(int index) {
+        Loop loop = loops.get(index);
+        if (!findPreheader(loop)) {
+            return false;
+        }
+
+        // What the loop writes, without the instructions already moved out of an outer loop
+        for (int node = loop.body.nextSetBit(0); node >= 0; node = loop.body.nextSetBit(node + 1)) {
+            if (hoisted[node] != -1) {
+                continue;
+            }
+
+            Instruction instruction = instructions.get(node - 1);
+            if (instruction instanceof AssignInstruction assign && !(assign.getDest() instanceof ArrayOperand)) {
+                String name = ((Operand) assign.getDest()).getName();
+                loop.assignments.merge(name, 1, Integer::sum);
+                loop.assignmentNodes.put(name, node);
+            }
+
+            Instruction operation = instruction instanceof AssignInstruction assign ? assign.getRhs() : instruction;
+            if (operation instanceof CallInstruction call && call.getInvocationType() != CallType.arraylength
+                    && call.getInvocationType() != CallType.NEW) {
+                loop.hasCalls = true;
+            }
+            if (instruction instanceof PutFieldInstruction putField) {
+                loop.writtenFields.add(((Operand) putField.getSecondOperand()).getName());
+            }
+
+            for (int successor : graph.getSuccessors(node)) {
+                if (!loop.body.get(successor)) {
+                    loop.exits.add(new int[]{node, successor});
+                }
+            }
+            if (instruction.getInstType() == InstructionType.RETURN) {
+                loop.exits.add(new int[]{node, -1});
+            }
+        }
+
+        boolean moved = false;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int node = loop.body.nextSetBit(1); node >= 0; node = loop.body.nextSetBit(node + 1)) {
+                if (hoisted[node] == -1 && isInvariant(loop, node)) {
+                    hoisted[node] = index;
+                    changed = true;
+                    moved = true;
+                }
+            }
+        }
+
+        return moved;
+    }
+
+    /**
+     * Where the preheader of the loop goes, if it has one.
+     */
+    private boolean findPreheader(Loop loop) {
+        int header = loop.header;
+
+        List<Integer> outside = new ArrayList<>();
+        for (int predecessor : graph.getPredecessors(header)) {
+            if (!loop.body.get(predecessor)) {
+                outside.add(predecessor);
+            }
+        }
+
+        // Right before the header, unless the loop falls through to it
+        int previous = header - 1;
+        if (previous == 0 || !loop.body.get(previous) || !fallsThrough(instructions.get(previous - 1))) {
+            loop.anchor = header - 1;
+            loop.entries = outside;
+            return true;
+        }
+
+        // Before the goto that enters the loop
+        if (outside.size() == 1 && outside.get(0) > 0 && instructions.get(outside.get(0) - 1) instanceof GotoInstruction) {
+            loop.anchor = outside.get(0) - 1;
+            loop.entryGoto = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    private static boolean fallsThrough(Instruction instruction) {
+        return instruction.getInstType() != InstructionType.GOTO && instruction.getInstType() != InstructionType.RETURN;
+    }
+
+    // Invariants
+
+    private boolean isInvariant(Loop loop, int node) {
+        if (!(instructions.get(node - 1) instanceof AssignInstruction assign)
+                || assign.getDest() instanceof ArrayOperand) {
+            return false;
+        }
+
+        String name = ((Operand) assign.getDest()).getName();
+        Integer variable = liveness.getVariableId(name);
+        if (variable == null || loop.assignments.get(name) != 1
+                || liveness.getLiveIn(loop.header - 1).get(variable)) {
+            return false;
+        }
+
+        Instruction rhs = assign.getRhs();
+        boolean mayThrow = false;
+        switch (rhs.getInstType()) {
+            case NOPER -> {
+                if (!isInvariant(loop, ((SingleOpInstruction) rhs).getSingleOperand())) {
+                    return false;
+                }
+            }
+            case UNARYOPER -> {
+                if (!isInvariant(loop, ((UnaryOpInstruction) rhs).getOperand())) {
+                    return false;
+                }
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                if (!isInvariant(loop, binaryOp.getLeftOperand()) || !isInvariant(loop, binaryOp.getRightOperand())) {
+                    return false;
+                }
+
+                // Dividing by zero throws
+                if (binaryOp.getOperation().getOpType() == OperationType.DIV) {
+                    Element divisor = binaryOp.getRightOperand();
+                    mayThrow = !(divisor instanceof LiteralElement literal) || literal.getLiteral().equals("0");
+                }
+            }
+            case GETFIELD -> {
+                GetFieldInstruction getField = (GetFieldInstruction) rhs;
+                if (!((Operand) getField.getFirstOperand()).getName().equals("this") || loop.hasCalls
+                        || loop.writtenFields.contains(((Operand) getField.getSecondOperand()).getName())) {
+                    return false;
+                }
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) rhs;
+                if (call.getInvocationType() != CallType.arraylength || !isInvariant(loop, call.getFirstArg())) {
+                    return false;
+                }
+
+                // The array may be null
+                mayThrow = true;
+            }
+            default -> {
+                return false;
+            }
+        }
+
+        // The variable keeps its value after the loop where the assignment may not have run
+        for (int[] exit : loop.exits) {
+            boolean dominated = graph.dominates(node, exit[0]);
+            if (mayThrow && !dominated) {
+                return false;
+            }
+            if (!dominated && exit[1] > 0 && liveness.getLiveIn(exit[1] - 1).get(variable)) {
+                return false;
+            }
+        }
+
+        return !mayThrow || !loop.exits.isEmpty();
+    }
+
+    private boolean isInvariant(Loop loop, Element element) {
+        if (element.isLiteral()) {
+            return true;
+        }
+        if (element instanceof ArrayOperand) {
+            return false;
+        }
+
+        String name = ((Operand) element).getName();
+        Integer assignments = loop.assignments.get(name);
+        return assignments == null || assignments == 1 && hoisted[loop.assignmentNodes.get(name)] != -1;
+    }
+
+    // Moving
+
+    /**
+     * Rebuilds the instructions with the preheaders in place and the moved instructions out of the loops. The labels a
+     * moved instruction had go to the instruction that followed it, but not the ones it gets as the start of a
+     * preheader, which may come before it.
+     */
+    private void moveToPreheaders() {
+        // The labels of each instruction before anything moves
+        Map<Instruction, List<String>> owners = new IdentityHashMap<>();
+        for (Map.Entry<String, Instruction> label : labels.entrySet()) {
+            owners.computeIfAbsent(label.getValue(), instruction -> new ArrayList<>()).add(label.getKey());
+        }
+
+        // In reverse postorder, so each instruction comes after the ones it reads
+        List<List<Instruction>> moved = new ArrayList<>();
+        for (int index = 0; index < loops.size(); index++) {
+            moved.add(new ArrayList<>());
+        }
+        for (int node : graph.getOrder()) {
+            if (hoisted[node] != -1) {
+                moved.get(hoisted[node]).add(instructions.get(node - 1));
+            }
+        }
+
+        Map<Integer, List<List<Instruction>>> preheaders = new HashMap<>();
+        for (int index = 0; index < loops.size(); index++) {
+            List<Instruction> preheader = moved.get(index);
+            if (!preheader.isEmpty()) {
+                Loop loop = loops.get(index);
+                preheaders.computeIfAbsent(loop.anchor, anchor -> new ArrayList<>()).add(preheader);
+                enterThroughPreheader(loop, preheader.get(0), owners);
+            }
+        }
+
+        List<Instruction> result = new ArrayList<>(instructions.size());
+        List<Instruction> pending = new ArrayList<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            for (List<Instruction> preheader : preheaders.getOrDefault(i, List.of())) {
+                for (Instruction instruction : preheader) {
+                    place(instruction, pending, result, owners);
+                }
+            }
+
+            Instruction instruction = instructions.get(i);
+            if (hoisted[i + 1] != -1) {
+                pending.add(instruction);
+            } else {
+                place(instruction, pending, result, owners);
+            }
+        }
+        for (Instruction instruction : pending) {
+            for (String label : owners.getOrDefault(instruction, List.of())) {
+                labels.remove(label);
+            }
+        }
+
+        instructions.clear();
+        instructions.addAll(result);
+    }
+
+    private void place(Instruction instruction, List<Instruction> pending, List<Instruction> result,
+                       Map<Instruction, List<String>> owners) {
+        for (Instruction moved : pending) {
+            moveLabels(moved, instruction, owners);
+        }
+        pending.clear();
+        result.add(instruction);
+    }
+
+    /**
+     * Makes the edges from outside the loop go to the preheader: the goto that enters the loop gives its labels to the
+     * preheader, or the jumps to the header from outside the loop jump to a new label on the preheader.
+     */
+    private void enterThroughPreheader(Loop loop, Instruction first, Map<Instruction, List<String>> owners) {
+        if (loop.entryGoto) {
+            moveLabels(instructions.get(loop.anchor), first, owners);
+            return;
+        }
+
+        Instruction header = instructions.get(loop.header - 1);
+        String label = null;
+        for (int entry : loop.entries) {
+            if (entry == 0) {
+                continue;
+            }
+
+            Instruction instruction = instructions.get(entry - 1);
+            if (instruction instanceof GotoInstruction jump && labels.get(jump.getLabel()) == header) {
+                label = label == null ? newLabel(first) : label;
+                jump.setLabel(label);
+            } else if (instruction instanceof CondBranchInstruction branch && labels.get(branch.getLabel()) == header) {
+                label = label == null ? newLabel(first) : label;
+                branch.setLabel(label);
+            }
+        }
+    }
+
+    private String newLabel(Instruction instruction) {
+        int number = 0;
+        while (labels.containsKey("preheader" + number)) {
+            number++;
+        }
+
+        String label = "preheader" + number;
+        labels.put(label, instruction);
+        return label;
+    }
+
+    private void moveLabels(Instruction from, Instruction to, Map<Instruction, List<String>> owners) {
+        List<String> moved = owners.remove(from);
+        if (moved == null) {
+            return;
+        }
+
+        for (String label : moved) {
+            labels.put(label, to);
+        }
+    }
+
+    private static class Loop {
+        final int header;
+        final BitSet body;
+
+        // Where the preheader goes: before the instruction at the anchor, which is the header or the goto into the loop
+        int anchor;
+        boolean entryGoto = false;
+        List<Integer> entries = List.of();
+
+        final Map<String, Integer> assignments = new HashMap<>();
+        final Map<String, Integer> assignmentNodes = new HashMap<>();
+        final Set<String> writtenFields = new HashSet<>();
+        boolean hasCalls = false;
+        // The edges that leave the loop, with -1 as the target of a return
+        final List<int[]> exits = new ArrayList<>();
+
+        Loop(int header, BitSet body) {
+            this.header = header;
+            this.body = body;
+        }
+    }
+}
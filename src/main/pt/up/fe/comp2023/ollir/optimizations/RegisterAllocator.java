@@ -0,0 +1,216 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.*;
+
+/**
+ * Assigns the JVM local variables of every method by coloring the interference graph of its variables.
+ * <p>
+ * Two variables interfere when one is written while the other is live (except for a copy between them, which can
+ * share a register). "this" and the parameters keep the registers given by the calling convention, and the other
+ * variables may reuse them once they are dead. With {@code maxRegisters = 0} each method uses as few registers as the
+ * coloring finds; otherwise a method that needs more than {@code maxRegisters} registers is reported as an error and
+ * keeps the registers of the var table.
+ */
+public class RegisterAllocator {
+
+    private final int maxRegisters;
+
+    public RegisterAllocator(int maxRegisters) {
+        this.maxRegisters = maxRegisters;
+    }
+
+    /**
+     * Reads the "registerAllocation" option, -1 (the default) keeps the registers of the var table.
+     */
+    public static Optional<RegisterAllocator> fromConfig(Map<String, String> config) {
+        String registers = config.get("registerAllocation");
+        if (registers == null || Integer.parseInt(registers) < 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new RegisterAllocator(Integer.parseInt(registers)));
+    }
+
+    public List<Report> allocate(ClassUnit classUnit) {
+        List<Report> reports = new ArrayList<>();
+
+        for (Method method : classUnit.getMethods()) {
+            // The liveness needs the CFG, which the OLLIR parser has already built but a class built directly has not
+            ControlFlow.ensureBuilt(method);
+            method.buildVarTable();
+
+            allocate(method, reports);
+        }
+
+        return reports;
+    }
+
+    private void allocate(Method method, List<Report> reports) {
+        LivenessAnalysis liveness = new LivenessAnalysis(method);
+        List<String> variables = liveness.getVariables();
+
+        Map<Integer, Set<Integer>> graph = buildInterferenceGraph(method, liveness);
+        HashMap<String, Descriptor> varTable = method.getVarTable();
+
+        // "this" and the parameters are fixed
+        Map<Integer, Integer> fixed = new HashMap<>();
+        int reserved = 0;
+        if (!method.isStaticMethod()) {
+            fixed.put(liveness.getVariableId("this"), 0);
+            reserved = 1;
+        }
+        for (Element param : method.getParams()) {
+            String name = ((Operand) param).getName();
+            int register = varTable.get(name).getVirtualReg();
+
+            fixed.put(liveness.getVariableId(name), register);
+            reserved = Math.max(reserved, register + 1);
+        }
+
+        Map<Integer, Integer> colors = color(graph, fixed, variables.size());
+
+        int registers = Math.max(reserved, 1);
+        for (int color : colors.values()) {
+            registers = Math.max(registers, color + 1);
+        }
+
+        if (maxRegisters > 0 && registers > maxRegisters) {
+            reports.add(Report.newError(Stage.OPTIMIZATION, -1, -1,
+                    "Method '" + method.getMethodName() + "' needs at least " + registers + " registers, but only "
+                            + maxRegisters + " were requested.", null));
+            return;
+        }
+
+        for (int variable = 0; variable < variables.size(); variable++) {
+            Descriptor descriptor = varTable.get(variables.get(variable));
+            if (descriptor != null) {
+                descriptor.setVirtualReg(colors.get(variable));
+            }
+        }
+    }
+
+    private Map<Integer, Set<Integer>> buildInterferenceGraph(Method method, LivenessAnalysis liveness) {
+        Map<Integer, Set<Integer>> graph = new HashMap<>();
+        for (int variable = 0; variable < liveness.getVariables().size(); variable++) {
+            graph.put(variable, new HashSet<>());
+        }
+
+        // The parameters are all written when the method starts
+        BitSet entryDefs = new BitSet();
+        if (!method.isStaticMethod()) {
+            entryDefs.set(liveness.getVariableId("this"));
+        }
+        for (Element param : method.getParams()) {
+            entryDefs.set(liveness.getVariableId(((Operand) param).getName()));
+        }
+        BitSet liveAtEntry = (BitSet) liveness.getLiveAtEntry().clone();
+        liveAtEntry.or(entryDefs);
+        addInterferences(graph, entryDefs, liveAtEntry, -1);
+
+        List<Instruction> instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            addInterferences(graph, liveness.getDefs(i), liveness.getLiveOut(i),
+                    getCopySource(instructions.get(i), liveness));
+        }
+
+        return graph;
+    }
+
+    private static void addInterferences(Map<Integer, Set<Integer>> graph, BitSet defs, BitSet live, int copySource) {
+        for (int def = defs.nextSetBit(0); def >= 0; def = defs.nextSetBit(def + 1)) {
+            for (int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)) {
+                if (other != def && other != copySource) {
+                    graph.get(def).add(other);
+                    graph.get(other).add(def);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the variable copied by an assignment like "a = b", or -1.
+     */
+    private static int getCopySource(Instruction instruction, LivenessAnalysis liveness) {
+        if (!(instruction instanceof AssignInstruction assign) || assign.getDest() instanceof ArrayOperand
+                || !(assign.getRhs() instanceof SingleOpInstruction singleOp)) {
+            return -1;
+        }
+
+        Element source = singleOp.getSingleOperand();
+        if (source.isLiteral() || source instanceof ArrayOperand) {
+            return -1;
+        }
+
+        Integer id = liveness.getVariableId(((Operand) source).getName());
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Colors the graph in a single optimistic pass, using as few registers as the heuristic finds.
+     * <p>
+     * Variables are removed from the graph one at a time, always the one with the fewest remaining neighbours, so
+     * every variable that could be simplified with some number of registers is removed before the ones that would
+     * have to be spilled with it. The variables are then colored in the reverse order with the lowest register not used
+     * by a colored neighbour, which may still succeed for a variable with many neighbours when they share colors.
+     */
+    private static Map<Integer, Integer> color(Map<Integer, Set<Integer>> graph, Map<Integer, Integer> fixed,
+                                               int size) {
+        int[] degrees = new int[size];
+        boolean[] removed = new boolean[size];
+        for (int variable : fixed.keySet()) {
+            removed[variable] = true;
+        }
+        for (int variable = 0; variable < size; variable++) {
+            for (int neighbour : graph.get(variable)) {
+                if (!removed[neighbour]) {
+                    degrees[variable]++;
+                }
+            }
+        }
+
+        // Ordered by the remaining neighbours, ties by the variable, so a degree changes by removing and adding back
+        TreeSet<Integer> remaining = new TreeSet<>(Comparator.<Integer>comparingInt(variable -> degrees[variable])
+                .thenComparing(Comparator.naturalOrder()));
+        for (int variable = 0; variable < size; variable++) {
+            if (!removed[variable]) {
+                remaining.add(variable);
+            }
+        }
+
+        Deque<Integer> stack = new ArrayDeque<>();
+        while (!remaining.isEmpty()) {
+            int next = remaining.pollFirst();
+            removed[next] = true;
+            stack.push(next);
+
+            for (int neighbour : graph.get(next)) {
+                if (!removed[neighbour]) {
+                    remaining.remove(neighbour);
+                    degrees[neighbour]--;
+                    remaining.add(neighbour);
+                }
+            }
+        }
+
+        Map<Integer, Integer> colors = new HashMap<>(fixed);
+        while (!stack.isEmpty()) {
+            int variable = stack.pop();
+
+            BitSet used = new BitSet();
+            for (int neighbour : graph.get(variable)) {
+                Integer color = colors.get(neighbour);
+                if (color != null) {
+                    used.set(color);
+                }
+            }
+
+            colors.put(variable, used.nextClearBit(0));
+        }
+
+        return colors;
+    }
+}
@@ -0,0 +1,372 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Replaces the computations of a method whose value was already computed into a variable by a copy of that variable:
+ * arithmetic, reads of a field of "this", reads of an array position and lengths of arrays.
+ * <p>
+ * Every value gets a number, and a computation is known by its operation and the numbers of its operands, so two
+ * computations with the same key have the same value. Along a sequence of instructions this is local value numbering,
+ * and walking the dominator tree (see {@link DominatorTree}) extends it to every instruction the first computation
+ * dominates, with the table undone when leaving a subtree. Since the code is not in SSA form, a variable assigned more
+ * than once, or read before its only assignment, keeps its number only until an instruction with more than one
+ * predecessor, where another assignment may reach it.
+ * <p>
+ * The fields and the arrays are numbered like variables whose assignments are the writes that may change them: the
+ * number of a field changes with a putfield to it and with any call, and the number of the arrays changes with a
+ * store to any array and with any call. Reading a field or an array position is known by the number of what it reads
+ * from, so those writes kill the earlier reads. The length of an array never changes, so only depends on the array.
+ */
+public class ValueNumbering {
+
+    private static final Heap ARRAYS = new Heap("arrays");
+    private static final Heap CALLS = new Heap("calls");
+
+    private final List<Instruction> instructions;
+    private final DominatorTree graph;
+
+    // The assignments to each variable and the writes that change each part of the heap
+    private final Map<Object, Integer> definitions = new HashMap<>();
+
+    private final Table table = new Table();
+    private int values = 0;
+    private int depth;
+    private int joinDepth;
+
+    private final Map<Integer, Instruction> replacements = new HashMap<>();
+
+    private ValueNumbering(Method method) {
+        this.instructions = method.getInstructions();
+        this.graph = new DominatorTree(method);
+    }
+
+    /**
+     * Replaces the redundant computations of the method, whose CFG must be built. The CFG is built again when any
+     * instruction is replaced.
+     *
+     * @return whether any instruction was replaced
+     */
+    public static boolean number(Method method) {
+        ValueNumbering numbering = new ValueNumbering(method);
+        numbering.countDefinitions();
+        numbering.walk();
+
+        if (numbering.replacements.isEmpty()) {
+            return false;
+        }
+
+        ControlFlow.replace(method, numbering.replacements);
+        ControlFlow.rebuild(method);
+        return true;
+    }
+
+    private void countDefinitions() {
+        for (Instruction instruction : instructions) {
+            for (Object state : getWritten(instruction)) {
+                definitions.merge(state, 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * The variables and parts of the heap an instruction may change.
+     */
+    private static List<Object> getWritten(Instruction instruction) {
+        List<Object> written = new ArrayList<>(2);
+
+        Instruction operation = instruction;
+        if (instruction instanceof AssignInstruction assign) {
+            if (assign.getDest() instanceof ArrayOperand) {
+                written.add(ARRAYS);
+            } else {
+                written.add(new Variable(((Operand) assign.getDest()).getName()));
+            }
+            operation = assign.getRhs();
+        }
+
+        if (operation instanceof CallInstruction call && call.getInvocationType() != CallType.arraylength
+                && call.getInvocationType() != CallType.NEW) {
+            written.add(CALLS);
+            written.add(ARRAYS);
+        } else if (operation instanceof PutFieldInstruction putField) {
+            written.add(new Field(((Operand) putField.getSecondOperand()).getName()));
+        }
+
+        return written;
+    }
+
+    /**
+     * Numbers the instructions in a preorder of the dominator tree. A node is pushed to enter it, and its complement to
+     * leave it once its children are done.
+     */
+    private void walk() {
+        int size = graph.size();
+        int[] marks = new int[size];
+        int[] depths = new int[size];
+        int[] joinDepths = new int[size];
+
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(0);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            if (node < 0) {
+                table.undo(marks[~node]);
+                continue;
+            }
+
+            marks[node] = table.mark();
+
+            if (node > 0) {
+                int dominator = graph.getImmediateDominator(node);
+                depths[node] = depths[dominator] + 1;
+                // Only a node with a single predecessor, its immediate dominator, is sure to be reached from it
+                joinDepths[node] = graph.getPredecessors(node).length == 1 ? joinDepths[dominator] : depths[node];
+
+                depth = depths[node];
+                joinDepth = joinDepths[node];
+                visit(node - 1, instructions.get(node - 1));
+            }
+
+            stack.push(~node);
+            for (int child : graph.getChildren(node)) {
+                stack.push(child);
+            }
+        }
+    }
+
+    private void visit(int position, Instruction instruction) {
+        if (!(instruction instanceof AssignInstruction assign) || assign.getDest() instanceof ArrayOperand) {
+            for (Object state : getWritten(instruction)) {
+                define(state, newValue());
+            }
+            return;
+        }
+
+        Operand dest = (Operand) assign.getDest();
+        Instruction rhs = assign.getRhs();
+        Expression expression = getExpression(rhs);
+
+        int value;
+        if (expression != null) {
+            Integer known = (Integer) table.get(expression);
+            if (known == null) {
+                value = newValue();
+                table.put(expression, value);
+            } else {
+                value = known;
+
+                Operand holder = getHolder(value);
+                if (holder != null && !holder.getName().equals(dest.getName())) {
+                    replacements.put(position, new AssignInstruction(dest, assign.getTypeOfAssign(),
+                            new SingleOpInstruction(copyOf(holder))));
+                }
+            }
+        } else if (rhs instanceof SingleOpInstruction singleOp) {
+            value = valueOf(singleOp.getSingleOperand());
+        } else {
+            value = newValue();
+        }
+
+        for (Object state : getWritten(instruction)) {
+            if (!(state instanceof Variable)) {
+                define(state, newValue());
+            }
+        }
+        define(new Variable(dest.getName()), value);
+
+        if (getHolder(value) == null) {
+            table.put(new Holder(value), dest);
+        }
+    }
+
+    /**
+     * The key of a computation that may be replaced, or null if it is not one.
+     */
+    private Expression getExpression(Instruction rhs) {
+        switch (rhs.getInstType()) {
+            case NOPER -> {
+                if (!(((SingleOpInstruction) rhs).getSingleOperand() instanceof ArrayOperand array)
+                        || array.getIndexOperands().size() != 1) {
+                    return null;
+                }
+                return new Expression("load", valueOf(new Variable(array.getName())),
+                        valueOf(array.getIndexOperands().get(0)), valueOf(ARRAYS));
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) rhs;
+                return new Expression(unaryOp.getOperation().getOpType().name(), valueOf(unaryOp.getOperand()), 0, 0);
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                OperationType operation = binaryOp.getOperation().getOpType();
+                int left = valueOf(binaryOp.getLeftOperand());
+                int right = valueOf(binaryOp.getRightOperand());
+
+                if (isCommutative(operation) && left > right) {
+                    return new Expression(operation.name(), right, left, 0);
+                }
+                return new Expression(operation.name(), left, right, 0);
+            }
+            case GETFIELD -> {
+                GetFieldInstruction getField = (GetFieldInstruction) rhs;
+                if (!((Operand) getField.getFirstOperand()).getName().equals("this")) {
+                    return null;
+                }
+                String name = ((Operand) getField.getSecondOperand()).getName();
+                return new Expression("getfield " + name, valueOf(new Field(name)), valueOf(CALLS), 0);
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) rhs;
+                if (call.getInvocationType() != CallType.arraylength) {
+                    return null;
+                }
+                return new Expression("arraylength", valueOf(call.getFirstArg()), 0, 0);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static boolean isCommutative(OperationType operation) {
+        return switch (operation) {
+            case ADD, MUL, AND, ANDB, OR, ORB, EQ, NEQ -> true;
+            default -> false;
+        };
+    }
+
+    // Values
+
+    private int newValue() {
+        return ++values;
+    }
+
+    private int valueOf(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return valueOf(new Constant(literal.getLiteral()));
+        }
+
+        return valueOf(new Variable(((Operand) element).getName()));
+    }
+
+    /**
+     * The number of a constant, a variable or a part of the heap, which gets a new one if it has none that is still
+     * valid here.
+     */
+    private int valueOf(Object state) {
+        Binding binding = (Binding) table.get(state);
+        if (binding != null && isValid(state, binding)) {
+            return binding.value();
+        }
+
+        int value = newValue();
+        table.put(state, new Binding(value, depth, false));
+        return value;
+    }
+
+    /**
+     * A number stays valid if nothing else may have changed its state since it was given: the state is never changed,
+     * it is changed once and the number comes from that change, which dominates here, or it was given after the last
+     * node that may be reached from elsewhere.
+     */
+    private boolean isValid(Object state, Binding binding) {
+        int count = definitions.getOrDefault(state, 0);
+        return count == 0 || count == 1 && binding.defined() || binding.depth() >= joinDepth;
+    }
+
+    private void define(Object state, int value) {
+        table.put(state, new Binding(value, depth, true));
+    }
+
+    /**
+     * The variable that holds a value here, or null if it no longer does.
+     */
+    private Operand getHolder(int value) {
+        Operand holder = (Operand) table.get(new Holder(value));
+        if (holder == null) {
+            return null;
+        }
+
+        Variable variable = new Variable(holder.getName());
+        Binding binding = (Binding) table.get(variable);
+        return binding != null && binding.value() == value && isValid(variable, binding) ? holder : null;
+    }
+
+    private static Operand copyOf(Operand operand) {
+        Operand copy = new Operand(operand.getName(), operand.getType());
+        if (operand.isParameter()) {
+            copy.setParamId(operand.getParamId());
+        }
+
+        return copy;
+    }
+
+    // Keys of the table
+
+    private record Variable(String name) {
+    }
+
+    private record Field(String name) {
+    }
+
+    private record Heap(String name) {
+    }
+
+    private record Constant(String literal) {
+    }
+
+    private record Expression(String operation, int first, int second, int third) {
+    }
+
+    private record Holder(int value) {
+    }
+
+    private record Binding(int value, int depth, boolean defined) {
+    }
+
+    /**
+     * The entries visible at a node of the dominator tree, with a log of the entries they replaced, so that leaving a
+     * subtree undoes what it added.
+     */
+    private static class Table {
+        private final Map<Object, Object> entries = new HashMap<>();
+        private Object[] loggedKeys = new Object[16];
+        private Object[] loggedValues = new Object[16];
+        private int logSize = 0;
+
+        Object get(Object key) {
+            return entries.get(key);
+        }
+
+        void put(Object key, Object value) {
+            if (logSize == loggedKeys.length) {
+                loggedKeys = Arrays.copyOf(loggedKeys, logSize * 2);
+                loggedValues = Arrays.copyOf(loggedValues, logSize * 2);
+            }
+
+            loggedKeys[logSize] = key;
+            loggedValues[logSize] = entries.put(key, value);
+            logSize++;
+        }
+
+        int mark() {
+            return logSize;
+        }
+
+        void undo(int mark) {
+            while (logSize > mark) {
+                logSize--;
+                if (loggedValues[logSize] == null) {
+                    entries.remove(loggedKeys[logSize]);
+                } else {
+                    entries.put(loggedKeys[logSize], loggedValues[logSize]);
+                }
+                loggedKeys[logSize] = null;
+                loggedValues[logSize] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package pt.up.fe.comp2023.Analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.AnalysisStage;
+import pt.up.fe.comp2023.SimpleParser;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static pt.up.fe.comp2023.CompilerTestUtils.config;
+
+public class MethodAnalysisTest {
+
+    private static final Map<String, String> PARALLEL = config("analysis", "parallel");
+
+    /**
+     * Every field has a known type and the methods have unique names, so the methods are analysed in parallel.
+     */
+    private static final String ERRORS = "class Errors {\n"
+            + "    int f;\n"
+            + "\n"
+            + "    public int first(int a) {\n"
+            + "        int b;\n"
+            + "        b = a + true;\n"
+            + "        return b;\n"
+            + "    }\n"
+            + "\n"
+            + "    public int second(int[] v) {\n"
+            + "        int c;\n"
+            + "        c = v + 1;\n"
+            + "        c = d;\n"
+            + "        return c;\n"
+            + "    }\n"
+            + "\n"
+            + "    public boolean third(int a) {\n"
+            + "        return a;\n"
+            + "    }\n"
+            + "\n"
+            + "    public static void main(String[] args) {\n"
+            + "    }\n"
+            + "}\n";
+
+    private static List<Report> analyse(Map<String, String> config) {
+        JmmParserResult parserResult = new SimpleParser().parse(ERRORS, config);
+        TestUtils.noErrors(parserResult);
+
+        return new AnalysisStage().semanticAnalysis(parserResult).getReports();
+    }
+
+    private static List<String> toStrings(List<Report> reports) {
+        return reports.stream().map(Report::toString).collect(Collectors.toList());
+    }
+
+    /**
+     * The parallel mode reports the errors of the single traversal, sorted by position.
+     */
+    @Test
+    public void bothModesReportTheSameErrors() {
+        List<Report> reports = new ArrayList<>(analyse(config()));
+        MethodAnalysis.sortByPosition(reports);
+
+        assertEquals(toStrings(reports), toStrings(analyse(PARALLEL)));
+    }
+
+    @Test
+    public void eachErrorIsReportedOnce() {
+        for (Map<String, String> config : List.of(config(), PARALLEL)) {
+            List<Report> reports = analyse(config);
+            List<String> strings = toStrings(reports);
+
+            assertEquals(strings.toString(), new HashSet<>(strings).size(), strings.size());
+
+            Set<Integer> lines = reports.stream().map(Report::getLine).collect(Collectors.toSet());
+            assertTrue(strings.toString(), lines.containsAll(List.of(6, 12, 18)));
+        }
+    }
+}
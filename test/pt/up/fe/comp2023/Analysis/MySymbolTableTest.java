@@ -0,0 +1,67 @@
+package pt.up.fe.comp2023.Analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MySymbolTableTest {
+
+    private static final Type INT = new Type("int", false);
+    private static final Type BOOLEAN = new Type("boolean", false);
+
+    @Test
+    public void firstFieldWithANameWins() {
+        MySymbolTable table = new MySymbolTable();
+        Symbol first = new Symbol(INT, "a");
+        table.addField(first, false);
+        table.addField(new Symbol(BOOLEAN, "a"), true);
+
+        Map.Entry<Symbol, Boolean> field = table.getField("a");
+        assertSame(first, field.getKey());
+        assertFalse(field.getValue());
+        assertEquals(2, table.getFields().size());
+    }
+
+    @Test
+    public void firstMethodWithANameWins() {
+        MySymbolTable table = new MySymbolTable();
+        table.addMethod("get", INT, List.of(new Symbol(INT, "x")));
+        table.addMethod("get", BOOLEAN, List.of());
+
+        assertEquals(INT, table.getMethod("get").getReturnType());
+        assertEquals(INT, table.getReturnType("get"));
+        assertEquals(1, table.getParameters("get").size());
+        assertEquals(List.of("get", "get"), table.getMethods());
+    }
+
+    /**
+     * Without a field with the name, the first parameter with it of any method is returned, as not initialized.
+     */
+    @Test
+    public void fieldFallsBackToParameters() {
+        MySymbolTable table = new MySymbolTable();
+        Symbol parameter = new Symbol(INT, "x");
+        table.addMethod("get", INT, List.of(parameter));
+        table.addMethod("set", BOOLEAN, List.of(new Symbol(BOOLEAN, "x")));
+
+        Map.Entry<Symbol, Boolean> field = table.getField("x");
+        assertSame(parameter, field.getKey());
+        assertFalse(field.getValue());
+        assertFalse(table.fieldExists("x"));
+
+        table.addField(new Symbol(BOOLEAN, "x"), true);
+        assertEquals(BOOLEAN, table.getField("x").getKey().getType());
+        assertTrue(table.fieldExists("x"));
+
+        assertNull(table.getField("y"));
+    }
+}
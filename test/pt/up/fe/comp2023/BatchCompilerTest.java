@@ -0,0 +1,89 @@
+package pt.up.fe.comp2023;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static pt.up.fe.comp2023.CompilerTestUtils.assertContains;
+import static pt.up.fe.comp2023.CompilerTestUtils.config;
+
+public class BatchCompilerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String path, String className) {
+        File file = new File(folder.getRoot(), path);
+        SpecsIo.write(file, "class " + className + " {\n"
+                + "    public int get() {\n"
+                + "        return 1;\n"
+                + "    }\n"
+                + "}\n");
+
+        return file;
+    }
+
+    private List<BatchCompiler.FileResult> compile(File... inputs) {
+        File outputDir = new File(folder.getRoot(), "out");
+        Map<String, String> config = config("outputDir", outputDir.getPath(), "threads", "2");
+
+        return new BatchCompiler(config).compile(List.of(inputs));
+    }
+
+    @Test
+    public void folderIsCompiledInOrder() {
+        write("src/B.jmm", "B");
+        write("src/A.jmm", "A");
+        write("src/nested/C.jmm", "C");
+
+        List<File> inputs = BatchCompiler.collectInputs(List.of(new File(folder.getRoot(), "src").getPath()));
+        List<BatchCompiler.FileResult> results = compile(inputs.toArray(File[]::new));
+
+        assertEquals(3, results.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            BatchCompiler.FileResult result = results.get(i);
+
+            assertEquals(inputs.get(i), result.getInputFile());
+            assertTrue(result.getReports().toString(), result.isSuccess());
+            assertTrue(result.getClassFile().isFile());
+        }
+    }
+
+    @Test
+    public void failingFileDoesNotStopTheOthers() {
+        File broken = new File(folder.getRoot(), "Broken.jmm");
+        SpecsIo.write(broken, "class Broken {");
+
+        List<BatchCompiler.FileResult> results = compile(broken, write("A.jmm", "A"));
+
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+    }
+
+    /**
+     * Both inputs would write D.class, so both fail and neither output is kept, whichever worker ran first.
+     */
+    @Test
+    public void duplicateClassesAreRejected() {
+        List<BatchCompiler.FileResult> results = compile(write("one/D.jmm", "D"), write("two/D.jmm", "D"),
+                write("E.jmm", "E"));
+
+        for (BatchCompiler.FileResult result : results.subList(0, 2)) {
+            assertFalse(result.isSuccess());
+            assertContains(result.getReports().toString(), "Class 'D' is declared by more than one input");
+        }
+        assertTrue(results.get(2).isSuccess());
+
+        File outputDir = new File(folder.getRoot(), "out");
+        assertFalse(new File(outputDir, "D.class").exists());
+        assertFalse(new File(outputDir, "D.j").exists());
+    }
+}
@@ -0,0 +1,114 @@
+package pt.up.fe.comp2023;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2023.ollir.OllirPrinter;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static pt.up.fe.comp2023.CompilerTestUtils.config;
+import static pt.up.fe.comp2023.CompilerTestUtils.getResource;
+import static pt.up.fe.comp2023.CompilerTestUtils.optimizeText;
+
+public class CompilationCacheTest {
+
+    private static final Map<String, String> CONFIG = config("optimize", "false", "registerAllocation", "-1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * An entry of about 100 bytes, whose Jasmin code tells which source it was stored for.
+     */
+    private static CompilationCache.Entry entry(String code) {
+        return new CompilationCache.Entry("Foo", "Foo {}\n", code + " ".repeat(80));
+    }
+
+    @Test
+    public void storedEntryIsHit() {
+        CompilationCache cache = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+
+        assertTrue(cache.get("a", CONFIG).isEmpty());
+        cache.put("a", CONFIG, entry("a"));
+
+        Optional<CompilationCache.Entry> entry = cache.get("a", CONFIG);
+        assertTrue(entry.isPresent());
+        assertEquals("Foo", entry.get().getClassName());
+        assertEquals("Foo {}\n", entry.get().getOllirCode());
+        assertEquals(entry("a").getJasminCode(), entry.get().getJasminCode());
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void entriesAreKeptAcrossRuns() {
+        new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES).put("a", CONFIG, entry("a"));
+
+        CompilationCache cache = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+        assertTrue(cache.get("a", CONFIG).isPresent());
+    }
+
+    @Test
+    public void optionsThatChangeTheCodeAreMisses() {
+        CompilationCache cache = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+        cache.put("a", CONFIG, entry("a"));
+
+        assertTrue(cache.get("a", config("optimize", "true", "registerAllocation", "-1")).isEmpty());
+        assertTrue(cache.get("a", config("optimize", "false", "registerAllocation", "0")).isEmpty());
+        assertTrue(cache.get("b", CONFIG).isEmpty());
+    }
+
+    /**
+     * Only two entries fit, so storing a third one removes the one that was used the longest time ago.
+     */
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        CompilationCache cache = new CompilationCache(folder.getRoot(), 250);
+
+        cache.put("a", CONFIG, entry("a"));
+        cache.put("b", CONFIG, entry("b"));
+        assertTrue(cache.get("a", CONFIG).isPresent());
+        cache.put("c", CONFIG, entry("c"));
+
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.get("a", CONFIG).isPresent());
+        assertFalse(cache.get("b", CONFIG).isPresent());
+        assertTrue(cache.get("c", CONFIG).isPresent());
+    }
+
+    @Test
+    public void folderIsShrunkToASmallerMaximum() {
+        CompilationCache cache = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+        cache.put("a", CONFIG, entry("a"));
+        cache.put("b", CONFIG, entry("b"));
+        cache.put("c", CONFIG, entry("c"));
+
+        CompilationCache smaller = new CompilationCache(folder.getRoot(), 100);
+
+        assertEquals(2, smaller.getEvictions());
+        File[] entries = folder.getRoot().listFiles((dir, name) -> name.endsWith(".entry"));
+        assertEquals(1, entries.length);
+    }
+
+    /**
+     * With the OLLIR code, the entry keeps the code of the optimized class and not the code generated from the AST.
+     */
+    @Test
+    public void textModeStoresTheOptimizedCode() {
+        Map<String, String> config = config("optimize", "true", "registerAllocation", "0", "ollirMode", "text");
+        String code = getResource("Histogram.jmm");
+
+        CompilationCache cache = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+        new JmmCompiler(cache).compile(code, "Histogram", config);
+
+        String ollirCode = cache.get(code, config).orElseThrow().getOllirCode();
+        assertEquals(OllirPrinter.print(optimizeText(code, config)), ollirCode);
+    }
+}
@@ -0,0 +1,124 @@
+package pt.up.fe.comp2023;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompilerDaemonTest {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static int port;
+    private static File tokenFile;
+    private static Thread server;
+
+    @BeforeClass
+    public static void startDaemon() throws Exception {
+        try (var socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+
+        tokenFile = new File(folder.getRoot(), "daemon.token");
+        server = new Thread(() -> new CompilerDaemon(port, tokenFile).serve());
+        server.start();
+
+        // The token file is written once the daemon is warmed up and listening
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (!tokenFile.isFile()) {
+            assertTrue("The daemon did not start", server.isAlive() && System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    @AfterClass
+    public static void stopDaemon() throws Exception {
+        request(CompilerDaemon.TOKEN_PREFIX + getToken(), "stop");
+        server.join(10_000);
+    }
+
+    private static String getToken() {
+        return SpecsIo.read(tokenFile).trim();
+    }
+
+    private static List<String> request(String... lines) throws IOException {
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            var out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                out.println(line);
+            }
+
+            var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            List<String> reply = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                reply.add(line);
+            }
+
+            return reply;
+        }
+    }
+
+    /**
+     * Every line but the last is output, so whatever the program prints cannot be taken for the exit code.
+     */
+    private static void assertFramed(List<String> reply, int exitCode) {
+        assertEquals(reply.toString(), CompilerDaemon.EXIT_PREFIX + exitCode, reply.get(reply.size() - 1));
+        for (String line : reply.subList(0, reply.size() - 1)) {
+            assertTrue(reply.toString(), line.startsWith(CompilerDaemon.OUTPUT_PREFIX));
+        }
+    }
+
+    @Test
+    public void compilesAndRunsRelativeToTheClient() throws IOException {
+        SpecsIo.write(new File(folder.getRoot(), "Hello.jmm"), "import io;\n"
+                + "class Hello {\n"
+                + "    public static void main(String[] args) {\n"
+                + "        io.println(42);\n"
+                + "    }\n"
+                + "}\n");
+
+        List<String> reply = request(CompilerDaemon.TOKEN_PREFIX + getToken(), "cwd " + folder.getRoot(),
+                "arg Hello.jmm", "end");
+
+        assertFramed(reply, 0);
+        assertTrue(reply.toString(), reply.contains(CompilerDaemon.OUTPUT_PREFIX + "42"));
+    }
+
+    @Test
+    public void compilerErrorsExitWithOne() throws IOException {
+        List<String> reply = request(CompilerDaemon.TOKEN_PREFIX + getToken(), "cwd " + folder.getRoot(),
+                "arg Missing.jmm", "end");
+
+        assertFramed(reply, 1);
+    }
+
+    @Test
+    public void requestsWithoutTheTokenAreRejected() throws IOException {
+        assertFramed(request(CompilerDaemon.TOKEN_PREFIX + "wrong", "arg Hello.jmm", "end"), 2);
+        assertFramed(request("arg Hello.jmm", "end"), 2);
+    }
+
+    @Test
+    public void unknownRequestLinesAreRejected() throws IOException {
+        assertFramed(request(CompilerDaemon.TOKEN_PREFIX + getToken(), "unknown", "end"), 2);
+    }
+}
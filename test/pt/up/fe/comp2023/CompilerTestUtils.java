@@ -0,0 +1,161 @@
+package pt.up.fe.comp2023;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.ollir.JmmOptimizer;
+import pt.up.fe.comp2023.ollir.OllirPrinter;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the compiler on the programs of the tests, either with the OLLIR class built directly from the AST (the path of
+ * the launcher) or through the OLLIR code and its parser (the path of {@link TestUtils}).
+ */
+public class CompilerTestUtils {
+
+    private static final String RESOURCES = "pt/up/fe/comp2023/";
+
+    public static final Map<String, String> OPTIMIZE = Collections.unmodifiableMap(config("optimize", "true"));
+
+    public static String getResource(String resource) {
+        return SpecsIo.getResource(RESOURCES + resource);
+    }
+
+    /**
+     * A config with the given keys and values, e.g. {@code config("optimize", "true")}.
+     */
+    public static Map<String, String> config(String... keysAndValues) {
+        Map<String, String> config = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            config.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+
+        return config;
+    }
+
+    public static JmmSemanticsResult analyse(String code, Map<String, String> config) {
+        JmmParserResult parserResult = new SimpleParser().parse(code, config);
+        TestUtils.noErrors(parserResult);
+
+        JmmSemanticsResult semanticsResult = new AnalysisStage().semanticAnalysis(parserResult);
+        TestUtils.noErrors(semanticsResult);
+
+        return semanticsResult;
+    }
+
+    /**
+     * Builds the OLLIR class directly and optimizes it as set in the config, which must not report errors.
+     */
+    public static ClassUnit optimize(String code, Map<String, String> config) {
+        ClassUnit classUnit = toClassUnit(code, config);
+        TestUtils.noErrors(new JmmOptimizer().optimize(classUnit, config));
+
+        return classUnit;
+    }
+
+    public static ClassUnit toClassUnit(String code, Map<String, String> config) {
+        return new JmmOptimizer().toClassUnit(analyse(code, config));
+    }
+
+    /**
+     * Generates the OLLIR code, parses it and optimizes the class as set in the config, which must not report errors.
+     */
+    public static ClassUnit optimizeText(String code, Map<String, String> config) {
+        OllirResult ollirResult = TestUtils.optimize(code, config);
+        TestUtils.noErrors(ollirResult);
+
+        return ollirResult.getOllirClass();
+    }
+
+    public static List<Report> optimizeReports(ClassUnit classUnit, Map<String, String> config) {
+        return new JmmOptimizer().optimize(classUnit, config);
+    }
+
+    public static JasminResult backend(ClassUnit classUnit, Map<String, String> config) {
+        JasminResult jasminResult = JmmCompiler.generate(classUnit, config);
+        TestUtils.noErrors(jasminResult);
+
+        return jasminResult;
+    }
+
+    /**
+     * Runs the class and checks its output, with the line endings normalized.
+     */
+    public static void run(ClassUnit classUnit, Map<String, String> config, String expected) {
+        JasminResult jasminResult = backend(classUnit, config);
+        String output = SpecsStrings.normalizeFileContents(jasminResult.run(), true);
+
+        assertEquals("Output of the program:\n" + jasminResult.getJasminCode(), expected, output);
+    }
+
+    /**
+     * Runs the program of the resource unoptimized, and then optimized as set in the config both with the OLLIR class
+     * built directly and through the OLLIR code. Every run must print the expected output.
+     */
+    public static void assertSameOutput(String resource, Map<String, String> config, String expected) {
+        String code = getResource(resource);
+
+        run(optimize(code, config()), config(), expected);
+        run(optimize(code, config), config, expected);
+        run(optimizeText(code, config), config, expected);
+    }
+
+    public static void assertSameOutput(String resource, String expected) {
+        assertSameOutput(resource, OPTIMIZE, expected);
+    }
+
+    /**
+     * The OLLIR code of a method of the program of the resource, optimized with the OLLIR class built directly.
+     */
+    public static String getOptimizedMethod(String resource, String methodName) {
+        return getOllirMethod(optimize(getResource(resource), OPTIMIZE), methodName);
+    }
+
+    /**
+     * The OLLIR code of a method of the class, from its header to its closing brace.
+     */
+    public static String getOllirMethod(ClassUnit classUnit, String methodName) {
+        String ollirCode = OllirPrinter.print(classUnit);
+
+        Matcher matcher = Pattern.compile("\\.method[^\\n]*\\s" + Pattern.quote(methodName) + "\\(.*?\\n\\t}",
+                Pattern.DOTALL).matcher(ollirCode);
+        assertTrue("Could not find OLLIR method '" + methodName + "' in:\n" + ollirCode, matcher.find());
+
+        return matcher.group();
+    }
+
+    public static int count(String code, String regex) {
+        Matcher matcher = Pattern.compile(regex).matcher(code);
+
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+
+        return count;
+    }
+
+    public static void assertContains(String code, String regex) {
+        assertTrue("Expected to find '" + regex + "' in:\n" + code, count(code, regex) > 0);
+    }
+
+    public static void assertNotContains(String code, String regex) {
+        assertFalse("Did not expect to find '" + regex + "' in:\n" + code, count(code, regex) > 0);
+    }
+}
@@ -0,0 +1,83 @@
+package pt.up.fe.comp2023;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static pt.up.fe.comp2023.CompilerTestUtils.config;
+
+public class MappedCharStreamTest {
+
+    private static final String CODE = "class Foo {\n"
+            + "    public int get(int x) {\n"
+            + "        return x + 1;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String code) {
+        File file = new File(folder.getRoot(), "Foo.jmm");
+        SpecsIo.write(file, code);
+
+        return file;
+    }
+
+    @Test
+    public void asciiFileIsMapped() throws IOException {
+        CharStream input = MappedCharStream.open(write(CODE));
+
+        assertTrue(input instanceof MappedCharStream);
+        assertEquals(CODE.length(), input.size());
+        assertEquals(CODE, input.toString());
+        assertEquals("class", input.getText(Interval.of(0, 4)));
+
+        input.seek(CODE.length() - 1);
+        assertEquals('\n', input.LA(1));
+        input.consume();
+        assertEquals(IntStream.EOF, input.LA(1));
+        assertEquals('\n', input.LA(-1));
+    }
+
+    /**
+     * A character outside of ASCII takes more than one byte, so the file is decoded instead of mapped.
+     */
+    @Test
+    public void nonAsciiFileIsDecoded() throws IOException {
+        String code = "// Contagem de visitas \u00e0 p\u00e1gina\n" + CODE;
+        CharStream input = MappedCharStream.open(write(code));
+
+        assertTrue(input instanceof ANTLRInputStream);
+        assertEquals(code.length(), input.size());
+        assertEquals(code, input.toString());
+    }
+
+    /**
+     * The tokens have the same positions as when the source is parsed from a String, with and without characters
+     * outside of ASCII before them.
+     */
+    @Test
+    public void parsingFileIsTheSameAsParsingString() {
+        for (String code : new String[]{CODE, "// Contagem de visitas \u00e0 p\u00e1gina\n" + CODE}) {
+            JmmParserResult fromFile = new SimpleParser().parse(write(code), config());
+            JmmParserResult fromString = new SimpleParser().parse(code, config());
+            TestUtils.noErrors(fromFile);
+            TestUtils.noErrors(fromString);
+
+            assertEquals(fromString.getRootNode().toJson(), fromFile.getRootNode().toJson());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package pt.up.fe.comp2023;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static pt.up.fe.comp2023.CompilerTestUtils.config;
+
+public class SimpleParserTest {
+
+    private static final Map<String, String> LL = config("prediction", "ll");
+
+    /**
+     * "this." followed by a call can only be told apart from a field assignment with the full context, so SLL
+     * prediction fails on it.
+     */
+    private static final String NEEDS_LL = "class Foo {\n"
+            + "    public int get(int a) {\n"
+            + "        int c;\n"
+            + "        c = a + this.get(a);\n"
+            + "        return c;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String SYNTAX_ERROR = "class Foo {\n"
+            + "    public int get(int a) {\n"
+            + "        return a +;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static boolean parsesWithSll(String code) {
+        var parser = new JavammParser(new CommonTokenStream(new JavammLexer(new ANTLRInputStream(code))));
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.removeErrorListeners();
+
+        try {
+            parser.program();
+            return true;
+        } catch (ParseCancellationException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void sllFailureIsRetriedWithLl() {
+        assertTrue("Expected SLL prediction to fail on the program", !parsesWithSll(NEEDS_LL));
+
+        JmmParserResult result = new SimpleParser().parse(NEEDS_LL, config());
+        TestUtils.noErrors(result);
+
+        assertEquals(new SimpleParser().parse(NEEDS_LL, LL).getRootNode().toJson(), result.getRootNode().toJson());
+    }
+
+    @Test
+    public void syntaxErrorsAreReportedAfterTheRetry() {
+        JmmParserResult result = new SimpleParser().parse(SYNTAX_ERROR, config());
+
+        assertNull(result.getRootNode());
+        assertEquals(1, result.getReports().size());
+        assertEquals(ReportType.ERROR, result.getReports().get(0).getType());
+        assertEquals(new SimpleParser().parse(SYNTAX_ERROR, LL).getReports().toString(), result.getReports().toString());
+    }
+}
@@ -0,0 +1,91 @@
+package pt.up.fe.comp2023.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class CompactAstTest {
+
+    private static final Map<String, String> COMPACT = config("ast", "compact");
+
+    private static final String CODE = "class Foo {\n"
+            + "    int f;\n"
+            + "    public int get(int x) {\n"
+            + "        int y;\n"
+            + "        y = x * 2;\n"
+            + "        return x + y;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static JmmNode parse(String code, Map<String, String> config) {
+        JmmParserResult parserResult = new SimpleParser().parse(code, config);
+        TestUtils.noErrors(parserResult);
+
+        return parserResult.getRootNode();
+    }
+
+    @Test
+    public void sameTreeAsTheLibraryNodes() {
+        String code = getResource("Histogram.jmm");
+        JmmNode compact = parse(code, COMPACT);
+
+        assertTrue(compact instanceof CompactNode);
+        assertEquals(parse(code, config()).toJson(), compact.toJson());
+    }
+
+    /**
+     * Changes the attributes and the children of nodes of the given tree, as the analysis and the optimizations do.
+     */
+    private static void mutate(JmmNode root) {
+        JmmNode classDecl = root.getJmmChild(0);
+        JmmNode method = classDecl.getJmmChild(1);
+        JmmNode assignment = method.getJmmChild(3);
+        JmmNode product = assignment.getJmmChild(0);
+        JmmNode returnStmt = method.getJmmChild(4);
+
+        product.put("op", "+");
+        product.put("type", "int");
+
+        // Swaps the operands
+        JmmNode right = product.getJmmChild(1);
+        product.setChild(right, 0);
+        assertSame(product, right.getJmmParent());
+        assertEquals(0, right.getIndexOfSelf());
+
+        // Returns y instead of the sum
+        returnStmt.removeJmmChild(0);
+        JmmNode variable = new JmmNodeImpl("Variable");
+        variable.put("id", "y");
+        returnStmt.add(variable);
+        assertSame(returnStmt, variable.getJmmParent());
+
+        classDecl.getJmmChild(0).delete();
+    }
+
+    @Test
+    public void sameTreeAfterChanges() {
+        JmmNode compact = parse(CODE, COMPACT);
+        JmmNode nodes = parse(CODE, config());
+
+        mutate(compact);
+        mutate(nodes);
+
+        assertEquals(nodes.toJson(), compact.toJson());
+        assertEquals(nodes.toTree(), compact.toTree());
+    }
+
+    @Test
+    public void sameOutput() {
+        run(toClassUnit(getResource("Histogram.jmm"), COMPACT), COMPACT, "4\n111");
+    }
+}
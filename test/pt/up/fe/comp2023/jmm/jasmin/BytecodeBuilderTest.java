@@ -0,0 +1,47 @@
+package pt.up.fe.comp2023.jmm.jasmin;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class BytecodeBuilderTest {
+
+    private static final String PROGRAM = "Histogram.jmm";
+
+    private static final Map<String, String> BYTECODE = config("backend", "bytecode");
+
+    /**
+     * The class files run, which means the verifier accepted the frames and limits computed by ASM.
+     */
+    @Test
+    public void sameOutputAsJasmin() {
+        run(toClassUnit(getResource(PROGRAM), config()), config(), "4\n111");
+        run(toClassUnit(getResource(PROGRAM), BYTECODE), BYTECODE, "4\n111");
+    }
+
+    @Test
+    public void arrayDescriptors() {
+        BytecodeResult result = (BytecodeResult) backend(toClassUnit(getResource(PROGRAM), BYTECODE), BYTECODE);
+
+        Map<String, String> descriptors = new HashMap<>();
+        new ClassReader(result.getBytecode()).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                descriptors.put(name, descriptor);
+                return null;
+            }
+        }, 0);
+
+        assertEquals("([Ljava/lang/String;)V", descriptors.get("main"));
+        assertEquals("([III)I", descriptors.get("count"));
+    }
+}
@@ -0,0 +1,63 @@
+package pt.up.fe.comp2023.jmm.jasmin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.OllirErrorException;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class JasminBuilderTest {
+
+    private static final String PROGRAM = "Histogram.jmm";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ClassUnit getClassUnit() {
+        return toClassUnit(getResource(PROGRAM), config());
+    }
+
+    private static String toJasmin() {
+        return new JasminBuilder().toJasmin(getClassUnit(), config()).getJasminCode();
+    }
+
+    /**
+     * The methods emitted one at a time into the sink give the same code as the whole class built at once.
+     */
+    @Test
+    public void streamedCodeIsTheSame() throws OllirErrorException, IOException {
+        StringBuilder jasminCode = new StringBuilder();
+        new JasminBuilder().writeJasmin(getClassUnit(), jasminCode);
+
+        assertEquals(toJasmin(), jasminCode.toString());
+    }
+
+    @Test
+    public void fileHasTheSameCode() throws OllirErrorException {
+        File jasminFile = new File(folder.getRoot(), "Histogram.j");
+        new JasminBuilder().writeJasmin(getClassUnit(), jasminFile);
+
+        assertEquals(toJasmin(), SpecsIo.read(jasminFile));
+    }
+
+    /**
+     * A builder can be used for more than one class, the labels of each class start from the beginning.
+     */
+    @Test
+    public void builderCanBeReused() throws OllirErrorException, IOException {
+        JasminBuilder builder = new JasminBuilder();
+        builder.writeJasmin(getClassUnit(), new StringBuilder());
+
+        StringBuilder jasminCode = new StringBuilder();
+        builder.writeJasmin(getClassUnit(), jasminCode);
+
+        assertEquals(toJasmin(), jasminCode.toString());
+    }
+}
@@ -0,0 +1,104 @@
+package pt.up.fe.comp2023.jmm.jasmin;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static pt.up.fe.comp2023.CompilerTestUtils.assertContains;
+
+public class StackAnalyzerTest {
+
+    private static StackAnalyzer analyze(String... lines) {
+        return new StackAnalyzer("test", String.join("\n", lines));
+    }
+
+    private static void assertError(StackAnalyzer analyzer, String regex) {
+        List<Report> reports = analyzer.getReports();
+
+        assertEquals(reports.toString(), 1, reports.size());
+        assertContains(reports.get(0).getMessage(), regex);
+    }
+
+    @Test
+    public void straightLineCode() {
+        StackAnalyzer analyzer = analyze(
+                "\t.limit locals 2",
+                "\tiload_1",
+                "\ticonst_2",
+                "\tiload_1",
+                "\timul",
+                "\tiadd",
+                "\tireturn");
+
+        assertTrue(analyzer.getReports().toString(), analyzer.getReports().isEmpty());
+        assertEquals(3, analyzer.getMaxStack());
+    }
+
+    /**
+     * The deeper branch sets the maximum, and both branches leave one value for the code after the join.
+     */
+    @Test
+    public void deepestPathIsTheMaximum() {
+        StackAnalyzer analyzer = analyze(
+                "\tiload_1",
+                "\tifeq else",
+                "\ticonst_1",
+                "\tgoto end",
+                "else:",
+                "\ticonst_1",
+                "\ticonst_2",
+                "\ticonst_3",
+                "\timul",
+                "\tiadd",
+                "end:",
+                "\tireturn");
+
+        assertTrue(analyzer.getReports().toString(), analyzer.getReports().isEmpty());
+        assertEquals(3, analyzer.getMaxStack());
+    }
+
+    @Test
+    public void invocationsUseTheirDescriptors() {
+        StackAnalyzer analyzer = analyze(
+                "\taload_0",
+                "\tiload_1",
+                "\taload_2",
+                "\taload_3",
+                "\tinvokevirtual Foo/bar(I[ILjava/lang/String;)I",
+                "\tinvokestatic io/println(I)V",
+                "\treturn");
+
+        assertTrue(analyzer.getReports().toString(), analyzer.getReports().isEmpty());
+        assertEquals(4, analyzer.getMaxStack());
+    }
+
+    @Test
+    public void underflowIsAnError() {
+        assertError(analyze("\ticonst_1", "\tiadd", "\tireturn"), "stack underflow at 'iadd' \\(depth 1\\)");
+    }
+
+    @Test
+    public void differentDepthsAtAJoinIsAnError() {
+        StackAnalyzer analyzer = analyze(
+                "\tiload_1",
+                "\tifeq end",
+                "\ticonst_1",
+                "end:",
+                "\treturn");
+
+        assertError(analyzer, "'return' is reached with stack depths");
+    }
+
+    @Test
+    public void codeRunningPastTheEndIsAnError() {
+        assertError(analyze("\ticonst_1", "\tpop"), "code runs past the end");
+    }
+
+    @Test
+    public void undefinedLabelIsAnError() {
+        assertError(analyze("\tgoto nowhere"), "undefined label 'nowhere'");
+    }
+}
@@ -0,0 +1,90 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class OllirGeneratorTest {
+
+    private static final int METHODS = 32;
+
+    /**
+     * A method with temporaries and labels, which are numbered in the order they are generated.
+     */
+    private static String getMethod(int method) {
+        return "    public int m" + method + "(int a) {\n"
+                + "        int s;\n"
+                + "        s = 0;\n"
+                + "        while (s < a) {\n"
+                + "            if (s < " + method + ") {\n"
+                + "                s = s + a * " + method + ";\n"
+                + "            } else {\n"
+                + "                s = s + 1;\n"
+                + "            }\n"
+                + "        }\n"
+                + "        return s * 2 + a;\n"
+                + "    }\n";
+    }
+
+    private static String getClass(int... methods) {
+        StringBuilder code = new StringBuilder("class Methods {\n");
+        for (int method : methods) {
+            code.append(getMethod(method));
+        }
+
+        return code.append("}\n").toString();
+    }
+
+    private static String generate(String code, Map<String, String> config) {
+        return new JmmOptimizer().toOllir(analyse(code, config)).getOllirCode();
+    }
+
+    private static String getOllirMethod(String ollirCode, int method) {
+        Matcher matcher = Pattern.compile("\\.method public m" + method + "\\(.*?\\n\\t}", Pattern.DOTALL)
+                .matcher(ollirCode);
+        assertTrue("Could not find OLLIR method 'm" + method + "' in:\n" + ollirCode, matcher.find());
+
+        return matcher.group();
+    }
+
+    @Test
+    public void sameCodeOnEveryRun() {
+        int[] methods = new int[METHODS];
+        for (int method = 0; method < METHODS; method++) {
+            methods[method] = method;
+        }
+        String code = getClass(methods);
+
+        for (Map<String, String> config : List.of(config(), OPTIMIZE)) {
+            String expected = generate(code, config);
+            for (int run = 0; run < 10; run++) {
+                assertEquals(expected, generate(code, config));
+            }
+        }
+    }
+
+    /**
+     * The code of each method is the same as when it is the only method of the class, as if the methods were generated
+     * one at a time, each from the start.
+     */
+    @Test
+    public void methodsDoNotDependOnEachOther() {
+        int[] methods = new int[METHODS];
+        for (int method = 0; method < METHODS; method++) {
+            methods[method] = METHODS - method;
+        }
+        String ollirCode = generate(getClass(methods), config());
+
+        for (int method : methods) {
+            String alone = generate(getClass(method), config());
+            assertEquals(getOllirMethod(alone, method), getOllirMethod(ollirCode, method));
+        }
+    }
+}
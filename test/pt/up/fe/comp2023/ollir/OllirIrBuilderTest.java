@@ -0,0 +1,61 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class OllirIrBuilderTest {
+
+    private static final String PROGRAM = "Histogram.jmm";
+
+    /**
+     * Parses the printed code of a class built directly, which must be valid OLLIR.
+     */
+    private static ClassUnit reparse(ClassUnit classUnit, Map<String, String> config) {
+        OllirResult ollirResult = new OllirResult(OllirPrinter.print(classUnit), config);
+        TestUtils.noErrors(ollirResult);
+
+        return ollirResult.getOllirClass();
+    }
+
+    @Test
+    public void printedCodeParsesBack() {
+        ClassUnit classUnit = toClassUnit(getResource(PROGRAM), config());
+        String ollirCode = OllirPrinter.print(classUnit);
+
+        assertEquals(ollirCode, OllirPrinter.print(reparse(classUnit, config())));
+    }
+
+    @Test
+    public void parsedCodeRunsTheSame() {
+        run(reparse(toClassUnit(getResource(PROGRAM), config()), config()), config(), "4\n111");
+    }
+
+    /**
+     * The class built directly and the one parsed from the generated OLLIR code have the same methods and fields.
+     */
+    @Test
+    public void sameClassAsTheGeneratedCode() {
+        ClassUnit direct = toClassUnit(getResource(PROGRAM), config());
+        ClassUnit text = new JmmOptimizer().toOllir(analyse(getResource(PROGRAM), config())).getOllirClass();
+
+        assertEquals(getSignatures(text), getSignatures(direct));
+    }
+
+    private static List<String> getSignatures(ClassUnit classUnit) {
+        List<String> signatures = new ArrayList<>();
+        classUnit.getFields().forEach(field -> signatures.add(field.getFieldName() + ":" + field.getFieldType()));
+        classUnit.getMethods().forEach(method -> signatures.add(method.getMethodName() + method.getParams().size()
+                + ":" + method.getReturnType()));
+
+        return signatures;
+    }
+}
@@ -0,0 +1,43 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.junit.Test;
+
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class ConstantPropagationTest {
+
+    private static final String SCCP = "ollir/optimizations/Sccp.jmm";
+
+    /**
+     * The branch that would make x change is never taken, which only propagating along executable edges finds.
+     */
+    @Test
+    public void constantThroughUnreachableBranch() {
+        String loop = getOptimizedMethod(SCCP, "loop");
+
+        assertContains(loop, "ret\\.i32 1\\.i32;");
+    }
+
+    /**
+     * Only the branch the constant condition takes is executable, so b gets the value of that branch.
+     */
+    @Test
+    public void constantConditionTakesOneBranch() {
+        String branch = getOptimizedMethod(SCCP, "branch");
+
+        assertContains(branch, "ret\\.i32 7\\.i32;");
+    }
+
+    @Test
+    public void variableChangedInLoopIsKept() {
+        String notConstant = getOptimizedMethod(SCCP, "notConstant");
+
+        assertContains(notConstant, "x\\.i32 :=\\.i32 x\\.i32 \\+\\.i32 1\\.i32;");
+        assertContains(notConstant, "ret\\.i32 x\\.i32;");
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(SCCP, "1\n7\n6");
+    }
+}
@@ -0,0 +1,55 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.junit.Test;
+
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class DeadCodeEliminationTest {
+
+    private static final String PROGRAM = "ollir/optimizations/Dce.jmm";
+
+    /**
+     * t is only read to compute its own next value, so it is not strongly live and the whole computation goes.
+     */
+    @Test
+    public void assignmentsOnlyReadByThemselvesAreRemoved() {
+        String unused = getOptimizedMethod(PROGRAM, "unused");
+
+        assertNotContains(unused, "\\bt\\.i32");
+        assertContains(unused, "i\\.i32 :=\\.i32 i\\.i32 \\+\\.i32 1\\.i32;");
+    }
+
+    @Test
+    public void branchNeverTakenIsRemoved() {
+        String unreachable = getOptimizedMethod(PROGRAM, "unreachable");
+
+        assertNotContains(unreachable, "if \\(");
+        assertNotContains(unreachable, "\\*\\.i32");
+        assertContains(unreachable, "\\$1\\.n\\.i32 \\+\\.i32 1\\.i32");
+    }
+
+    @Test
+    public void loopNeverEnteredIsRemoved() {
+        String neverLoops = getOptimizedMethod(PROGRAM, "neverLoops");
+
+        assertNotContains(neverLoops, "if \\(");
+        assertNotContains(neverLoops, "\\*\\.i32");
+        assertContains(neverLoops, "ret\\.i32 \\$1\\.n\\.i32;");
+    }
+
+    /**
+     * Loads and stores of arrays stay when their values are used or may be seen outside the method.
+     */
+    @Test
+    public void sideEffectsAreKept() {
+        String used = getOptimizedMethod(PROGRAM, "used");
+
+        assertContains(used, "\\$1\\.a\\[[^]]*]\\.i32 :=\\.i32 t\\.i32;");
+        assertContains(used, "ret\\.i32 t\\.i32;");
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(PROGRAM, "4\n5\n4\n7\n7");
+    }
+}
@@ -0,0 +1,59 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.junit.Test;
+
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class LoopInvariantCodeMotionTest {
+
+    private static final String PROGRAM = "ollir/optimizations/Licm.jmm";
+
+    /**
+     * The code of a method before its first loop, where the invariant computations are moved to.
+     */
+    private static String getPreheader(String method) {
+        return method.substring(0, method.indexOf("goto whileCond"));
+    }
+
+    @Test
+    public void invariantsAreHoisted() {
+        String preheader = getPreheader(getOptimizedMethod(PROGRAM, "sum"));
+
+        assertContains(preheader, "\\$3\\.k\\.i32 \\+\\.i32 2\\.i32");
+        assertContains(preheader, "getfield\\(this, f\\.i32\\)");
+    }
+
+    /**
+     * k * 3 is invariant in both loops, so it leaves the inner loop and then the outer one.
+     */
+    @Test
+    public void invariantsOfNestedLoopsLeaveEveryLoop() {
+        String preheader = getPreheader(getOptimizedMethod(PROGRAM, "sum"));
+
+        assertContains(preheader, "\\$3\\.k\\.i32 \\*\\.i32 3\\.i32");
+    }
+
+    @Test
+    public void computationsOfChangedVariablesStay() {
+        String changed = getOptimizedMethod(PROGRAM, "changed");
+
+        assertNotContains(getPreheader(changed), "\\*\\.i32");
+        assertContains(changed, "whileBody\\d+:\\s+t1\\.i32 :=\\.i32 \\$2\\.k\\.i32 \\*\\.i32 2\\.i32;");
+    }
+
+    /**
+     * The division may throw, so it is not moved before the test of a loop that may run no times.
+     */
+    @Test
+    public void computationsThatMayThrowStay() {
+        String guarded = getOptimizedMethod(PROGRAM, "guarded");
+
+        assertNotContains(getPreheader(guarded), "/\\.i32");
+        assertContains(guarded, "100\\.i32 /\\.i32 \\$2\\.d\\.i32");
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(PROGRAM, "78\n12\n0\n40");
+    }
+}
@@ -0,0 +1,80 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class RegisterAllocatorTest {
+
+    private static final String PROGRAM = "ollir/optimizations/Registers.jmm";
+
+    private static final Map<String, String> ALLOCATE = config("registerAllocation", "0");
+
+    private static int getRegister(ClassUnit classUnit, String methodName, String variable) {
+        Method method = classUnit.getMethods().stream()
+                .filter(candidate -> candidate.getMethodName().equals(methodName))
+                .findFirst()
+                .orElseThrow();
+
+        return method.getVarTable().get(variable).getVirtualReg();
+    }
+
+    private static String getLocalsLimit(ClassUnit classUnit, Map<String, String> config, String methodName) {
+        String method = CpUtils.getJasminMethod(backend(classUnit, config), methodName);
+
+        return method.replaceAll("(?s).*\\.limit locals (\\d+).*", "$1");
+    }
+
+    /**
+     * Each variable of the method is dead once the next one is written, and "this" is never read, so they all share
+     * register 0.
+     */
+    @Test
+    public void deadVariablesShareRegisters() {
+        ClassUnit classUnit = optimize(getResource(PROGRAM), ALLOCATE);
+
+        assertEquals("2", getLocalsLimit(classUnit, ALLOCATE, "sequential"));
+        assertEquals(0, getRegister(classUnit, "sequential", "d"));
+    }
+
+    @Test
+    public void liveVariablesGetDifferentRegisters() {
+        ClassUnit classUnit = optimize(getResource(PROGRAM), ALLOCATE);
+
+        assertEquals("3", getLocalsLimit(classUnit, ALLOCATE, "interfering"));
+        assertNotEquals(getRegister(classUnit, "interfering", "a"), getRegister(classUnit, "interfering", "b"));
+    }
+
+    @Test
+    public void parametersKeepTheirRegisters() {
+        ClassUnit classUnit = optimize(getResource(PROGRAM), ALLOCATE);
+
+        assertEquals(1, getRegister(classUnit, "sequential", "n"));
+        assertEquals(1, getRegister(classUnit, "interfering", "n"));
+    }
+
+    @Test
+    public void tooFewRegistersIsAnError() {
+        Map<String, String> config = config("registerAllocation", "2");
+        List<Report> reports = optimizeReports(toClassUnit(getResource(PROGRAM), config), config);
+
+        assertEquals(reports.toString(), 1, reports.size());
+        assertEquals(ReportType.ERROR, reports.get(0).getType());
+        assertContains(reports.get(0).getMessage(), "'interfering' needs at least 3 registers");
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(PROGRAM, ALLOCATE, "28\n23");
+    }
+}
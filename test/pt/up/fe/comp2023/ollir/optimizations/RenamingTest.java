@@ -0,0 +1,40 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.junit.Test;
+
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class RenamingTest {
+
+    private static final String PROGRAM = "ollir/optimizations/Renaming.jmm";
+
+    /**
+     * Each branch sees the value of a that reaches it: the definition in the then branch must be undone before the else
+     * branch is renamed.
+     */
+    @Test
+    public void branchesSeeTheirOwnDefinitions() {
+        String branches = getOptimizedMethod(PROGRAM, "branches");
+
+        assertContains(branches, "b\\.i32 :=\\.i32 3\\.i32;");
+        assertContains(branches, "b\\.i32 :=\\.i32 11\\.i32;");
+        assertContains(branches, "b\\.i32 \\+\\.i32 a\\.i32");
+    }
+
+    /**
+     * k is 4 only inside the inner loop, and 5 again when it is left.
+     */
+    @Test
+    public void nestedLoopsRestoreOuterValues() {
+        String nested = getOptimizedMethod(PROGRAM, "nested");
+
+        assertContains(nested, "s\\.i32 :=\\.i32 s\\.i32 \\+\\.i32 4\\.i32;");
+        assertContains(nested, "s\\.i32 :=\\.i32 s\\.i32 \\+\\.i32 5\\.i32;");
+        assertContains(nested, "s\\.i32 \\+\\.i32 5\\.i32;\\s+ret");
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(PROGRAM, "5\n12\n49");
+    }
+}
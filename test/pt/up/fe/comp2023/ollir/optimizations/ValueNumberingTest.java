@@ -0,0 +1,59 @@
+package pt.up.fe.comp2023.ollir.optimizations;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+
+import static org.junit.Assert.assertEquals;
+import static pt.up.fe.comp2023.CompilerTestUtils.*;
+
+public class ValueNumberingTest {
+
+    private static final String PROGRAM = "ollir/optimizations/Gvn.jmm";
+
+    private static final String ARRAY_LOAD = ":=\\.i32 \\$1\\.a\\[\\$2\\.i\\.i32]\\.i32;";
+    private static final String FIELD_LOAD = "getfield\\(this, f\\.i32\\)";
+
+    /**
+     * y * x is the same value as x * y, since the operands of a commutative operation are numbered in order.
+     */
+    @Test
+    public void commutedComputationIsReused() {
+        String local = getOptimizedMethod(PROGRAM, "local");
+
+        assertEquals(local, 1, count(local, "\\*\\.i32"));
+    }
+
+    /**
+     * The load before the if is reused in the branch it dominates, but not after the store of the other branch, nor
+     * after the join where that store may have happened.
+     */
+    @Test
+    public void loadsAreReusedUntilAStore() {
+        String dominated = getOptimizedMethod(PROGRAM, "dominated");
+
+        assertEquals(dominated, 3, count(dominated, ARRAY_LOAD));
+    }
+
+    /**
+     * A field is read again after it is written and after a call, which may write it.
+     */
+    @Test
+    public void fieldReadsAreReusedUntilAWriteOrCall() {
+        String fields = getOptimizedMethod(PROGRAM, "fields");
+
+        assertEquals(fields, 3, count(fields, FIELD_LOAD));
+    }
+
+    @Test
+    public void unoptimizedCodeKeepsEveryComputation() {
+        ClassUnit classUnit = optimize(getResource(PROGRAM), config());
+
+        assertEquals(4, count(getOllirMethod(classUnit, "dominated"), ARRAY_LOAD));
+        assertEquals(4, count(getOllirMethod(classUnit, "fields"), FIELD_LOAD));
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(PROGRAM, "27\n28\n22\n29");
+    }
+}